@@ -5,6 +5,7 @@ import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.StringTokenizer;
 
+import edu.southwestern.data.GenotypeFiles;
 import edu.southwestern.data.ResultSummaryUtilities;
 import edu.southwestern.evolution.EA;
 import edu.southwestern.evolution.EvolutionaryHistory;
@@ -21,6 +22,7 @@ import edu.southwestern.evolution.metaheuristics.MaxModulesFitness;
 import edu.southwestern.evolution.metaheuristics.Metaheuristic;
 import edu.southwestern.experiment.Experiment;
 import edu.southwestern.log.EvalLog;
+import edu.southwestern.log.LogWriter;
 import edu.southwestern.log.MMNEATLog;
 import edu.southwestern.networks.ActivationFunctions;
 import edu.southwestern.parameters.CommonConstants;
@@ -32,7 +34,6 @@ import edu.southwestern.util.file.FileUtilities;
 import edu.southwestern.util.random.RandomGenerator;
 import edu.southwestern.util.random.RandomNumbers;
 import edu.southwestern.util.stats.Statistic;
-import wox.serial.Easy;
 
 /**
  * Modular Multiobjective Neuro-Evolution of Augmenting Topologies.
@@ -319,7 +320,7 @@ public class MMNEAT {
 			} else {
 				// Copy assures a fresh genotype id
 				System.out.println("Loading seed genotype: " + seedGenotype);
-				genotype = ((Genotype) Easy.load(seedGenotype)).copy();
+				genotype = ((Genotype) GenotypeFiles.load(seedGenotype)).copy();
 				// System.out.println(genotype);
 				seedExample = true;
 			}
@@ -495,6 +496,7 @@ public class MMNEAT {
 			EvolutionaryHistory.lineageLog.close();
 			EvolutionaryHistory.lineageLog = null;
 		}
+		LogWriter.sync();
 	}
 
 	/**
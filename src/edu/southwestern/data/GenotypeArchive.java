@@ -0,0 +1,358 @@
+package edu.southwestern.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import edu.southwestern.evolution.genotypes.Genotype;
+import edu.southwestern.evolution.genotypes.TWEANNGenotype;
+import edu.southwestern.evolution.genotypes.TWEANNGenotypeBinaryFormat;
+import edu.southwestern.parameters.CommonConstants;
+import edu.southwestern.parameters.Parameters;
+import edu.southwestern.util.file.FileUtilities;
+
+/**
+ * Single append-only file holding every TWEANNGenotype produced in a run,
+ * so that any ancestor can be loaded by id without opening one small file
+ * per individual. Each record is:
+ *
+ * - 8 byte genotype id
+ * - 4 byte length of the rest of the record
+ * - the genotype in the format of TWEANNGenotypeBinaryFormat
+ *
+ * The index from id to record position is kept in memory. It is rebuilt
+ * when an existing archive is opened by reading only the record headers.
+ * Records are read through a memory-mapped view of the file, which is
+ * remapped when it no longer covers everything that was appended.
+ *
+ * Only TWEANNGenotypes are archived. Genotypes are never changed once
+ * appended, so appending an id that is already present does nothing.
+ * An archive can also be opened read-only, which never changes the file,
+ * so it is safe while another process is still appending to it. Records
+ * appended after opening are indexed when a missing id is requested.
+ * Since the whole file is mapped as one buffer, archives are limited to 2 GB.
+ *
+ * @author Jacob Schrum
+ */
+public class GenotypeArchive {
+
+	public static final String ARCHIVE_FILE = "genotypes.archive";
+	private static final int HEADER_BYTES = 12;
+
+	// Archive for the current run, opened on first use
+	private static GenotypeArchive runArchive = null;
+	// Read-only view of the run archive, when it was not opened for appending
+	private static GenotypeArchive runArchiveReader = null;
+
+	private final String filename;
+	private final boolean readOnly;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final HashMap<Long, Long> offsets = new HashMap<Long, Long>();
+	private final ArrayList<Long> ids = new ArrayList<Long>();
+	private long end;
+	private MappedByteBuffer mapped = null;
+
+	/**
+	 * Archive of the current run, stored in the save directory. Only
+	 * available when genotypes are saved (netio) and the genotypeArchive
+	 * parameter is true.
+	 *
+	 * @return archive, or null if archiving is disabled
+	 */
+	public static synchronized GenotypeArchive runArchive() {
+		if (runArchive == null && Parameters.parameters != null && CommonConstants.netio && Parameters.parameters.booleanParameter("genotypeArchive")) {
+			try {
+				runArchive = new GenotypeArchive(FileUtilities.getSaveDirectory() + "/" + ARCHIVE_FILE);
+			} catch (IOException e) {
+				System.out.println("Could not open genotype archive: " + e.getMessage());
+				// Do not keep trying
+				Parameters.parameters.setBoolean("genotypeArchive", false);
+			}
+		}
+		return runArchive;
+	}
+
+	/**
+	 * Archive of the current run for loading genotypes only. This is the
+	 * archive returned by runArchive if it is already open for appending.
+	 * Otherwise the archive file is opened read-only, so it is never
+	 * changed, even if the run that writes it is still going.
+	 *
+	 * @return archive, or null if archiving is disabled or there is no archive file
+	 */
+	public static synchronized GenotypeArchive runArchiveForReading() {
+		if (runArchive != null) {
+			return runArchive;
+		}
+		if (runArchiveReader == null && Parameters.parameters != null && CommonConstants.netio && Parameters.parameters.booleanParameter("genotypeArchive")) {
+			String filename = FileUtilities.getSaveDirectory() + "/" + ARCHIVE_FILE;
+			if (new File(filename).isFile()) {
+				try {
+					runArchiveReader = new GenotypeArchive(filename, true);
+				} catch (IOException e) {
+					System.out.println("Could not open genotype archive: " + e.getMessage());
+				}
+			}
+		}
+		return runArchiveReader;
+	}
+
+	/**
+	 * Close the archive of the current run, if it was opened
+	 */
+	public static synchronized void closeRunArchive() {
+		if (runArchive != null) {
+			runArchive.close();
+			runArchive = null;
+		}
+		if (runArchiveReader != null) {
+			runArchiveReader.close();
+			runArchiveReader = null;
+		}
+	}
+
+	/**
+	 * Open an archive for appending, creating it if it does not exist
+	 *
+	 * @param filename archive file
+	 * @throws IOException if the file cannot be opened or is corrupt
+	 */
+	public GenotypeArchive(String filename) throws IOException {
+		this(filename, false);
+	}
+
+	/**
+	 * Open an archive. A writable archive is created if it does not exist,
+	 * and an incomplete record at the end, left by an interrupted run, is
+	 * discarded. A read-only archive must exist, and only complete records
+	 * are indexed. Its file is never changed.
+	 *
+	 * @param filename archive file
+	 * @param readOnly whether the archive is only used to load genotypes
+	 * @throws IOException if the file cannot be opened or is corrupt
+	 */
+	public GenotypeArchive(String filename, boolean readOnly) throws IOException {
+		this.filename = filename;
+		this.readOnly = readOnly;
+		if (!readOnly) {
+			File parent = new File(filename).getAbsoluteFile().getParentFile();
+			if (parent != null) {
+				parent.mkdirs();
+			}
+		}
+		this.file = new RandomAccessFile(filename, readOnly ? "r" : "rw");
+		this.channel = file.getChannel();
+		this.end = 0;
+		long size = indexRecords();
+		if (!readOnly && end < size) {
+			System.out.println("Discarding incomplete record at end of " + filename);
+			channel.truncate(end);
+		}
+	}
+
+	/**
+	 * Index the complete records after the end of the ones already indexed,
+	 * by reading only their headers, and move the end past them
+	 *
+	 * @return current size of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	private long indexRecords() throws IOException {
+		long size = channel.size();
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		long position = end;
+		while (position + HEADER_BYTES <= size) {
+			header.clear();
+			channel.read(header, position);
+			header.flip();
+			long id = header.getLong();
+			int length = header.getInt();
+			if (length < 0 || position + HEADER_BYTES + length > size) {
+				break; // Incomplete or corrupt record, possibly still being written
+			}
+			index(id, position);
+			position += HEADER_BYTES + length;
+		}
+		end = position;
+		return size;
+	}
+
+	private void index(long id, long position) {
+		if (offsets.put(id, position) == null) {
+			ids.add(id);
+		}
+	}
+
+	/**
+	 * Append a genotype, unless it is already in the archive
+	 *
+	 * @param g genotype
+	 * @return whether the genotype is now in the archive (false for non-TWEANN genotypes)
+	 * @throws IllegalStateException if the archive was opened read-only
+	 */
+	public synchronized boolean append(Genotype<?> g) {
+		if (readOnly) {
+			throw new IllegalStateException("Cannot append to read-only archive " + filename);
+		}
+		if (!(g instanceof TWEANNGenotype)) {
+			return false;
+		}
+		if (offsets.containsKey(g.getId())) {
+			return true;
+		}
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeLong(g.getId());
+			out.writeInt(0); // length, filled in below
+			TWEANNGenotypeBinaryFormat.writeGenotype((TWEANNGenotype) g, out);
+			out.flush();
+			ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+			record.putInt(8, record.capacity() - HEADER_BYTES);
+			long position = end;
+			while (record.hasRemaining()) {
+				channel.write(record, position + record.position());
+			}
+			index(g.getId(), position);
+			end += record.capacity();
+			return true;
+		} catch (IOException e) {
+			System.out.println("Could not append genotype " + g.getId() + " to " + filename + ": " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Append every genotype in a list
+	 *
+	 * @param population genotypes
+	 */
+	public synchronized void appendAll(List<? extends Genotype<?>> population) {
+		for (Genotype<?> g : population) {
+			append(g);
+		}
+	}
+
+	/**
+	 * Whether a genotype is in the archive
+	 *
+	 * @param id genotype id
+	 * @return true if present
+	 */
+	public synchronized boolean contains(long id) {
+		return offset(id) != null;
+	}
+
+	/**
+	 * Position of a record. A read-only archive checks for records appended
+	 * since they were last indexed before giving up on an id.
+	 *
+	 * @param id genotype id
+	 * @return position, or null if the id is not in the archive
+	 */
+	private Long offset(long id) {
+		Long position = offsets.get(id);
+		if (position == null && readOnly) {
+			try {
+				indexRecords();
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not read " + filename, e);
+			}
+			position = offsets.get(id);
+		}
+		return position;
+	}
+
+	/**
+	 * Load a genotype from the archive
+	 *
+	 * @param id genotype id
+	 * @return genotype, or null if the id is not in the archive
+	 */
+	public synchronized TWEANNGenotype get(long id) {
+		Long position = offset(id);
+		if (position == null) {
+			return null;
+		}
+		try {
+			if (mapped == null || mapped.capacity() < end) {
+				mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+			}
+			ByteBuffer record = mapped.duplicate();
+			record.position((int) (position + 8));
+			int length = record.getInt();
+			record.limit(record.position() + length);
+			return (TWEANNGenotype) TWEANNGenotypeBinaryFormat.readRecord(new DataInputStream(new ByteBufferInputStream(record)));
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read genotype " + id + " from " + filename, e);
+		}
+	}
+
+	/**
+	 * Ids of all archived genotypes, in the order they were appended
+	 *
+	 * @return list of ids
+	 */
+	public synchronized List<Long> ids() {
+		return new ArrayList<Long>(ids);
+	}
+
+	/**
+	 * @return number of archived genotypes
+	 */
+	public synchronized int size() {
+		return ids.size();
+	}
+
+	/**
+	 * Close the file. The archive cannot be used afterwards.
+	 */
+	public synchronized void close() {
+		mapped = null;
+		try {
+			if (!readOnly) {
+				channel.force(true);
+			}
+			file.close();
+		} catch (IOException e) {
+			System.out.println("Could not close " + filename + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads the remaining bytes of a buffer without copying them
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package edu.southwestern.data;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import edu.southwestern.evolution.genotypes.TWEANNGenotype;
+import edu.southwestern.evolution.genotypes.TWEANNGenotype.NodeGene;
+import wox.serial.Easy;
+
+/**
+ * Converts saved TWEANNGenotypes and archetypes between woxser XML and the
+ * binary format of TWEANNGenotypeBinaryFormat. Files keep their names and
+ * are replaced in place. Other saved objects (such as scores) are left alone.
+ *
+ * Usage: GenotypeFileConverter binary|xml file-or-directory ...
+ *
+ * Directories are searched recursively for files ending in .xml.
+ *
+ * @author Jacob Schrum
+ */
+public class GenotypeFileConverter {
+
+	private static int converted = 0;
+	private static int skipped = 0;
+
+	public static void main(String[] args) {
+		if (args.length < 2 || !(args[0].equals("binary") || args[0].equals("xml"))) {
+			System.out.println("Usage: GenotypeFileConverter binary|xml file-or-directory ...");
+			System.exit(1);
+		}
+		boolean toBinary = args[0].equals("binary");
+		for (int i = 1; i < args.length; i++) {
+			convert(new File(args[i]), toBinary);
+		}
+		System.out.println("Converted " + converted + " files, skipped " + skipped);
+	}
+
+	/**
+	 * Convert a file, or all .xml files within a directory
+	 *
+	 * @param file file or directory
+	 * @param toBinary true to convert to binary, false to convert to XML
+	 */
+	@SuppressWarnings("unchecked")
+	public static void convert(File file, boolean toBinary) {
+		if (file.isDirectory()) {
+			File[] children = file.listFiles();
+			if (children != null) {
+				for (File child : children) {
+					if (child.isDirectory() || child.getName().endsWith(".xml")) {
+						convert(child, toBinary);
+					}
+				}
+			}
+			return;
+		}
+		String filename = file.getPath();
+		if (GenotypeFiles.isBinary(filename) == toBinary) {
+			skipped++; // Already in the desired format
+			return;
+		}
+		Object loaded = GenotypeFiles.load(filename);
+		boolean archetype = loaded instanceof ArrayList && isNodeGeneList((ArrayList<?>) loaded);
+		if (!(loaded instanceof TWEANNGenotype) && !archetype) {
+			skipped++;
+			return;
+		}
+		// Write to a separate file first, so a failure does not destroy the original
+		File temp = new File(filename + ".converting");
+		if (!toBinary) {
+			Easy.save(loaded, temp.getPath());
+		} else if (archetype) {
+			GenotypeFiles.saveArchetype((ArrayList<NodeGene>) loaded, temp.getPath(), true);
+		} else {
+			GenotypeFiles.saveBinary((TWEANNGenotype) loaded, temp.getPath());
+		}
+		if (!file.delete() || !temp.renameTo(file)) {
+			throw new IllegalStateException("Could not replace " + filename + " with " + temp);
+		}
+		converted++;
+	}
+
+	private static boolean isNodeGeneList(ArrayList<?> list) {
+		for (Object o : list) {
+			if (!(o instanceof NodeGene)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,138 @@
+package edu.southwestern.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import edu.southwestern.evolution.genotypes.TWEANNGenotype;
+import edu.southwestern.evolution.genotypes.TWEANNGenotype.NodeGene;
+import edu.southwestern.evolution.genotypes.TWEANNGenotypeBinaryFormat;
+import edu.southwestern.parameters.Parameters;
+import wox.serial.Easy;
+
+/**
+ * Saving and loading of genotypes and related objects. TWEANNGenotypes and
+ * archetypes are saved in the compact binary format of
+ * TWEANNGenotypeBinaryFormat when the binaryGenotypes parameter is true.
+ * Everything else is saved as woxser XML. Loading detects the format from
+ * the start of the file, so files saved either way can always be loaded.
+ *
+ * File names are not changed, so binary genotypes are still saved in files
+ * ending in .xml, where all existing code expects to find them. Since tools
+ * outside this code base and older versions of it cannot read those files,
+ * binary saving is off unless the parameter is set.
+ *
+ * @author Jacob Schrum
+ */
+public class GenotypeFiles {
+
+	/**
+	 * Whether TWEANNGenotypes and archetypes are saved in binary
+	 *
+	 * @return binaryGenotypes parameter, or false if there are no parameters
+	 */
+	public static boolean binaryEnabled() {
+		return Parameters.parameters != null && Parameters.parameters.booleanParameter("binaryGenotypes");
+	}
+
+	/**
+	 * Save an object, in binary if it is a TWEANNGenotype and binary saving
+	 * is enabled, and as XML otherwise.
+	 *
+	 * @param object object to save
+	 * @param filename file to save to
+	 */
+	public static void save(Object object, String filename) {
+		if (binaryEnabled() && object instanceof TWEANNGenotype) {
+			saveBinary((TWEANNGenotype) object, filename);
+		} else {
+			Easy.save(object, filename);
+		}
+	}
+
+	/**
+	 * Save an archetype, in binary if binary saving is enabled
+	 *
+	 * @param archetype node genes of the archetype
+	 * @param filename file to save to
+	 */
+	public static void saveArchetype(ArrayList<NodeGene> archetype, String filename) {
+		saveArchetype(archetype, filename, binaryEnabled());
+	}
+
+	/**
+	 * Save an archetype in a specific format
+	 *
+	 * @param archetype node genes of the archetype
+	 * @param filename file to save to
+	 * @param binary true for binary, false for XML
+	 */
+	public static void saveArchetype(ArrayList<NodeGene> archetype, String filename, boolean binary) {
+		if (binary) {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+				TWEANNGenotypeBinaryFormat.writeArchetype(archetype, out);
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not save archetype to " + filename, e);
+			}
+		} else {
+			Easy.save(archetype, filename);
+		}
+	}
+
+	/**
+	 * Save a genotype in binary, regardless of the binaryGenotypes parameter
+	 *
+	 * @param g genotype to save
+	 * @param filename file to save to
+	 */
+	public static void saveBinary(TWEANNGenotype g, String filename) {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+			TWEANNGenotypeBinaryFormat.writeGenotype(g, out);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not save genotype to " + filename, e);
+		}
+	}
+
+	/**
+	 * Load an object saved by save or saveArchetype, or by woxser directly.
+	 *
+	 * @param filename file to load
+	 * @return loaded object
+	 */
+	public static Object load(String filename) {
+		if (isBinary(filename)) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+				return TWEANNGenotypeBinaryFormat.readRecord(in);
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not load binary genotype from " + filename, e);
+			}
+		}
+		return Easy.load(filename);
+	}
+
+	/**
+	 * Whether a file is in the binary format, based on its first bytes
+	 *
+	 * @param filename file to check
+	 * @return true if binary, false if XML (or unreadable, which woxser will report)
+	 */
+	public static boolean isBinary(String filename) {
+		byte[] start = new byte[TWEANNGenotypeBinaryFormat.MAGIC.length];
+		try (InputStream in = new FileInputStream(filename)) {
+			int length = 0;
+			int read;
+			while (length < start.length && (read = in.read(start, length, start.length - length)) > 0) {
+				length += read;
+			}
+			return TWEANNGenotypeBinaryFormat.hasMagic(start, length);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+}
@@ -1,8 +1,10 @@
 package edu.southwestern.evolution;
 
 import edu.southwestern.evolution.crossover.network.CombiningTWEANNCrossover;
+import edu.southwestern.data.GenotypeFiles;
 import edu.southwestern.evolution.genotypes.CombinedGenotype;
 import edu.southwestern.evolution.genotypes.Genotype;
+import edu.southwestern.evolution.genotypes.InnovationIndex;
 import edu.southwestern.evolution.genotypes.TWEANNGenotype;
 import edu.southwestern.evolution.genotypes.TWEANNGenotype.NodeGene;
 import edu.southwestern.log.MMNEATLog;
@@ -21,7 +23,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 
-import wox.serial.Easy;
 
 /**
  * Stores and tracks information about a population of networks. Uses an
@@ -41,6 +42,8 @@ public class EvolutionaryHistory {
 	// keeps track of archetype of every genotype from each generation of every
 	// member of population in an array list
 	public static ArrayList<NodeGene>[] archetypes = null;
+	// lookup of archetype nodes by innovation number, one per population
+	private static InnovationIndex[] archetypeIndices = null;
 	public static int[] archetypeOut = null;
 	// logs that keep track of history of genotype
 	public static TWEANNLog tweannLog = null;
@@ -74,7 +77,7 @@ public class EvolutionaryHistory {
 		// loadedNetworks hashmap
 		if (!loadedNetworks.containsKey(xml)) {
 			System.out.println("Added to subnetworks: " + xml);
-			loadedNetworks.put(xml, (Genotype<T>) Easy.load(xml));
+			loadedNetworks.put(xml, (Genotype<T>) GenotypeFiles.load(xml));
 		}
 		return loadedNetworks.get(xml).copy();
 	}
@@ -226,7 +229,7 @@ public class EvolutionaryHistory {
 			// The loaded archetype might not simply be from a resume, the seed
 			// could be from elsewhere
 			System.out.println("Loading archetype: " + loadedArchetype);
-			archetypes[populationIndex] = (ArrayList<NodeGene>) Easy.load(loadedArchetype);
+			archetypes[populationIndex] = (ArrayList<NodeGene>) GenotypeFiles.load(loadedArchetype);
 			String combiningCrossoverFile = Parameters.parameters.stringParameter("combiningCrossoverMapping");
 			// implement for multimodal behavior. Allows for combining of two separate subpopulations to create a multimodal network
 			if (!combiningCrossoverFile.isEmpty()) {
@@ -279,7 +282,7 @@ public class EvolutionaryHistory {
 			String file = FileUtilities.getSaveDirectory() + "/" + "archetype";
 			Parameters.parameters.setString("archetype", file);
 			file += populationIndex + ".xml";
-			Easy.save(archetypes[populationIndex], file);
+			GenotypeFiles.saveArchetype(archetypes[populationIndex], file);
 			System.out.println("Done saving " + file);
 			// Could make more explicit using
 			// CommonConstants.trackCombiningCrossover
@@ -384,11 +387,13 @@ public class EvolutionaryHistory {
 	 */
 	public static int indexOfArchetypeInnovation(int populationIndex, long sourceInnovation) {
 		if (archetypes[populationIndex] != null) {
-			for (int i = 0; i < archetypes[populationIndex].size(); i++) {
-				if (archetypes[populationIndex].get(i).innovation == sourceInnovation) {
-					return i;
-				}
+			if (archetypeIndices == null || archetypeIndices.length != archetypes.length) {
+				archetypeIndices = new InnovationIndex[archetypes.length];
+			}
+			if (archetypeIndices[populationIndex] == null) {
+				archetypeIndices[populationIndex] = new InnovationIndex();
 			}
+			return archetypeIndices[populationIndex].indexOf(sourceInnovation, archetypes[populationIndex]);
 		}
 		return -1;// returns if innovation number not found
 	}
@@ -0,0 +1,140 @@
+package edu.southwestern.evolution.genotypes;
+
+import java.util.Arrays;
+
+import edu.southwestern.evolution.genotypes.TWEANNGenotype.LinkGene;
+import edu.southwestern.evolution.genotypes.TWEANNGenotype.NodeGene;
+import edu.southwestern.networks.TWEANN;
+import edu.southwestern.parameters.Parameters;
+import edu.southwestern.tasks.interactive.picbreeder.PhenotypeConstructionBenchmark;
+import edu.southwestern.util.random.RandomNumbers;
+
+/**
+ * Compares TWEANNGenotype.copy() with the old way of copying, which built a
+ * TWEANN phenotype and then generated a new genotype from it. First checks
+ * that every field of both copies is the same, and then times each one.
+ * The genotypes include disabled links, frozen genes, and parallel links
+ * with different recurrent flags, and are marked as hierarchical, since
+ * the round trip treats all of those specially.
+ *
+ * Run with a command line parameter to set the number of timed rounds.
+ *
+ * @author Jacob Schrum
+ */
+public class GenotypeCopyBenchmark {
+
+	public static final int[] HIDDEN = new int[] {10, 50, 200, 800};
+	public static final int LINKS_PER_HIDDEN = 5;
+	// Some links are disabled, as happens after evolution
+	public static final double INACTIVE_RATE = 0.1;
+	public static final double FROZEN_RATE = 0.1;
+	// Links that get a parallel link to the same target
+	public static final double PARALLEL_RATE = 0.05;
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		Parameters.initializeParameterCollections(new String[] {"io:false","netio:false","allowMultipleFunctions:true"});
+		RandomNumbers.reset(0);
+		for(int pass = 0; pass < 2; pass++) { // The first pass warms up the JIT
+			for(int hidden : HIDDEN) {
+				TWEANNGenotype g = PhenotypeConstructionBenchmark.layeredGenome(hidden, LINKS_PER_HIDDEN);
+				g.hierarchicalMultitask = true;
+				for(NodeGene ng : g.nodes) {
+					if(RandomNumbers.randomGenerator.nextDouble() < FROZEN_RATE) {
+						ng.freeze();
+					}
+				}
+				int numLinks = g.links.size();
+				for(int i = 0; i < numLinks; i++) {
+					LinkGene lg = g.links.get(i);
+					if(RandomNumbers.randomGenerator.nextDouble() < PARALLEL_RATE) {
+						g.links.add(RandomNumbers.randomGenerator.nextInt(g.links.size()), TWEANNGenotype.newLinkGene(lg.sourceInnovation, lg.targetInnovation,
+								RandomNumbers.fullSmallRand(), -1 - i, !lg.isRecurrent(), false));
+					}
+				}
+				for(LinkGene lg : g.links) {
+					if(RandomNumbers.randomGenerator.nextDouble() < INACTIVE_RATE) {
+						lg.setActive(false);
+					}
+					if(RandomNumbers.randomGenerator.nextDouble() < FROZEN_RATE) {
+						lg.freeze();
+					}
+				}
+
+				// Compare fields, since the copies have different ids
+				String difference = difference(roundTrip(g), (TWEANNGenotype) g.copy());
+				if(difference != null) {
+					throw new IllegalStateException("Copies differ in " + difference);
+				}
+
+				long start = System.nanoTime();
+				for(int r = 0; r < rounds; r++) {
+					roundTrip(g);
+				}
+				long old = System.nanoTime() - start;
+				start = System.nanoTime();
+				for(int r = 0; r < rounds; r++) {
+					g.copy();
+				}
+				long direct = System.nanoTime() - start;
+				if(pass == 1) {
+					System.out.println(g.nodes.size() + " nodes, " + g.links.size() + " links: phenotype round trip " + (old / rounds / 1000.0) + " us, direct copy " + (direct / rounds / 1000.0) + " us");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compare every field of two genotypes except their ids
+	 *
+	 * @param expected copy made the old way
+	 * @param actual copy made by TWEANNGenotype.copy()
+	 * @return description of the first difference, or null if there is none
+	 */
+	private static String difference(TWEANNGenotype expected, TWEANNGenotype actual) {
+		if(expected.numIn != actual.numIn || expected.numOut != actual.numOut) return "numIn or numOut";
+		if(expected.numModules != actual.numModules || expected.neuronsPerModule != actual.neuronsPerModule) return "numModules or neuronsPerModule";
+		if(expected.standardMultitask != actual.standardMultitask) return "standardMultitask";
+		if(expected.hierarchicalMultitask != actual.hierarchicalMultitask) return "hierarchicalMultitask";
+		if(expected.archetypeIndex != actual.archetypeIndex) return "archetypeIndex";
+		if(!Arrays.equals(expected.moduleAssociations, actual.moduleAssociations)) return "moduleAssociations";
+		if(!Arrays.equals(expected.moduleUsage, actual.moduleUsage)) return "moduleUsage";
+		if(expected.nodes.size() != actual.nodes.size()) return "number of nodes";
+		for(int i = 0; i < expected.nodes.size(); i++) {
+			NodeGene e = expected.nodes.get(i);
+			NodeGene a = actual.nodes.get(i);
+			if(e.getClass() != a.getClass() || e.innovation != a.innovation || e.ftype != a.ftype || e.ntype != a.ntype
+					|| e.isFrozen() != a.isFrozen() || Double.doubleToLongBits(e.getBias()) != Double.doubleToLongBits(a.getBias())) {
+				return "node " + i + ": " + e + " " + a;
+			}
+		}
+		if(expected.links.size() != actual.links.size()) return "number of links";
+		for(int i = 0; i < expected.links.size(); i++) {
+			LinkGene e = expected.links.get(i);
+			LinkGene a = actual.links.get(i);
+			if(e.getClass() != a.getClass() || e.innovation != a.innovation || e.sourceInnovation != a.sourceInnovation || e.targetInnovation != a.targetInnovation
+					|| Double.doubleToLongBits(e.weight) != Double.doubleToLongBits(a.weight) || e.isActive() != a.isActive()
+					|| e.isRecurrent() != a.isRecurrent() || e.isFrozen() != a.isFrozen()) {
+				return "link " + i + ": " + e + " " + a;
+			}
+			// The stored recurrent flag is saved with the genotype, even though isRecurrent does not report it
+			if(e instanceof TWEANNGenotype.FullLinkGene && ((TWEANNGenotype.FullLinkGene) e).recurrent != ((TWEANNGenotype.FullLinkGene) a).recurrent) {
+				return "recurrent flag of link " + i + ": " + e + " " + a;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The old implementation of TWEANNGenotype.copy()
+	 *
+	 * @param g genotype to copy
+	 * @return copy
+	 */
+	private static TWEANNGenotype roundTrip(TWEANNGenotype g) {
+		TWEANNGenotype result = new TWEANNGenotype(new TWEANN(g));
+		result.moduleUsage = new int[g.moduleUsage.length];
+		System.arraycopy(g.moduleUsage, 0, result.moduleUsage, 0, g.moduleUsage.length);
+		return result;
+	}
+}
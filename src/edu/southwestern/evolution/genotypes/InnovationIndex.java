@@ -0,0 +1,94 @@
+package edu.southwestern.evolution.genotypes;
+
+import java.util.List;
+
+import edu.southwestern.evolution.genotypes.TWEANNGenotype.Gene;
+import edu.southwestern.util.datastructures.LongIntHashMap;
+
+/**
+ * Lazily built index from innovation number to position in a list of genes.
+ * Gene lists are public and are changed in many places (mutation, crossover,
+ * sorting), so the index is never updated along with them. Instead, every
+ * result is checked against the list, and the index is rebuilt when it
+ * turns out to be out of date:
+ * 
+ * - the list is a different object, or has a different size, than when the
+ *   index was built
+ * - the gene at the indexed position does not have the requested innovation
+ *   number (the list was reordered, or genes were removed and added)
+ * - the innovation number is not indexed, but a linear scan finds it (a gene
+ *   was added after others were removed, leaving the size the same)
+ * 
+ * So a gene in the list is always found, and -1 always means it is absent.
+ * A miss costs as much as a linear scan, which is what every lookup cost
+ * before the index existed, and hits on an unchanged list take constant time.
+ * 
+ * As with a linear scan, if several genes share an innovation number, the
+ * position of the first one is returned. The one exception is when such
+ * genes were reordered since the index was built: a hit is only checked
+ * against the gene it points to, so another one of them may be returned.
+ * Innovation numbers are unique within a genotype, so this does not arise
+ * for genotype lookups.
+ *
+ * @author Jacob Schrum
+ */
+public class InnovationIndex {
+
+	private List<? extends Gene> indexed = null;
+	private int indexedSize = -1;
+	private LongIntHashMap positions = null;
+
+	/**
+	 * Position of the first gene with the given innovation number
+	 *
+	 * @param innovation innovation number to find
+	 * @param genes list of genes to search
+	 * @return index in genes, or -1 if not present
+	 */
+	public int indexOf(long innovation, List<? extends Gene> genes) {
+		boolean rebuilt = false;
+		if (genes != indexed || genes.size() != indexedSize) {
+			rebuild(genes);
+			rebuilt = true;
+		}
+		int pos = positions.get(innovation);
+		if (pos != -1 && (pos >= genes.size() || genes.get(pos).innovation != innovation)) {
+			// List was changed
+			rebuild(genes);
+			return positions.get(innovation);
+		}
+		if (pos == -1 && !rebuilt && linearSearch(innovation, genes) != -1) {
+			// Gene was added without changing the size
+			rebuild(genes);
+			return positions.get(innovation);
+		}
+		return pos;
+	}
+
+	/**
+	 * Force the index to be rebuilt on the next lookup
+	 */
+	public void invalidate() {
+		indexed = null;
+		indexedSize = -1;
+	}
+
+	private static int linearSearch(long innovation, List<? extends Gene> genes) {
+		for (int i = 0; i < genes.size(); i++) {
+			if (genes.get(i).innovation == innovation) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void rebuild(List<? extends Gene> genes) {
+		positions = new LongIntHashMap(genes.size());
+		// Backwards, so that the first of any duplicates wins
+		for (int i = genes.size() - 1; i >= 0; i--) {
+			positions.put(genes.get(i).innovation, i);
+		}
+		indexed = genes;
+		indexedSize = genes.size();
+	}
+}
@@ -0,0 +1,100 @@
+package edu.southwestern.evolution.genotypes;
+
+import java.util.List;
+
+import edu.southwestern.evolution.genotypes.TWEANNGenotype.LinkGene;
+import edu.southwestern.util.datastructures.LongIntHashMap;
+
+/**
+ * Lazily built index from a (source, target) pair of node innovation
+ * numbers to the position of the first link between them. Checked and
+ * rebuilt in the same way as InnovationIndex, so a link in the list is
+ * always found. addLink never creates a second link between the same
+ * nodes, so there is normally only one link per pair.
+ * 
+ * Pairs are hashed into a single long key. If two pairs ever collide, the
+ * lookup falls back to a linear scan, so results are always exact.
+ *
+ * @author Jacob Schrum
+ */
+public class LinkPairIndex {
+
+	private List<LinkGene> indexed = null;
+	private int indexedSize = -1;
+	private LongIntHashMap positions = null;
+
+	/**
+	 * Position of the first link from source to target
+	 *
+	 * @param sourceInnovation innovation number of source node
+	 * @param targetInnovation innovation number of target node
+	 * @param links list of link genes to search
+	 * @return index in links, or -1 if there is no such link
+	 */
+	public int indexOf(long sourceInnovation, long targetInnovation, List<LinkGene> links) {
+		boolean rebuilt = false;
+		if (links != indexed || links.size() != indexedSize) {
+			rebuild(links);
+			rebuilt = true;
+		}
+		int pos = positions.get(key(sourceInnovation, targetInnovation));
+		if (pos == -1 && !rebuilt) {
+			// Confirm the miss, since a link may have been added without changing the size
+			pos = linearSearch(sourceInnovation, targetInnovation, links);
+			if (pos != -1) {
+				rebuild(links);
+			}
+			return pos;
+		}
+		if (pos != -1 && !matches(links, pos, sourceInnovation, targetInnovation)) {
+			// List was changed
+			rebuild(links);
+			pos = positions.get(key(sourceInnovation, targetInnovation));
+			if (pos != -1 && !matches(links, pos, sourceInnovation, targetInnovation)) {
+				// Two pairs share a key
+				return linearSearch(sourceInnovation, targetInnovation, links);
+			}
+		}
+		return pos;
+	}
+
+	/**
+	 * Force the index to be rebuilt on the next lookup
+	 */
+	public void invalidate() {
+		indexed = null;
+		indexedSize = -1;
+	}
+
+	private static boolean matches(List<LinkGene> links, int pos, long sourceInnovation, long targetInnovation) {
+		if (pos >= links.size()) {
+			return false;
+		}
+		LinkGene lg = links.get(pos);
+		return lg.sourceInnovation == sourceInnovation && lg.targetInnovation == targetInnovation;
+	}
+
+	private static int linearSearch(long sourceInnovation, long targetInnovation, List<LinkGene> links) {
+		for (int i = 0; i < links.size(); i++) {
+			if (matches(links, i, sourceInnovation, targetInnovation)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void rebuild(List<LinkGene> links) {
+		positions = new LongIntHashMap(links.size());
+		// Backwards, so that the first of any duplicates wins
+		for (int i = links.size() - 1; i >= 0; i--) {
+			LinkGene lg = links.get(i);
+			positions.put(key(lg.sourceInnovation, lg.targetInnovation), i);
+		}
+		indexed = links;
+		indexedSize = links.size();
+	}
+
+	private static long key(long sourceInnovation, long targetInnovation) {
+		return sourceInnovation * 0x9E3779B97F4A7C15L + targetInnovation;
+	}
+}
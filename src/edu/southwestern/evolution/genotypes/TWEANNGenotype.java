@@ -4,16 +4,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
 import edu.southwestern.MMNEAT.MMNEAT;
 import edu.southwestern.evolution.EvolutionaryHistory;
 import edu.southwestern.evolution.MultiplePopulationGenerationalEA;
+import edu.southwestern.evolution.mutation.MutationRecord;
 import edu.southwestern.evolution.mutation.tweann.ActivationFunctionMutation;
 import edu.southwestern.evolution.mutation.tweann.AllWeightMutation;
 import edu.southwestern.evolution.mutation.tweann.DeleteLinkMutation;
@@ -33,6 +32,7 @@ import edu.southwestern.networks.TWEANN;
 import edu.southwestern.parameters.CommonConstants;
 import edu.southwestern.parameters.Parameters;
 import edu.southwestern.util.datastructures.ArrayUtil;
+import edu.southwestern.util.datastructures.LongIntHashMap;
 import edu.southwestern.util.random.RandomGenerator;
 import edu.southwestern.util.random.RandomNumbers;
 import edu.southwestern.util.stats.StatisticsUtilities;
@@ -396,8 +396,13 @@ public class TWEANNGenotype implements NetworkGenotype<TWEANN> {
     // multitask mode
     public int[] moduleAssociations;
     protected int[] moduleUsage;
-    private long id = EvolutionaryHistory.nextGenotypeId();
+    // Assigned by the constructors, so that loading a genotype does not use up an id
+    private long id;
     public int archetypeIndex;
+    // Lookup of genes by innovation number, rebuilt when the gene lists change
+    private transient InnovationIndex nodeIndex = new InnovationIndex();
+    private transient InnovationIndex linkIndex = new InnovationIndex();
+    private transient LinkPairIndex linkPairIndex = new LinkPairIndex();
 
     // Added to allow tracking of who parents are for score history purposes
 	transient List<Long> parents = new LinkedList<Long>();
@@ -436,6 +441,7 @@ public class TWEANNGenotype implements NetworkGenotype<TWEANN> {
      */
     public TWEANNGenotype(ArrayList<NodeGene> nodes, ArrayList<LinkGene> links, int neuronsPerModule,
             boolean standardMultitask, boolean hierarchicalMultitask, int archetypeIndex) {
+        this.id = EvolutionaryHistory.nextGenotypeId();
         this.archetypeIndex = archetypeIndex;
         this.nodes = nodes;
         this.links = links;
@@ -500,12 +506,28 @@ public class TWEANNGenotype implements NetworkGenotype<TWEANN> {
         return count;
     }
 
+    /**
+     * Genotype being loaded from a file, which keeps its saved id. Every
+     * field is set directly, without any of the derived values or checks
+     * of the other constructors. Used by TWEANNGenotypeBinaryFormat.
+     *
+     * @param id Saved genotype id
+     * @param nodes List of node genes
+     * @param links List of link genes
+     */
+    TWEANNGenotype(long id, ArrayList<NodeGene> nodes, ArrayList<LinkGene> links) {
+        this.id = id;
+        this.nodes = nodes;
+        this.links = links;
+    }
+
     /**
      * New genotype encoded based on a TWEANN phenotype
      *
      * @param tweann The network to make a genotype for
      */
     public TWEANNGenotype(TWEANN tweann) {
+        id = EvolutionaryHistory.nextGenotypeId();
         archetypeIndex = tweann.archetypeIndex;
         numIn = tweann.numInputs();
         numOut = tweann.numOutputs();
@@ -592,18 +614,18 @@ public class TWEANNGenotype implements NetworkGenotype<TWEANN> {
     @Override
     public void mutate() {
         // System.out.println("Mutate:" + this.id);
-        StringBuilder sb = new StringBuilder();
-        sb.append(this.getId());
-        sb.append(" ");
+        TWEANNMutations m = TWEANNMutations.current();
+        MutationRecord record = MUTATION_RECORD.get();
+        record.clear(this.getId());
         // Melting/Freezing
-        new MeltThenFreezePolicyMutation().go(this, sb);
-        new MeltThenFreezePreferenceMutation().go(this, sb);
-        new MeltThenFreezeAlternateMutation().go(this, sb);
+        m.meltThenFreezePolicy.go(this, record);
+        m.meltThenFreezePreference.go(this, record);
+        m.meltThenFreezeAlternate.go(this, record);
         // Delete
-        new DeleteLinkMutation().go(this, sb);
-        //new DeleteModeMutation().go(this, sb); // Disabled until fixed; currently not supported
+        m.deleteLink.go(this, record);
+        //new DeleteModeMutation().go(this, record); // Disabled until fixed; currently not supported
         if (CommonConstants.allowMultipleFunctions) { // Can turn a TWEANN into a CPPN
-            new ActivationFunctionMutation().go(this, sb);
+            m.activationFunction.go(this, record);
         }
         // Forms of mode mutation
         if (this.numModules < CommonConstants.maxModes
@@ -619,28 +641,69 @@ public class TWEANNGenotype implements NetworkGenotype<TWEANN> {
                 && // If using niche restriction
                 (!CommonConstants.nicheRestrictionOnModeMutation)) {
             // System.out.println("In Mode Mutation Block");
-            new MMP().go(this, sb);
-            new MMR().go(this, sb);
-            new MMD().go(this, sb);
-            new FullyConnectedModuleMutation().go(this, sb);
+            m.mmp.go(this, record);
+            m.mmr.go(this, record);
+            m.mmd.go(this, record);
+            m.fullyConnectedModule.go(this, record);
         }
         // Standard NEAT mutations
         int chance = 0;
         do {
-            new SpliceNeuronMutation().go(this, sb);
-            new NewLinkMutation().go(this, sb);
+            m.spliceNeuron.go(this, record);
+            m.newLink.go(this, record);
             chance++;
         } while (CommonConstants.mutationChancePerMode && chance < this.numModules);
 
         if (CommonConstants.polynomialWeightMutation) {
-            new PolynomialWeightMutation().go(this, sb);
+            m.polynomialWeight.go(this, record);
         } else if (CommonConstants.perLinkMutateRate > 0) {
-            new AllWeightMutation().go(this, sb);
+            m.allWeight.go(this, record);
         } else {
-            new WeightPurturbationMutation().go(this, sb);
+            m.weightPerturbation.go(this, record);
         }
 
-        EvolutionaryHistory.logMutationData(sb.toString());
+        // Only format the record if there is somewhere to write it
+        if (EvolutionaryHistory.mutationLog != null) {
+            EvolutionaryHistory.logMutationData(record.toString());
+        }
+    }
+
+    // One reusable record per thread, since threads may mutate different genotypes at once
+    private static final ThreadLocal<MutationRecord> MUTATION_RECORD = ThreadLocal.withInitial(MutationRecord::new);
+
+    /**
+     * The mutation operators used by mutate(). Mutations keep no state
+     * about the genotype they mutate, so one instance of each is shared by
+     * all genotypes. Some operators read settings when they are constructed,
+     * so they are constructed again if the parameters or the weight
+     * perturber are replaced.
+     */
+    private static final class TWEANNMutations {
+        private static TWEANNMutations current = null;
+
+        final Parameters parameters = Parameters.parameters;
+        final RandomGenerator weightPerturber = MMNEAT.weightPerturber;
+        final MeltThenFreezePolicyMutation meltThenFreezePolicy = new MeltThenFreezePolicyMutation();
+        final MeltThenFreezePreferenceMutation meltThenFreezePreference = new MeltThenFreezePreferenceMutation();
+        final MeltThenFreezeAlternateMutation meltThenFreezeAlternate = new MeltThenFreezeAlternateMutation();
+        final DeleteLinkMutation deleteLink = new DeleteLinkMutation();
+        final ActivationFunctionMutation activationFunction = new ActivationFunctionMutation();
+        final MMP mmp = new MMP();
+        final MMR mmr = new MMR();
+        final MMD mmd = new MMD();
+        final FullyConnectedModuleMutation fullyConnectedModule = new FullyConnectedModuleMutation();
+        final SpliceNeuronMutation spliceNeuron = new SpliceNeuronMutation();
+        final NewLinkMutation newLink = new NewLinkMutation();
+        final PolynomialWeightMutation polynomialWeight = new PolynomialWeightMutation();
+        final AllWeightMutation allWeight = new AllWeightMutation();
+        final WeightPurturbationMutation weightPerturbation = new WeightPurturbationMutation();
+
+        static synchronized TWEANNMutations current() {
+            if (current == null || current.parameters != Parameters.parameters || current.weightPerturber != MMNEAT.weightPerturber) {
+                current = new TWEANNMutations();
+            }
+            return current;
+        }
     }
 
     /**
@@ -922,12 +985,8 @@ public class TWEANNGenotype implements NetworkGenotype<TWEANN> {
      * @return = null on failure, LinkGene otherwise
      */
     public LinkGene getLinkBetween(long sourceInnovation, long targetInnovation) {
-        for (LinkGene l : links) {
-            if (l.sourceInnovation == sourceInnovation && l.targetInnovation == targetInnovation) {
-                return l;
-            }
-        }
-        return null;
+        int index = linkPairIndex().indexOf(sourceInnovation, targetInnovation, links);
+        return index == -1 ? null : links.get(index);
     }
 
     /**
@@ -1103,7 +1162,9 @@ public class TWEANNGenotype implements NetworkGenotype<TWEANN> {
         nodes.add(Math.min(outputStartIndex(), Math.max(numIn, indexOfNodeInnovation(sourceInnovation) + 1)), ng);
         int index = EvolutionaryHistory.indexOfArchetypeInnovation(archetypeIndex, sourceInnovation);
         int pos = Math.min(EvolutionaryHistory.firstArchetypeOutputIndex(archetypeIndex), Math.max(numIn, index + 1));
-        EvolutionaryHistory.archetypeAdd(archetypeIndex, pos, ng.clone(), numModules == 1, "splice " + sourceInnovation + "->" + targetInnovation);
+        // The origin is only used when tracking combining crossover, so only build it then
+        EvolutionaryHistory.archetypeAdd(archetypeIndex, pos, ng.clone(), numModules == 1,
+                CommonConstants.trackCombiningCrossover ? "splice " + sourceInnovation + "->" + targetInnovation : null);
         LinkGene toNew = newLinkGene(sourceInnovation, newNodeInnovation, weight1, toLinkInnovation, indexOfNodeInnovation(newNodeInnovation) <= indexOfNodeInnovation(sourceInnovation));
         LinkGene fromNew = newLinkGene(newNodeInnovation, targetInnovation, weight2, fromLinkInnovation, indexOfNodeInnovation(targetInnovation) <= indexOfNodeInnovation(newNodeInnovation));
         links.add(toNew);
@@ -1154,12 +1215,11 @@ public class TWEANNGenotype implements NetworkGenotype<TWEANN> {
      * @return
      */
     private NodeGene getNodeWithInnovation(long innovation) {
-		for(NodeGene ng : nodes) {
-			if(ng.innovation == innovation) {
-				return ng;
-			}
+		int index = nodeIndex().indexOf(innovation, nodes);
+		if(index == -1) {
+			throw new IllegalArgumentException("Node innovation not found: " + innovation);
 		}
-		throw new IllegalArgumentException("Node innovation not found: " + innovation);
+		return nodes.get(index);
 	}
 
 	/**
@@ -1253,7 +1313,7 @@ public class TWEANNGenotype implements NetworkGenotype<TWEANN> {
      * @return Index in list where gene is located
      */
     private int indexOfNodeInnovation(long innovation) {
-        return indexOfGeneInnovation(innovation, nodes);
+        return indexOfGeneInnovation(innovation, nodes, nodeIndex());
     }
 
     /**
@@ -1265,17 +1325,63 @@ public class TWEANNGenotype implements NetworkGenotype<TWEANN> {
      */
     @SuppressWarnings("unused")
     private int indexOfLinkInnovation(long innovation) {
-        return indexOfGeneInnovation(innovation, links);
+        return indexOfGeneInnovation(innovation, links, linkIndex());
     }
 
-    private int indexOfGeneInnovation(long innovation, ArrayList<? extends Gene> genes) {
-        for (int i = 0; i < genes.size(); i++) {
-            if (genes.get(i).innovation == innovation) {
-                return i;
-            }
+    private int indexOfGeneInnovation(long innovation, ArrayList<? extends Gene> genes, InnovationIndex index) {
+        int result = index.indexOf(innovation, genes);
+        if (result == -1) {
+            System.out.println("innovation " + innovation + " not found in net " + this.getId());
         }
-        System.out.println("innovation " + innovation + " not found in net " + this.getId());
-        return -1;
+        return result;
+    }
+
+    /**
+     * Index of node genes by innovation number. Deserialized genotypes
+     * do not have one yet, since it is transient.
+     *
+     * @return node index
+     */
+    private InnovationIndex nodeIndex() {
+        if (nodeIndex == null) {
+            nodeIndex = new InnovationIndex();
+        }
+        return nodeIndex;
+    }
+
+    /**
+     * Index of link genes by innovation number
+     *
+     * @return link index
+     */
+    private InnovationIndex linkIndex() {
+        if (linkIndex == null) {
+            linkIndex = new InnovationIndex();
+        }
+        return linkIndex;
+    }
+
+    /**
+     * Index of link genes by source and target innovation numbers
+     *
+     * @return link pair index
+     */
+    private LinkPairIndex linkPairIndex() {
+        if (linkPairIndex == null) {
+            linkPairIndex = new LinkPairIndex();
+        }
+        return linkPairIndex;
+    }
+
+    /**
+     * Gene lookups check their results against the lists, so they are
+     * correct after any change. After large changes, such as crossover,
+     * this rebuilds the indices up front instead of after a failed check.
+     */
+    public void invalidateGeneIndices() {
+        nodeIndex().invalidate();
+        linkIndex().invalidate();
+        linkPairIndex().invalidate();
     }
 
     /**
@@ -1284,7 +1390,11 @@ public class TWEANNGenotype implements NetworkGenotype<TWEANN> {
     @SuppressWarnings("unchecked")
     @Override
     public Genotype<TWEANN> crossover(Genotype<TWEANN> g) {
-        return MMNEAT.crossoverOperator.crossover(this, g);
+        Genotype<TWEANN> result = MMNEAT.crossoverOperator.crossover(this, g);
+        // Both parents may have been changed
+        invalidateGeneIndices();
+        ((TWEANNGenotype) g).invalidateGeneIndices();
+        return result;
     }
 
     /**
@@ -1320,19 +1430,73 @@ public class TWEANNGenotype implements NetworkGenotype<TWEANN> {
     }
 
     /**
-     * Copies the TWEANNGenotype via the trick of generating a TWEANN, then
-     * using it to generate a new Genotype
+     * Copies the TWEANNGenotype directly from its genes. The result is the
+     * same as building a TWEANN phenotype and then generating a new genotype
+     * from it (which is how this used to be done): inactive links are dropped,
+     * and the remaining links are grouped by source node, in the order of the
+     * node list, while links from the same source keep their relative order.
+     * Since a phenotype node only reports one recurrent flag per target, every
+     * link gets the flag of the first link between the same two nodes, and since
+     * phenotypes are never hierarchical, the copy is not hierarchical either.
      *
      * @return = copy of genotype
      */
     @Override
     public Genotype<TWEANN> copy() {
-        int[] temp = moduleUsage;
-        TWEANNGenotype result = new TWEANNGenotype(this.getPhenotype());
-        // Module usage is erased by getPhenotype(), so it is restored here
-        moduleUsage = temp;
-        result.moduleUsage = new int[temp.length];
-        System.arraycopy(this.moduleUsage, 0, result.moduleUsage, 0, moduleUsage.length);
+        ArrayList<NodeGene> nodeCopies = new ArrayList<NodeGene>(nodes.size());
+        LongIntHashMap positions = new LongIntHashMap(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            NodeGene ng = nodes.get(i);
+            nodeCopies.add(newNodeGene(ng.ftype, ng.ntype, ng.innovation, ng.isFrozen(), ng.getBias()));
+            positions.put(ng.innovation, i);
+        }
+
+        // Counting sort of the active links by the position of their source node
+        int[] start = new int[nodes.size() + 1];
+        int numActive = 0;
+        for (LinkGene lg : links) {
+            if (lg.isActive()) {
+                start[positions.get(lg.sourceInnovation) + 1]++;
+                numActive++;
+            }
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            start[i + 1] += start[i];
+        }
+        int[] next = Arrays.copyOf(start, nodes.size());
+        LinkGene[] sorted = new LinkGene[numActive];
+        for (LinkGene lg : links) {
+            if (lg.isActive()) {
+                sorted[next[positions.get(lg.sourceInnovation)]++] = lg;
+            }
+        }
+
+        // Position of the first link from the current source to each target
+        LongIntHashMap firstLink = new LongIntHashMap(nodes.size());
+        ArrayList<LinkGene> linkCopies = new ArrayList<LinkGene>(numActive);
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j = start[i]; j < start[i + 1]; j++) {
+                LinkGene lg = sorted[j];
+                int first = firstLink.get(lg.targetInnovation);
+                if (first < start[i]) { // Missing, or from an earlier source
+                    first = j;
+                    firstLink.put(lg.targetInnovation, j);
+                }
+                linkCopies.add(newLinkGene(lg.sourceInnovation, lg.targetInnovation, lg.weight, lg.innovation, sorted[first].isRecurrent(), lg.isFrozen()));
+            }
+        }
+
+        TWEANNGenotype result = new TWEANNGenotype(nodeCopies, linkCopies, neuronsPerModule, standardMultitask, false, archetypeIndex);
+        result.numModules = numModules;
+        if (moduleAssociations != null) {
+            result.moduleAssociations = Arrays.copyOf(moduleAssociations, numModules);
+        } else { // Same default that the TWEANN phenotype uses
+            result.moduleAssociations = new int[numModules];
+            for (int i = 0; i < numModules; i++) {
+                result.moduleAssociations[i] = i;
+            }
+        }
+        result.moduleUsage = Arrays.copyOf(moduleUsage, moduleUsage.length);
         return result;
     }
 
@@ -1885,70 +2049,147 @@ public class TWEANNGenotype implements NetworkGenotype<TWEANN> {
     
     /**
      * Sort the nodes so that there are no backward facing links, meaning no recurrency. The result will
-     * be a feed-forward network, but the method will crash if there are connectivity loops. Input and
-     * output nodes will remain unchanged ... only the hidden neurons are shuffled around.
-     * This is essentially an implementation of Kahn's algorithm for topological sort.
-	 * @param TWEANNGenotype
+     * be a feed-forward network. Input and output nodes will remain unchanged ... only the hidden neurons
+     * are shuffled around. See topologicalNodeOrder.
+     * @param tg genotype whose nodes are reordered
+     * @throws IllegalArgumentException if there is a loop, or a link from an output neuron to a hidden neuron
      */
     public static void sortNodeGenesByLinkConnectivity(TWEANNGenotype tg) {
-    	// First remove links from output layer to hidden layer (why do these exist?)
-//    	Iterator<LinkGene> itr = tg.links.iterator();
-//    	while(itr.hasNext()) {
-//    		LinkGene lg = itr.next();
-//    		if(tg.getNodeWithInnovation(lg.sourceInnovation).ntype == TWEANN.Node.NTYPE_OUTPUT && 
-//    		   tg.getNodeWithInnovation(lg.targetInnovation).ntype == TWEANN.Node.NTYPE_HIDDEN) {
-//    			itr.remove(); // No more cycle
-//    		}
-//    	}
-    	// Key = target innovation number, value = set of innovation numbers for all source nodes with a link to this target
-    	HashMap<Long, Set<Long>> incoming = new HashMap<>();
-    	for(NodeGene n : tg.nodes) {
-    		// Insert empty set for each target
-    		incoming.put(n.innovation, new HashSet<>());
+    	int[] order = topologicalNodeOrder(tg);
+    	ArrayList<NodeGene> newNodes = new ArrayList<>(order.length);
+    	for(int i = 0; i < order.length; i++) {
+    		newNodes.add(tg.nodes.get(order[i]));
     	}
+    	// Replace nodes with sorted nodes
+    	tg.nodes = newNodes;
+    }
+
+    /**
+     * Order of the nodes in which every link goes forward: inputs first (in their current order),
+     * then the hidden neurons, then the outputs (in their current order). Hidden neurons with no incoming
+     * links start the queue along with the inputs, in genotype order. This is an implementation of
+     * Kahn's algorithm for topological sort. Links out of each node are indexed in advance, so it
+     * takes O(N+L) time. Hidden neurons are placed in the order they become free, with links handled
+     * in the order they appear in the genotype, so the result is deterministic.
+     * 
+     * The result can be used to reorder the nodes (sortNodeGenesByLinkConnectivity), or passed to
+     * CompiledTWEANN to evaluate the genotype without changing it.
+     * @param tg genotype to order
+     * @return positions in tg.nodes, listed in the new order
+     * @throws IllegalArgumentException if there is a loop, or a link from an output neuron to a hidden neuron
+     */
+    public static int[] topologicalNodeOrder(TWEANNGenotype tg) {
+    	int n = tg.nodes.size();
+    	LongIntHashMap nodeIndex = new LongIntHashMap(n);
+    	for(int i = 0; i < n; i++) {
+    		nodeIndex.put(tg.nodes.get(i).innovation, i);
+    	}
+    	// Links leaving each node, in genotype order, as in CompiledTWEANN
+    	int[] linkStart = new int[n + 1];
+    	int[] incoming = new int[n];
     	for(LinkGene lg : tg.links) {
-    		// Add innovation for each source neuron with a link to the target
-    		incoming.get(lg.targetInnovation).add(lg.sourceInnovation);
+    		linkStart[nodeIndex.get(lg.sourceInnovation) + 1]++;
+    		incoming[nodeIndex.get(lg.targetInnovation)]++;
     	}
-    	
-    	ArrayList<NodeGene> newNodes = new ArrayList<>(tg.nodes.size());
-    	LinkedList<NodeGene> noIncoming = new LinkedList<>();
-    	for(int i = 0; i < tg.numIn; i++) {
-    		// Start with the input neurons
-    		noIncoming.add(tg.nodes.get(i));
+    	for(int i = 0; i < n; i++) {
+    		linkStart[i + 1] += linkStart[i];
     	}
-    	// Start Kahn's algorithm
-    	while(!noIncoming.isEmpty()) {
-    		NodeGene first = noIncoming.remove(0); // First node with no incoming
-			//System.out.println("Consider: " + first);
-			// Don't add output neurons. They must be added at the end
-    		//if(first.ntype != TWEANN.Node.NTYPE_OUTPUT) {
-			//System.out.println("Add newNodes: " + first);
-			newNodes.add(first); // Node appears at end of new node list
-    		//}
-    		for(LinkGene lg : tg.links) { // Bit inefficient
-    			if(lg.sourceInnovation == first.innovation) { // A link from the node aded to the list
-    				//System.out.println("Remove link: " + lg);
-    				incoming.get(lg.targetInnovation).remove(lg.sourceInnovation); // Remove that link
-    				if(incoming.get(lg.targetInnovation).isEmpty()) { // No more incoming links
-    					// Add to noIncoming list
-    					for(NodeGene ng : tg.nodes) {
-    						if(ng.innovation == lg.targetInnovation && ng.ntype != TWEANN.Node.NTYPE_OUTPUT) {
-    							//System.out.println("Add noIncoming: " + ng);
-    							noIncoming.add(ng);
-    							break;
-    						}
-    					}
-    				}
+    	int[] linkTarget = new int[tg.links.size()];
+    	int[] fill = Arrays.copyOf(linkStart, n);
+    	for(LinkGene lg : tg.links) {
+    		linkTarget[fill[nodeIndex.get(lg.sourceInnovation)]++] = nodeIndex.get(lg.targetInnovation);
+    	}
+
+    	// The array doubles as the queue of nodes with no remaining incoming links
+    	int[] order = new int[n];
+    	boolean[] placed = new boolean[n];
+    	int tail = 0;
+    	for(int i = 0; i < n; i++) {
+    		if(tg.nodes.get(i).ntype == TWEANN.Node.NTYPE_INPUT) {
+    			order[tail++] = i;
+    			placed[i] = true;
+    		}
+    	}
+    	// Hidden neurons with no incoming links are valid too, and may feed other hidden neurons
+    	for(int i = 0; i < n; i++) {
+    		if(incoming[i] == 0 && tg.nodes.get(i).ntype == TWEANN.Node.NTYPE_HIDDEN) {
+    			order[tail++] = i;
+    			placed[i] = true;
+    		}
+    	}
+    	// Output neurons are never dequeued, since they must be added at the end
+    	for(int head = 0; head < tail; head++) {
+    		int source = order[head];
+    		for(int l = linkStart[source]; l < linkStart[source + 1]; l++) {
+    			int target = linkTarget[l];
+    			if(--incoming[target] == 0 && !placed[target] && tg.nodes.get(target).ntype == TWEANN.Node.NTYPE_HIDDEN) {
+    				order[tail++] = target;
+    				placed[target] = true;
     			}
     		}
     	}
     	// Add output nodes
-    	for(int i = 0; i < tg.numOut; i++) {
-    		newNodes.add(tg.nodes.get(tg.outputStartIndex() + i));
+    	for(int i = 0; i < n; i++) {
+    		if(tg.nodes.get(i).ntype == TWEANN.Node.NTYPE_OUTPUT) {
+    			order[tail++] = i;
+    			placed[i] = true;
+    		}
     	}
-    	// Replace nodes with sorted nodes
-    	tg.nodes = newNodes;
+    	if(tail < n) {
+    		throw new IllegalArgumentException("Node genes cannot be ordered: " + unorderedNodeReport(tg, placed));
+    	}
+    	return order;
+    }
+
+    /**
+     * Explain why a hidden neuron could not be placed by topologicalNodeOrder. Starting from
+     * an unplaced neuron, incoming links from unplaced neurons are followed backwards until
+     * either a neuron repeats (a loop), an output neuron is reached, or there is no such link
+     * (the neuron is unreachable from the inputs). This is only used to
+     * report an error, so it simply scans the links at each step.
+     * @param tg genotype that could not be ordered
+     * @param placed which positions in tg.nodes were placed by the sort
+     * @return description of a loop or backward link from an output
+     */
+    private static String unorderedNodeReport(TWEANNGenotype tg, boolean[] placed) {
+    	ArrayList<Long> unplaced = new ArrayList<>();
+    	int start = -1;
+    	for(int i = 0; i < placed.length; i++) {
+    		if(!placed[i]) {
+    			unplaced.add(tg.nodes.get(i).innovation);
+    			if(start == -1) start = i;
+    		}
+    	}
+    	LinkedList<Long> path = new LinkedList<>();
+    	HashSet<Long> visited = new HashSet<>();
+    	NodeGene current = tg.nodes.get(start);
+    	while(visited.add(current.innovation)) {
+    		path.addFirst(current.innovation);
+    		NodeGene predecessor = null;
+    		for(LinkGene lg : tg.links) {
+    			if(lg.targetInnovation == current.innovation) {
+    				NodeGene source = tg.getNodeWithInnovation(lg.sourceInnovation);
+    				if(source.ntype == TWEANN.Node.NTYPE_OUTPUT || !placed[tg.indexOfNodeInnovation(source.innovation)]) {
+    					predecessor = source;
+    					break;
+    				}
+    			}
+    		}
+    		if(predecessor == null) {
+    			return "hidden nodes " + unplaced + " are unreachable from the inputs via " + path;
+    		}
+    		if(predecessor.ntype == TWEANN.Node.NTYPE_OUTPUT) {
+    			path.addFirst(predecessor.innovation);
+    			return "hidden nodes " + unplaced + " depend on output node " + predecessor.innovation + " via " + path;
+    		}
+    		current = predecessor;
+    	}
+    	// Trim the path back to where the loop starts
+    	while(path.getLast() != current.innovation) {
+    		path.removeLast();
+    	}
+    	path.addFirst(current.innovation);
+    	return "hidden nodes " + unplaced + " are in or after the loop " + path;
     }
 
     /**
@@ -0,0 +1,295 @@
+package edu.southwestern.evolution.genotypes;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import edu.southwestern.evolution.genotypes.TWEANNGenotype.LinkGene;
+import edu.southwestern.evolution.genotypes.TWEANNGenotype.NodeGene;
+
+/**
+ * Compact binary encoding of TWEANNGenotypes and archetypes (lists of node
+ * genes), used instead of woxser XML when saving populations. Every record
+ * starts with a header:
+ *
+ * - 4 magic bytes: "TWGB"
+ * - 1 byte format version
+ * - 1 byte record type (genotype or archetype)
+ *
+ * Integers are written as variable length quantities, 7 bits per byte, so
+ * small values take a single byte. Signed values (innovation numbers of
+ * input nodes are negative) are zig-zag encoded first. Innovation numbers
+ * of consecutive genes are mostly increasing, so each is stored as the
+ * difference from the previous gene of the same kind. Weights and biases
+ * are stored as raw 8 byte doubles, so loading is exact. The boolean
+ * properties of each gene are packed into one flag byte.
+ *
+ * The parent list is transient, and is not saved, same as with XML.
+ * Loaded genes are created with TWEANNGenotype.newNodeGene and newLinkGene,
+ * so whether they are full or reduced memory genes depends on
+ * TWEANNGenotype.smallerGenotypes when loading.
+ *
+ * @author Jacob Schrum
+ */
+public class TWEANNGenotypeBinaryFormat {
+
+	public static final byte[] MAGIC = new byte[] {'T', 'W', 'G', 'B'};
+	public static final int VERSION = 1;
+	public static final int RECORD_GENOTYPE = 1;
+	public static final int RECORD_ARCHETYPE = 2;
+
+	private static final int NODE_FROZEN = 1;
+	private static final int NODE_FROM_COMBINING_CROSSOVER = 2;
+	private static final int NODE_HAS_BIAS = 4;
+
+	private static final int LINK_ACTIVE = 1;
+	private static final int LINK_RECURRENT = 2;
+	private static final int LINK_FROZEN = 4;
+
+	private static final int GENOTYPE_STANDARD_MULTITASK = 1;
+	private static final int GENOTYPE_HIERARCHICAL_MULTITASK = 2;
+	private static final int GENOTYPE_HAS_MODULE_ASSOCIATIONS = 4;
+	private static final int GENOTYPE_HAS_MODULE_USAGE = 8;
+
+	/**
+	 * Whether the start of a file matches the header of this format
+	 *
+	 * @param start first bytes of a file
+	 * @param length number of bytes of start that were actually read
+	 * @return true for binary genotype files, false for XML and anything else
+	 */
+	public static boolean hasMagic(byte[] start, int length) {
+		if (length < MAGIC.length) {
+			return false;
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (start[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Write a complete genotype record, including the header
+	 *
+	 * @param g genotype to save
+	 * @param out destination
+	 * @throws IOException if writing fails
+	 */
+	public static void writeGenotype(TWEANNGenotype g, DataOutput out) throws IOException {
+		writeHeader(out, RECORD_GENOTYPE);
+		writeSignedVarLong(out, g.getId());
+		writeVarLong(out, g.archetypeIndex);
+		writeVarLong(out, g.numIn);
+		writeVarLong(out, g.numOut);
+		writeVarLong(out, g.numModules);
+		writeVarLong(out, g.neuronsPerModule);
+		int flags = (g.standardMultitask ? GENOTYPE_STANDARD_MULTITASK : 0)
+				| (g.hierarchicalMultitask ? GENOTYPE_HIERARCHICAL_MULTITASK : 0)
+				| (g.moduleAssociations != null ? GENOTYPE_HAS_MODULE_ASSOCIATIONS : 0)
+				| (g.moduleUsage != null ? GENOTYPE_HAS_MODULE_USAGE : 0);
+		out.writeByte(flags);
+		if (g.moduleAssociations != null) {
+			writeIntArray(out, g.moduleAssociations);
+		}
+		if (g.moduleUsage != null) {
+			writeIntArray(out, g.moduleUsage);
+		}
+		writeNodes(out, g.nodes);
+		writeVarLong(out, g.links.size());
+		long previous = 0;
+		for (LinkGene lg : g.links) {
+			writeSignedVarLong(out, lg.innovation - previous);
+			previous = lg.innovation;
+			writeSignedVarLong(out, lg.sourceInnovation);
+			writeSignedVarLong(out, lg.targetInnovation);
+			out.writeDouble(lg.weight);
+			out.writeByte((lg.isActive() ? LINK_ACTIVE : 0) | (lg.isRecurrent() ? LINK_RECURRENT : 0) | (lg.isFrozen() ? LINK_FROZEN : 0));
+		}
+	}
+
+	/**
+	 * Read the body of a genotype record written by writeGenotype. The
+	 * header has already been read by readRecord.
+	 *
+	 * @param in source
+	 * @return loaded genotype, with its saved id
+	 * @throws IOException if reading fails
+	 */
+	private static TWEANNGenotype readGenotype(DataInput in) throws IOException {
+		long id = readSignedVarLong(in);
+		int archetypeIndex = (int) readVarLong(in);
+		int numIn = (int) readVarLong(in);
+		int numOut = (int) readVarLong(in);
+		int numModules = (int) readVarLong(in);
+		int neuronsPerModule = (int) readVarLong(in);
+		int flags = in.readUnsignedByte();
+		int[] moduleAssociations = (flags & GENOTYPE_HAS_MODULE_ASSOCIATIONS) != 0 ? readIntArray(in) : null;
+		int[] moduleUsage = (flags & GENOTYPE_HAS_MODULE_USAGE) != 0 ? readIntArray(in) : null;
+		ArrayList<NodeGene> nodes = readNodes(in);
+		int numLinks = (int) readVarLong(in);
+		ArrayList<LinkGene> links = new ArrayList<LinkGene>(numLinks);
+		long previous = 0;
+		for (int i = 0; i < numLinks; i++) {
+			long innovation = previous + readSignedVarLong(in);
+			previous = innovation;
+			long sourceInnovation = readSignedVarLong(in);
+			long targetInnovation = readSignedVarLong(in);
+			double weight = in.readDouble();
+			int linkFlags = in.readUnsignedByte();
+			links.add(TWEANNGenotype.newLinkGene(sourceInnovation, targetInnovation, weight, innovation,
+					(linkFlags & LINK_ACTIVE) != 0, (linkFlags & LINK_RECURRENT) != 0, (linkFlags & LINK_FROZEN) != 0));
+		}
+		TWEANNGenotype g = new TWEANNGenotype(id, nodes, links);
+		g.archetypeIndex = archetypeIndex;
+		g.numIn = numIn;
+		g.numOut = numOut;
+		g.numModules = numModules;
+		g.neuronsPerModule = neuronsPerModule;
+		g.standardMultitask = (flags & GENOTYPE_STANDARD_MULTITASK) != 0;
+		g.hierarchicalMultitask = (flags & GENOTYPE_HIERARCHICAL_MULTITASK) != 0;
+		g.moduleAssociations = moduleAssociations;
+		g.moduleUsage = moduleUsage;
+		return g;
+	}
+
+	/**
+	 * Write a complete archetype record, including the header
+	 *
+	 * @param archetype node genes of archetype
+	 * @param out destination
+	 * @throws IOException if writing fails
+	 */
+	public static void writeArchetype(ArrayList<NodeGene> archetype, DataOutput out) throws IOException {
+		writeHeader(out, RECORD_ARCHETYPE);
+		writeNodes(out, archetype);
+	}
+
+	/**
+	 * Read any record of this format, including the header.
+	 *
+	 * @param in source
+	 * @return TWEANNGenotype for genotype records, or ArrayList of NodeGene for archetype records
+	 * @throws IOException if the header is wrong, or reading fails
+	 */
+	public static Object readRecord(DataInput in) throws IOException {
+		byte[] magic = new byte[MAGIC.length];
+		in.readFully(magic);
+		if (!hasMagic(magic, magic.length)) {
+			throw new IOException("Not a binary genotype file");
+		}
+		int version = in.readUnsignedByte();
+		if (version > VERSION) {
+			throw new IOException("Binary genotype format version " + version + " is newer than supported version " + VERSION);
+		}
+		int type = in.readUnsignedByte();
+		switch (type) {
+		case RECORD_GENOTYPE:
+			return readGenotype(in);
+		case RECORD_ARCHETYPE:
+			return readNodes(in);
+		default:
+			throw new IOException("Unknown binary genotype record type " + type);
+		}
+	}
+
+	private static void writeHeader(DataOutput out, int recordType) throws IOException {
+		out.write(MAGIC);
+		out.writeByte(VERSION);
+		out.writeByte(recordType);
+	}
+
+	private static void writeNodes(DataOutput out, ArrayList<NodeGene> nodes) throws IOException {
+		writeVarLong(out, nodes.size());
+		long previous = 0;
+		for (NodeGene ng : nodes) {
+			writeSignedVarLong(out, ng.innovation - previous);
+			previous = ng.innovation;
+			writeVarLong(out, ng.ftype);
+			writeVarLong(out, ng.ntype);
+			double bias = ng.getBias();
+			// Compare bits, since -0.0 == 0 but must still be restored exactly
+			boolean hasBias = Double.doubleToRawLongBits(bias) != 0;
+			out.writeByte((ng.isFrozen() ? NODE_FROZEN : 0) | (ng.fromCombiningCrossover() ? NODE_FROM_COMBINING_CROSSOVER : 0) | (hasBias ? NODE_HAS_BIAS : 0));
+			if (hasBias) { // Most nodes have no bias
+				out.writeDouble(bias);
+			}
+		}
+	}
+
+	private static ArrayList<NodeGene> readNodes(DataInput in) throws IOException {
+		int numNodes = (int) readVarLong(in);
+		ArrayList<NodeGene> nodes = new ArrayList<NodeGene>(numNodes);
+		long previous = 0;
+		for (int i = 0; i < numNodes; i++) {
+			long innovation = previous + readSignedVarLong(in);
+			previous = innovation;
+			int ftype = (int) readVarLong(in);
+			int ntype = (int) readVarLong(in);
+			int flags = in.readUnsignedByte();
+			double bias = (flags & NODE_HAS_BIAS) != 0 ? in.readDouble() : 0.0;
+			NodeGene ng = TWEANNGenotype.newNodeGene(ftype, ntype, innovation, (flags & NODE_FROZEN) != 0, bias);
+			// newNodeGene may change the ftype of inputs, but saved genes are restored exactly
+			ng.ftype = ftype;
+			if ((flags & NODE_FROM_COMBINING_CROSSOVER) != 0) {
+				ng.setFromCombiningCrossover();
+			}
+			nodes.add(ng);
+		}
+		return nodes;
+	}
+
+	private static void writeIntArray(DataOutput out, int[] values) throws IOException {
+		writeVarLong(out, values.length);
+		for (int v : values) {
+			writeSignedVarLong(out, v);
+		}
+	}
+
+	private static int[] readIntArray(DataInput in) throws IOException {
+		int[] values = new int[(int) readVarLong(in)];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (int) readSignedVarLong(in);
+		}
+		return values;
+	}
+
+	/**
+	 * Non-negative value, 7 bits per byte, lowest bits first. The high bit
+	 * of each byte indicates whether more bytes follow.
+	 */
+	private static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length integer");
+	}
+
+	/**
+	 * Zig-zag encoding maps small negative numbers to small positive ones
+	 * (0, -1, 1, -2, 2 ... become 0, 1, 2, 3, 4 ...)
+	 */
+	private static void writeSignedVarLong(DataOutput out, long value) throws IOException {
+		writeVarLong(out, (value << 1) ^ (value >> 63));
+	}
+
+	private static long readSignedVarLong(DataInput in) throws IOException {
+		long encoded = readVarLong(in);
+		return (encoded >>> 1) ^ -(encoded & 1);
+	}
+}
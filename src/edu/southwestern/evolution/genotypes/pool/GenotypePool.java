@@ -1,5 +1,6 @@
 package edu.southwestern.evolution.genotypes.pool;
 
+import edu.southwestern.data.GenotypeArchive;
 import edu.southwestern.evolution.EvolutionaryHistory;
 import edu.southwestern.evolution.genotypes.Genotype;
 import edu.southwestern.networks.Network;
@@ -7,7 +8,9 @@ import edu.southwestern.util.file.XMLFilter;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * A pool of genotypes from a previously evolved population. Networks can be
@@ -55,15 +58,30 @@ public class GenotypePool<T extends Network> {
 	}
 
 	private String[] pool;
+	// Set instead of pool when the genotypes come from a GenotypeArchive
+	private GenotypeArchive archive = null;
+	private List<Long> archiveIds;
 
 	/**
 	 * Treat all .xml files in a particular directory as genotypes, and use them
-	 * to create the genotype pool.
+	 * to create the genotype pool. The directory can instead be a
+	 * GenotypeArchive file, in which case every archived genotype is in the pool.
 	 * 
 	 * @param directory
-	 *            Directory containing .xml genotypes
+	 *            Directory containing .xml genotypes, or archive file
 	 */
 	public GenotypePool(String directory) {
+		if (new File(directory).isFile()) {
+			System.out.println("Loading genotype archive: " + directory);
+			try {
+				archive = new GenotypeArchive(directory, true);
+			} catch (IOException e) {
+				System.err.println("Can't load genotype archive '" + directory + "': " + e.getMessage());
+				System.exit(1);
+			}
+			archiveIds = archive.ids();
+			return;
+		}
 		System.out.println("Loading file names from: " + directory);
 
 		FilenameFilter filter = new XMLFilter();
@@ -89,7 +107,11 @@ public class GenotypePool<T extends Network> {
 	 *            index in genotype pool of desired filename
 	 * @return genotype stored in designated file
 	 */
+	@SuppressWarnings("unchecked")
 	public Genotype<T> getMember(int x) {
+		if (archive != null) {
+			return (Genotype<T>) archive.get(archiveIds.get(x));
+		}
 		return EvolutionaryHistory.getSubnetwork(pool[x]);
 	}
 
@@ -99,6 +121,6 @@ public class GenotypePool<T extends Network> {
 	 * @return size of pool
 	 */
 	public int size() {
-		return pool.length;
+		return archive != null ? archiveIds.size() : pool.length;
 	}
 }
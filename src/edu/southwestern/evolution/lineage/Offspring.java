@@ -16,6 +16,8 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import edu.southwestern.MMNEAT.MMNEAT;
+import edu.southwestern.data.GenotypeArchive;
+import edu.southwestern.data.GenotypeFiles;
 import edu.southwestern.evolution.genotypes.Genotype;
 import edu.southwestern.evolution.genotypes.TWEANNGenotype;
 import edu.southwestern.evolution.mulambda.MuLambda;
@@ -30,7 +32,6 @@ import edu.southwestern.util.PopulationUtil;
 import edu.southwestern.util.graphics.DrawingPanel;
 import edu.southwestern.util.graphics.GraphicsUtil;
 import edu.southwestern.util.graphics.Plot;
-import wox.serial.Easy;
 
 /**
  * This complicated, clunky file is used to browse the lineage of an evolved
@@ -146,7 +147,7 @@ public class Offspring {
 				if (MMNEAT.genotype instanceof TWEANNGenotype) {
 					g = o.drawTWEANN(panel, showInnovationNumbers);
 				} else if (o.xmlNetwork != null) {
-					g = getGenotype(o.xmlNetwork);
+					g = getGenotype(o);
 				}
 				//draws relevant info to panels
 				System.out.println(g);
@@ -1235,17 +1236,36 @@ public class Offspring {
 		System.out.println(xmlNetwork);
 		System.out.println(this);
 		TWEANNGenotype g = null;
-		if (xmlNetwork == null || !(new File(xmlNetwork).exists())) {
+		GenotypeArchive archive = GenotypeArchive.runArchiveForReading();
+		if ((archive == null || !archive.contains(offspringId)) && (xmlNetwork == null || !(new File(xmlNetwork).exists()))) {
 			System.out.println("Unsaved network");
 		} else {
 			String oldTitle = panel.getFrame().getTitle();
 			int end = oldTitle.contains(":") ? oldTitle.indexOf(":") : oldTitle.length();
 			panel.setTitle(oldTitle.substring(0, end) + ": " + offspringId);
-			g = viewTWEANN(panel, xmlNetwork, showInnovationNumbers);
+			g = (TWEANNGenotype) getGenotype(this);
+			g.getPhenotype().draw(panel, showInnovationNumbers);
 		}
 		return g;
 	}
 
+	/**
+	 * Genotype of an offspring, from the archive of the run if it is there,
+	 * and from its own saved file otherwise
+	 * @param o offspring
+	 * @return genotype
+	 */
+	public static Genotype<? extends Network> getGenotype(Offspring o) {
+		GenotypeArchive archive = GenotypeArchive.runArchiveForReading();
+		if (archive != null) {
+			Genotype<? extends Network> g = archive.get(o.offspringId);
+			if (g != null) {
+				return g;
+			}
+		}
+		return getGenotype(o.xmlNetwork);
+	}
+
 	/**
 	 * 
 	 * @param xml
@@ -1253,7 +1273,7 @@ public class Offspring {
 	 */
 	@SuppressWarnings("unchecked")
 	public static Genotype<? extends Network> getGenotype(String xml) {
-		return (Genotype<? extends Network>) Easy.load(xml);
+		return (Genotype<? extends Network>) GenotypeFiles.load(xml);
 	}
 
 	/**
@@ -3,7 +3,9 @@ package edu.southwestern.evolution.mutation;
 import edu.southwestern.evolution.genotypes.Genotype;
 
 /**
- * Performs a single mutation operation on a genotype.
+ * Performs a single mutation operation on a genotype. Mutations do not
+ * keep any state about the genotype being mutated, so a single instance
+ * can be reused for every genotype.
  * 
  * @author Jacob Schrum
  * @param <T>
@@ -11,7 +13,8 @@ import edu.southwestern.evolution.genotypes.Genotype;
  */
 public abstract class Mutation<T> {
 
-	public StringBuilder infoTracking = null;
+	// Recorded in mutation logs
+	private final String label = getClass().getSimpleName();
 
 	/**
 	 * Mutates the genotype if the perform() test passes. The perform() test is
@@ -19,21 +22,32 @@ public abstract class Mutation<T> {
 	 * 
 	 * @param genotype
 	 *            will potentially be mutated
-	 * @param infoTracking
-	 *            Accumulates a String of information about mutation for logs
+	 * @param record
+	 *            Accumulates information about mutations for logs
 	 * @return Whether the mutation actually occurred
 	 */
-	public boolean go(Genotype<T> genotype, StringBuilder infoTracking) {
-		this.infoTracking = infoTracking;
+	public boolean go(Genotype<T> genotype, MutationRecord record) {
 		if (perform()) { // Generally probabilistic
-			mutate(genotype);
-			infoTracking.append(this.getClass().getSimpleName());
-			infoTracking.append(" ");
+			mutate(genotype, record);
+			record.add(label);
 			return true;
 		}
 		return false;
 	}
 
+	/**
+	 * Modifies the genotype, and records any extra information about the
+	 * mutation. By default, nothing extra is recorded.
+	 *
+	 * @param genotype
+	 *            to modify
+	 * @param record
+	 *            Accumulates information about mutations for logs
+	 */
+	protected void mutate(Genotype<T> genotype, MutationRecord record) {
+		mutate(genotype);
+	}
+
 	/**
 	 * Returns true if mutation should be performed, false otherwise
 	 *
@@ -0,0 +1,77 @@
+package edu.southwestern.evolution.mutation;
+
+/**
+ * Reusable record of the mutations applied to one genotype. Each event is
+ * a constant label, normally the class name of a mutation operator, so
+ * recording an event only stores a reference. The record is only turned
+ * into a String when there is a mutation log to write it to.
+ *
+ * A record is reused by calling clear before each genotype is mutated,
+ * and should only be used by one thread at a time.
+ *
+ * @author Jacob Schrum
+ */
+public class MutationRecord {
+
+	private long genotypeId;
+	private String[] events = new String[16];
+	private int size = 0;
+	private final StringBuilder text = new StringBuilder();
+
+	/**
+	 * Start recording the mutations of a new genotype
+	 *
+	 * @param genotypeId id of genotype being mutated
+	 */
+	public void clear(long genotypeId) {
+		this.genotypeId = genotypeId;
+		size = 0;
+	}
+
+	/**
+	 * Record one event
+	 *
+	 * @param label constant label of the event
+	 */
+	public void add(String label) {
+		if (size == events.length) {
+			String[] larger = new String[2 * events.length];
+			System.arraycopy(events, 0, larger, 0, size);
+			events = larger;
+		}
+		events[size++] = label;
+	}
+
+	/**
+	 * @return number of events recorded since the last clear
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param i index of event
+	 * @return label of that event
+	 */
+	public String get(int i) {
+		return events[i];
+	}
+
+	/**
+	 * Format for the mutation log: genotype id followed by the label of
+	 * each event, each followed by a space.
+	 *
+	 * @return log line
+	 */
+	@Override
+	public String toString() {
+		text.setLength(0);
+		text.append(genotypeId);
+		text.append(' ');
+		for (int i = 0; i < size; i++) {
+			text.append(events[i]);
+			text.append(' ');
+		}
+		return text.toString();
+	}
+}
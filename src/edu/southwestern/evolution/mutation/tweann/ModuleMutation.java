@@ -2,6 +2,7 @@ package edu.southwestern.evolution.mutation.tweann;
 
 import edu.southwestern.evolution.genotypes.Genotype;
 import edu.southwestern.evolution.genotypes.TWEANNGenotype;
+import edu.southwestern.evolution.mutation.MutationRecord;
 import edu.southwestern.networks.TWEANN;
 import edu.southwestern.parameters.CommonConstants;
 import edu.southwestern.parameters.Parameters;
@@ -28,17 +29,29 @@ public abstract class ModuleMutation extends TWEANNMutation {
 	 * @param genotype the genotype to be mutated
 	 */
 	public void mutate(Genotype<TWEANN> genotype) {
+		mutate(genotype, null);
+	}
+
+	/**
+	 * Mutates a TWEANN genotype, and records whether the existing modules
+	 * were weakened or frozen first
+	 * 
+	 * @param genotype the genotype to be mutated
+	 * @param record information for logs, or null
+	 */
+	@Override
+	protected void mutate(Genotype<TWEANN> genotype, MutationRecord record) {
 		if (CommonConstants.weakenBeforeModeMutation) {// weakens modules if needed
 			((TWEANNGenotype) genotype).weakenAllModules(Parameters.parameters.doubleParameter("weakenPortion"));
-			if (infoTracking != null) {
-				infoTracking.append("WEAKEN ");
+			if (record != null) {
+				record.add("WEAKEN");
 			}
 		}
 		// Option to freeze existing network before adding new module
 		if (CommonConstants.freezeBeforeModeMutation) {
 			((TWEANNGenotype) genotype).freezeNetwork();
-			if (infoTracking != null) {
-				infoTracking.append("FREEZE ");
+			if (record != null) {
+				record.add("FREEZE");
 			}
 		}
 		// this is the method that changes between mutation methods
@@ -14,15 +14,19 @@ public abstract class TWEANNMutation extends Mutation<TWEANN> {
 
 	// Every mutation has its own rate of occurrence
 	protected double rate;
+	// Parameter the rate comes from, if any
+	private final String rateName;
 
 	/**
-	 * Constructor retrieves the appropriate rate from the parameters.
+	 * Constructor for a rate from the parameters. The rate is looked up
+	 * each time, so one instance stays correct if the parameter changes.
 	 *
 	 * @param rateName
 	 *            Parameter label for this mutation rate.
 	 */
 	public TWEANNMutation(String rateName) {
-		this(Parameters.parameters.doubleParameter(rateName));
+		this.rate = Parameters.parameters.doubleParameter(rateName);
+		this.rateName = rateName;
 	}
 
 	/**
@@ -34,6 +38,7 @@ public abstract class TWEANNMutation extends Mutation<TWEANN> {
 	public TWEANNMutation(double rate) {
 		assert 0 <= rate && rate <= 1 : "Mutation rate out of range: " + rate;
 		this.rate = rate;
+		this.rateName = null;
 	}
 
 	/**
@@ -44,6 +49,7 @@ public abstract class TWEANNMutation extends Mutation<TWEANN> {
 	 */
 	@Override
 	public boolean perform() {
-		return (RandomNumbers.randomGenerator.nextDouble() < rate);
+		double current = rateName == null ? rate : Parameters.parameters.doubleParameter(rateName);
+		return (RandomNumbers.randomGenerator.nextDouble() < current);
 	}
 }
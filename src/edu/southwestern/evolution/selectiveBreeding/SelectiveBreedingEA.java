@@ -3,12 +3,14 @@ package edu.southwestern.evolution.selectiveBreeding;
 import java.util.ArrayList;
 
 import edu.southwestern.MMNEAT.MMNEAT;
+import edu.southwestern.data.GenotypeArchive;
 import edu.southwestern.evolution.EvolutionaryHistory;
 import edu.southwestern.evolution.SinglePopulationGenerationalEA;
 import edu.southwestern.evolution.genotypes.Genotype;
 import edu.southwestern.evolution.genotypes.TWEANNGenotype;
 import edu.southwestern.evolution.lineage.Offspring;
 import edu.southwestern.log.FitnessLog;
+import edu.southwestern.log.LogWriter;
 import edu.southwestern.parameters.CommonConstants;
 import edu.southwestern.parameters.Parameters;
 import edu.southwestern.scores.Score;
@@ -96,7 +98,21 @@ public class SelectiveBreedingEA<T> implements SinglePopulationGenerationalEA<T>
 	 */
 	@Override
 	public ArrayList<Genotype<T>> initialPopulation(Genotype<T> example) {
-		return PopulationUtil.initialPopulation(example, parentPop);
+		ArrayList<Genotype<T>> population = PopulationUtil.initialPopulation(example, parentPop);
+		archive(population);
+		return population;
+	}
+
+	/**
+	 * Add new genotypes to the archive of the run, so the lineage
+	 * browser can load any of them later
+	 * @param population genotypes that were just produced
+	 */
+	private void archive(ArrayList<Genotype<T>> population) {
+		GenotypeArchive archive = GenotypeArchive.runArchive();
+		if (archive != null) {
+			archive.appendAll(population);
+		}
 	}
 
 	protected void logInfo(ArrayList<Score<T>> scores) {
@@ -165,6 +181,8 @@ public class SelectiveBreedingEA<T> implements SinglePopulationGenerationalEA<T>
 			}
 		}
 		logInfo(scores);
+		archive(children);
+		LogWriter.flushAll();
 		if(CommonConstants.netio) {
 			PopulationUtil.saveCurrentGen(scores);
 		}
@@ -180,6 +198,7 @@ public class SelectiveBreedingEA<T> implements SinglePopulationGenerationalEA<T>
 	 */
 	@Override
 	public void close(ArrayList<Genotype<T>> population) {
+		GenotypeArchive.closeRunArchive();
 		if(Parameters.parameters.booleanParameter("io") && keeperLog != null) {
 			keeperLog.close();
 		}
@@ -8,6 +8,7 @@ import edu.southwestern.evolution.crossover.network.CombiningTWEANNCrossover;
 import edu.southwestern.evolution.genotypes.Genotype;
 import edu.southwestern.evolution.genotypes.TWEANNGenotype;
 import edu.southwestern.experiment.Experiment;
+import edu.southwestern.log.LogWriter;
 import edu.southwestern.parameters.Parameters;
 import edu.southwestern.util.PopulationUtil;
 import edu.southwestern.util.file.FileUtilities;
@@ -213,6 +214,8 @@ public abstract class SinglePopulationGenerationalEAExperiment<T> implements Exp
 		while (!shouldStop()) {
 			System.out.println("Starting generation: " + ea.currentGeneration());
 			population = ea.getNextGeneration(population);
+			// Logs of this generation are written in the background
+			LogWriter.flushAll();
 			// ScoreHistory.clean();
 			int gen = ea.currentGeneration();
 			if (population.get(0) instanceof TWEANNGenotype) {
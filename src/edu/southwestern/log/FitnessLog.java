@@ -10,7 +10,6 @@ import edu.southwestern.util.graphics.Plot;
 import java.awt.Color;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 
@@ -55,10 +54,10 @@ public class FitnessLog<T> extends StatisticsLog<Score<T>> {
 
 	private void logScores(ArrayList<Score<T>> scores, int generation) {
 		try {
-			PrintStream gen = new PrintStream(new FileOutputStream(new File(directory + prefix + "_gen" + generation + ".txt")));
+			PrintStream gen = LogWriter.open(new File(directory + prefix + "_gen" + generation + ".txt"), false);
 			PrintStream extra = null;
 			if (scores.get(0).otherStats.length > 0) {
-				extra = new PrintStream(new FileOutputStream(new File(directory + prefix + "_other_scores_gen" + generation + ".txt")));
+				extra = LogWriter.open(new File(directory + prefix + "_other_scores_gen" + generation + ".txt"), false);
 			}
 
 			for (int i = 0; i < scores.size(); i++) {
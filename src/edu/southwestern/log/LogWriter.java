@@ -0,0 +1,281 @@
+package edu.southwestern.log;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+import edu.southwestern.parameters.Parameters;
+
+/**
+ * Moves the writing of log files off of the evolution thread. Log streams
+ * opened with open collect their output in chunks, and full chunks are
+ * handed to a single background thread that writes them to the files.
+ * The queue of chunks is bounded, so if logging is faster than the disk
+ * the logging thread waits instead of using unlimited memory.
+ *
+ * Partially filled chunks are handed over by flushAll, which should be
+ * called at the end of each generation, so log files are never more than
+ * a generation behind. sync also waits until everything handed over has
+ * been written, and is called when logs are closed and when the JVM exits.
+ *
+ * When the asyncLogging parameter is false, open returns a regular
+ * PrintStream that writes directly to the file.
+ *
+ * @author Jacob Schrum
+ */
+public class LogWriter {
+
+	public static final int CHUNK_BYTES = 8192;
+	// At most 2 MB of log output waiting to be written
+	public static final int QUEUE_CHUNKS = 256;
+
+	private static final ArrayBlockingQueue<Chunk> queue = new ArrayBlockingQueue<Chunk>(QUEUE_CHUNKS);
+	// Streams that have not been closed yet, which flushAll must flush
+	private static final LinkedHashSet<AsyncLogStream> openStreams = new LinkedHashSet<AsyncLogStream>();
+	private static Thread writer = null;
+
+	/**
+	 * Open a log file for writing
+	 *
+	 * @param file file to write
+	 * @param append true to add to the end of an existing file, false to replace it
+	 * @return stream for logging
+	 * @throws FileNotFoundException if the file cannot be opened
+	 */
+	public static PrintStream open(File file, boolean append) throws FileNotFoundException {
+		FileOutputStream out = new FileOutputStream(file, append);
+		if (Parameters.parameters != null && !Parameters.parameters.booleanParameter("asyncLogging")) {
+			return new PrintStream(out);
+		}
+		AsyncLogStream stream = new AsyncLogStream(file, out);
+		synchronized (openStreams) {
+			openStreams.add(stream);
+		}
+		return new PrintStream(stream);
+	}
+
+	/**
+	 * Hand everything logged so far to the background thread, without
+	 * waiting for it to be written.
+	 */
+	public static void flushAll() {
+		ArrayList<AsyncLogStream> streams;
+		synchronized (openStreams) {
+			streams = new ArrayList<AsyncLogStream>(openStreams);
+		}
+		for (AsyncLogStream stream : streams) {
+			stream.flush();
+		}
+	}
+
+	/**
+	 * Hand everything logged so far to the background thread, and wait
+	 * until it has all been written.
+	 */
+	public static void sync() {
+		flushAll();
+		synchronized (LogWriter.class) {
+			if (writer == null) {
+				return; // Nothing was ever written
+			}
+		}
+		CountDownLatch done = new CountDownLatch(1);
+		enqueue(new Chunk(null, null, 0, false, done));
+		boolean interrupted = false;
+		while (done.getCount() > 0) {
+			try {
+				done.await();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Add a chunk to the queue, waiting if the queue is full. The
+	 * background thread is started the first time.
+	 */
+	private static void enqueue(Chunk chunk) {
+		synchronized (LogWriter.class) {
+			if (writer == null) {
+				writer = new Thread(LogWriter::writeChunks, "LogWriter");
+				// Does not keep the JVM running, but the shutdown hook waits for it
+				writer.setDaemon(true);
+				writer.start();
+				Runtime.getRuntime().addShutdownHook(new Thread(LogWriter::sync, "LogWriter shutdown"));
+			}
+		}
+		boolean interrupted = false;
+		while (true) {
+			try {
+				queue.put(chunk);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true; // Log output must not be lost
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Loop of the background thread
+	 */
+	private static void writeChunks() {
+		while (true) {
+			Chunk chunk;
+			try {
+				chunk = queue.take();
+			} catch (InterruptedException e) {
+				continue;
+			}
+			if (chunk.stream != null) {
+				chunk.stream.write(chunk);
+			}
+			if (chunk.done != null) {
+				chunk.done.countDown();
+			}
+		}
+	}
+
+	/**
+	 * Bytes of one log file waiting to be written, possibly followed by
+	 * closing the file. Chunks with only a latch mark a point in the queue
+	 * that sync waits for.
+	 */
+	private static class Chunk {
+		final AsyncLogStream stream;
+		final byte[] bytes;
+		final int length;
+		final boolean close;
+		final CountDownLatch done;
+
+		Chunk(AsyncLogStream stream, byte[] bytes, int length, boolean close, CountDownLatch done) {
+			this.stream = stream;
+			this.bytes = bytes;
+			this.length = length;
+			this.close = close;
+			this.done = done;
+		}
+	}
+
+	/**
+	 * Collects the output of one log file into chunks for the background
+	 * thread. Only the background thread touches the file itself.
+	 */
+	private static class AsyncLogStream extends OutputStream {
+		private final File file;
+		private final FileOutputStream out;
+		private final FileChannel channel;
+		private byte[] buffer = new byte[CHUNK_BYTES];
+		private int count = 0;
+		private boolean closed = false;
+		// Only used by the background thread
+		private boolean failed = false;
+
+		AsyncLogStream(File file, FileOutputStream out) {
+			this.file = file;
+			this.out = out;
+			this.channel = out.getChannel();
+		}
+
+		@Override
+		public synchronized void write(int b) throws IOException {
+			checkOpen();
+			if (count == buffer.length) {
+				handOver(false);
+			}
+			buffer[count++] = (byte) b;
+		}
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len) throws IOException {
+			checkOpen();
+			while (len > 0) {
+				if (count == buffer.length) {
+					handOver(false);
+				}
+				int n = Math.min(len, buffer.length - count);
+				System.arraycopy(b, off, buffer, count, n);
+				count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		/**
+		 * Hands the current chunk to the background thread. Does not wait
+		 * for it to be written.
+		 */
+		@Override
+		public synchronized void flush() {
+			if (!closed && count > 0) {
+				handOver(false);
+			}
+		}
+
+		@Override
+		public synchronized void close() {
+			if (closed) {
+				return;
+			}
+			handOver(true);
+			closed = true;
+			buffer = null;
+			synchronized (openStreams) {
+				openStreams.remove(this);
+			}
+		}
+
+		private void checkOpen() throws IOException {
+			if (closed) {
+				throw new IOException("Log " + file + " is closed");
+			}
+		}
+
+		private void handOver(boolean close) {
+			enqueue(new Chunk(this, buffer, count, close, null));
+			if (!close) {
+				buffer = new byte[CHUNK_BYTES];
+				count = 0;
+			}
+		}
+
+		/**
+		 * Called by the background thread
+		 */
+		void write(Chunk chunk) {
+			try {
+				if (!failed) {
+					ByteBuffer bytes = ByteBuffer.wrap(chunk.bytes, 0, chunk.length);
+					while (bytes.hasRemaining()) {
+						channel.write(bytes);
+					}
+				}
+			} catch (IOException e) {
+				failed = true; // Report once, not for every chunk
+				System.out.println("Could not write to log " + file + ": " + e.getMessage());
+			}
+			if (chunk.close) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					System.out.println("Could not close log " + file + ": " + e.getMessage());
+				}
+			}
+		}
+	}
+}
@@ -2,7 +2,6 @@ package edu.southwestern.log;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.NoSuchElementException;
@@ -104,6 +103,7 @@ public class MMNEATLog {
 			int expectedEntries = Parameters.parameters.integerParameter("lastSavedGeneration");
 			ArrayList<String> oldData = new ArrayList<String>(raw ? 0 : expectedEntries + 1);
 			if (file.exists() && !raw) { // Don't read the old file if using raw logging
+				LogWriter.sync(); // An earlier log of the same file may still be writing
 				Scanner oldFile = new Scanner(file);
 				if (batches) {// only occurs if batches of output are in log
 					int popSize = Parameters.parameters.integerParameter("mu");
@@ -151,7 +151,7 @@ public class MMNEATLog {
 				}
 			}
 			// If raw is true, then the stream will append instead of overwriting
-			stream = new PrintStream(new FileOutputStream(file, raw));
+			stream = LogWriter.open(file, raw);
 			if (oldData.size() > 1) { // Why not 0 here?
 				for (int i = 0; i < oldData.size(); i++) {
 					if (oldData.get(i) != null) {
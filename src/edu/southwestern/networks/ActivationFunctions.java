@@ -1,7 +1,6 @@
 package edu.southwestern.networks;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -51,33 +50,38 @@ public class ActivationFunctions {
 	public static final int FTYPE_COS = 26;
 	public static final int FTYPE_SIL = 27;
 
-	private static HashMap<Integer,ActivationFunction> functionMap;
+	// Indexed by ftype. Dense array lookup avoids boxing the ftype on every activation
+	private static final ActivationFunction[] functions = new ActivationFunction[MAX_POSSIBLE_ACTIVATION_FUNCTIONS];
+	// Faster approximations for previews, also indexed by ftype. Same as functions where no approximation exists
+	private static final ActivationFunction[] approximateFunctions = new ActivationFunction[MAX_POSSIBLE_ACTIVATION_FUNCTIONS];
 	
-	// When loaded, fill HashMap with instances of each function
+	// When loaded, fill array with instances of each function
 	static {
-		functionMap = new HashMap<>();
-		functionMap.put(FTYPE_SIGMOID, new SigmoidFunction());
-		functionMap.put(FTYPE_TANH, new TanHFunction());
-		functionMap.put(FTYPE_ID, new IDFunction());
-		functionMap.put(FTYPE_FULLAPPROX, new FullQuickSigmoidFunction());
-		functionMap.put(FTYPE_APPROX, new QuickSigmoidFunction());
-		functionMap.put(FTYPE_GAUSS, new GaussianFunction());
-		functionMap.put(FTYPE_SINE, new SineFunction());
-		functionMap.put(FTYPE_ABSVAL, new ClippedAbsValFunction());
-		functionMap.put(FTYPE_PIECEWISE, new FullLinearPiecewiseFunction());
-		functionMap.put(FTYPE_HLPIECEWISE, new HalfLinearPiecewiseFunction());
-		functionMap.put(FTYPE_SAWTOOTH, new SawtoothFunction());
-		functionMap.put(FTYPE_STRETCHED_TANH, new StretchedTanHFunction());
-		functionMap.put(FTYPE_RE_LU, new ReLUFunction());
-		functionMap.put(FTYPE_SOFTPLUS, new SoftplusFunction());
-		functionMap.put(FTYPE_LEAKY_RE_LU, new LeakyReLUFunction());
-		functionMap.put(FTYPE_FULLSAWTOOTH, new FullSawtoothFunction());
-		functionMap.put(FTYPE_TRIANGLEWAVE, new TriangleWaveFunction());
-		functionMap.put(FTYPE_SQUAREWAVE, new SquareWaveFunction());
-		functionMap.put(FTYPE_FULLSIGMOID, new FullSigmoidFunction());
-		functionMap.put(FTYPE_FULLGAUSS, new FullGaussianFunction());
-		functionMap.put(FTYPE_COS, new CosineFunction());
-		functionMap.put(FTYPE_SIL, new SiLFunction());
+		functions[FTYPE_SIGMOID] = new SigmoidFunction();
+		functions[FTYPE_TANH] = new TanHFunction();
+		functions[FTYPE_ID] = new IDFunction();
+		functions[FTYPE_FULLAPPROX] = new FullQuickSigmoidFunction();
+		functions[FTYPE_APPROX] = new QuickSigmoidFunction();
+		functions[FTYPE_GAUSS] = new GaussianFunction();
+		functions[FTYPE_SINE] = new SineFunction();
+		functions[FTYPE_ABSVAL] = new ClippedAbsValFunction();
+		functions[FTYPE_PIECEWISE] = new FullLinearPiecewiseFunction();
+		functions[FTYPE_HLPIECEWISE] = new HalfLinearPiecewiseFunction();
+		functions[FTYPE_SAWTOOTH] = new SawtoothFunction();
+		functions[FTYPE_STRETCHED_TANH] = new StretchedTanHFunction();
+		functions[FTYPE_RE_LU] = new ReLUFunction();
+		functions[FTYPE_SOFTPLUS] = new SoftplusFunction();
+		functions[FTYPE_LEAKY_RE_LU] = new LeakyReLUFunction();
+		functions[FTYPE_FULLSAWTOOTH] = new FullSawtoothFunction();
+		functions[FTYPE_TRIANGLEWAVE] = new TriangleWaveFunction();
+		functions[FTYPE_SQUAREWAVE] = new SquareWaveFunction();
+		functions[FTYPE_FULLSIGMOID] = new FullSigmoidFunction();
+		functions[FTYPE_FULLGAUSS] = new FullGaussianFunction();
+		functions[FTYPE_COS] = new CosineFunction();
+		functions[FTYPE_SIL] = new SiLFunction();
+		for(int ftype = 0; ftype < functions.length; ftype++) {
+			approximateFunctions[ftype] = ApproximateFunction.hasApproximation(ftype) ? new ApproximateFunction(ftype, functions[ftype]) : functions[ftype];
+		}
 	}
 	
 	/**
@@ -87,7 +91,11 @@ public class ActivationFunctions {
 	 */
 	public static List<Integer> allPossibleActivationFunctions() {
 		List<Integer> list = new LinkedList<>();
-		list.addAll(functionMap.keySet());
+		for(int ftype = 0; ftype < functions.length; ftype++) {
+			if(functions[ftype] != null) {
+				list.add(ftype);
+			}
+		}
 		return list;
 	}
 	
@@ -172,19 +180,82 @@ public class ActivationFunctions {
 	 * @return activation of node
 	 */
 	public static double activation(int ftype, double sum) {
-		double activation = functionMap.get(ftype).f(sum);
+		double activation = functions[ftype].f(sum);
+		assert!Double.isNaN(activation) : activationName(ftype) + " returns NaN on " + sum + " from " + activation;
+		assert!Double.isInfinite(activation) : activationName(ftype) + " is infinite on " + sum + " from " + activation;
+		return activation;
+	}
+
+	/**
+	 * Provides activations for a whole column of node sums at once
+	 * @param ftype type of node
+	 * @param sums inputs sent to node
+	 * @param activations array to store activations of node in (may be the same as sums)
+	 * @param n number of sums to activate
+	 */
+	public static void activation(int ftype, double[] sums, double[] activations, int n) {
+		functions[ftype].f(sums, activations, n);
+		assert validActivations(ftype, sums, activations, n);
+	}
+
+	/**
+	 * Same checks as the single activation version, but for a whole column
+	 * @param ftype type of node
+	 * @param sums inputs sent to node (unchanged unless the same as activations)
+	 * @param activations activations of node
+	 * @param n number of activations
+	 * @return true if valid (otherwise an assertion fails)
+	 */
+	private static boolean validActivations(int ftype, double[] sums, double[] activations, int n) {
+		for(int i = 0; i < n; i++) {
+			assert!Double.isNaN(activations[i]) : activationName(ftype) + " returns NaN on " + sums[i] + " from " + activations[i];
+			assert!Double.isInfinite(activations[i]) : activationName(ftype) + " is infinite on " + sums[i] + " from " + activations[i];
+		}
+		return true;
+	}
+
+	/**
+	 * Approximate activation, which is faster but may differ from activation
+	 * by up to ApproximateFunction.maxError(ftype). Only for previews.
+	 * @param ftype type of node
+	 * @param sum input sent node
+	 * @return approximate activation of node
+	 */
+	public static double approximateActivation(int ftype, double sum) {
+		double activation = approximateFunctions[ftype].f(sum);
 		assert!Double.isNaN(activation) : activationName(ftype) + " returns NaN on " + sum + " from " + activation;
 		assert!Double.isInfinite(activation) : activationName(ftype) + " is infinite on " + sum + " from " + activation;
 		return activation;
 	}
 
+	/**
+	 * Approximate activations for a whole column of node sums at once
+	 * @param ftype type of node
+	 * @param sums inputs sent to node
+	 * @param activations array to store activations of node in (may be the same as sums)
+	 * @param n number of sums to activate
+	 */
+	public static void approximateActivation(int ftype, double[] sums, double[] activations, int n) {
+		approximateFunctions[ftype].f(sums, activations, n);
+		assert validActivations(ftype, sums, activations, n);
+	}
+
+	/**
+	 * The function object used for an ftype
+	 * @param ftype Identifier for activation function
+	 * @return function
+	 */
+	static ActivationFunction function(int ftype) {
+		return functions[ftype];
+	}
+
 	/**
 	 * String name of the activation function
 	 * @param ftype Identifier for activation function
 	 * @return
 	 */
 	public static String activationName(int ftype) { 
-		return functionMap.get(ftype).name();
+		return functions[ftype].name();
 	}
 		
 	/**
@@ -0,0 +1,99 @@
+package edu.southwestern.networks;
+
+import java.util.HashMap;
+import java.util.List;
+
+import edu.southwestern.networks.activationfunctions.ActivationFunction;
+import edu.southwestern.util.random.RandomNumbers;
+
+/**
+ * Compares the speed of the different ways of computing neuron activations:
+ * the old HashMap lookup (which boxes the ftype on every call), the array
+ * based ActivationFunctions.activation, and the batch version that transforms
+ * a whole column of sums at once. Also confirms that all three give exactly
+ * the same results.
+ *
+ * Run with a command line parameter to set the number of timed rounds.
+ *
+ * @author Jacob Schrum
+ */
+public class ActivationFunctionsBenchmark {
+
+	public static final int COLUMN_SIZE = 4096;
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		List<Integer> ftypes = ActivationFunctions.allPossibleActivationFunctions();
+		// The old dispatch: functions in a HashMap keyed by boxed ftype
+		HashMap<Integer,ActivationFunction> functionMap = new HashMap<>();
+		for(int ftype : ftypes) {
+			functionMap.put(ftype, ActivationFunctions.function(ftype));
+		}
+
+		RandomNumbers.reset(0);
+		double[] sums = new double[COLUMN_SIZE];
+		for(int i = 0; i < sums.length; i++) {
+			sums[i] = RandomNumbers.fullSmallRand() * 4;
+		}
+		double[] mapResults = new double[COLUMN_SIZE];
+		double[] arrayResults = new double[COLUMN_SIZE];
+		double[] batchResults = new double[COLUMN_SIZE];
+
+		// All three must agree exactly
+		for(int ftype : ftypes) {
+			for(int i = 0; i < sums.length; i++) {
+				mapResults[i] = functionMap.get(ftype).f(sums[i]);
+				arrayResults[i] = ActivationFunctions.activation(ftype, sums[i]);
+			}
+			ActivationFunctions.activation(ftype, sums, batchResults, COLUMN_SIZE);
+			for(int i = 0; i < sums.length; i++) {
+				if(Double.doubleToLongBits(mapResults[i]) != Double.doubleToLongBits(arrayResults[i]) ||
+				   Double.doubleToLongBits(mapResults[i]) != Double.doubleToLongBits(batchResults[i])) {
+					throw new IllegalStateException(ActivationFunctions.activationName(ftype) + " differs on " + sums[i] + ": " + mapResults[i] + " " + arrayResults[i] + " " + batchResults[i]);
+				}
+			}
+		}
+		System.out.println("All dispatch methods agree for " + ftypes.size() + " functions");
+
+		// Twice: the first pass warms up the JIT
+		for(int pass = 0; pass < 2; pass++) {
+			long start = System.nanoTime();
+			double check = 0;
+			for(int r = 0; r < rounds; r++) {
+				for(int ftype : ftypes) {
+					for(int i = 0; i < sums.length; i++) {
+						mapResults[i] = functionMap.get(ftype).f(sums[i]);
+					}
+					check += mapResults[r % COLUMN_SIZE];
+				}
+			}
+			long map = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for(int r = 0; r < rounds; r++) {
+				for(int ftype : ftypes) {
+					for(int i = 0; i < sums.length; i++) {
+						arrayResults[i] = ActivationFunctions.activation(ftype, sums[i]);
+					}
+					check += arrayResults[r % COLUMN_SIZE];
+				}
+			}
+			long array = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for(int r = 0; r < rounds; r++) {
+				for(int ftype : ftypes) {
+					ActivationFunctions.activation(ftype, sums, batchResults, COLUMN_SIZE);
+					check += batchResults[r % COLUMN_SIZE];
+				}
+			}
+			long batch = System.nanoTime() - start;
+
+			double activations = (double) rounds * ftypes.size() * COLUMN_SIZE;
+			System.out.printf("Pass %d (checksum %f)\n", pass, check);
+			System.out.printf("HashMap: %8.3f ns/activation\n", map / activations);
+			System.out.printf("Array:   %8.3f ns/activation\n", array / activations);
+			System.out.printf("Batch:   %8.3f ns/activation\n", batch / activations);
+		}
+	}
+}
@@ -0,0 +1,319 @@
+package edu.southwestern.networks;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import edu.southwestern.parameters.Parameters;
+
+/**
+ * Activations of every node of recently rendered CPPNs over a fixed set of
+ * samples (such as the pixels of an image), kept so that offspring only
+ * recompute the nodes their mutations actually changed. Interactive
+ * evolution replaces most of the population with mutated copies of the
+ * selected parents, and a weight perturbation, new link or spliced node
+ * only changes the nodes downstream of it.
+ *
+ * Cached activations are found by content rather than by genotype: each
+ * node is identified by its activation function, its bias, which input it
+ * is (if any), and the ordered list of cached planes and weights of its
+ * incoming links. Two nodes with the same identity add up exactly the same
+ * numbers in the same order, so their activations are bit-for-bit the same,
+ * whichever network they are in. This finds the unchanged part of a child
+ * without tracking its parent, and also helps siblings and crossover
+ * children. Source planes are compared by identity, so a match is exact
+ * rather than a hash match.
+ *
+ * Only simple feed-forward networks (see CompiledTWEANN.isSimpleFeedForward)
+ * are supported, since their batch outputs are just the activations of the
+ * output nodes. The total size of the cached activations is bounded, and the
+ * least recently used planes are discarded first. Networks whose planes would
+ * not fit in that bound at all, as with large saved images, are not cached.
+ * All methods are thread-safe.
+ *
+ * @author Jacob Schrum
+ */
+public class ActivationPlaneCache {
+
+	// Used when there are no parameters
+	public static final int DEFAULT_MEGABYTES = 128;
+	// Samples per task when computing planes in parallel
+	private static final int CHUNK = 4096;
+
+	/**
+	 * Activations of one node for every sample, along with everything that
+	 * determines them. Used as both key and value of the cache.
+	 */
+	private static final class Plane {
+		// Description of the samples and their inputs
+		final String samples;
+		final int ftype;
+		final double bias;
+		// Index of input, or -1 for other nodes
+		final int input;
+		final Plane[] sources;
+		final double[] weights;
+		final int hash;
+		// Null until computed, and again once evicted
+		double[] activations = null;
+
+		Plane(String samples, int ftype, double bias, int input, Plane[] sources, double[] weights) {
+			this.samples = samples;
+			this.ftype = ftype;
+			this.bias = bias;
+			this.input = input;
+			this.sources = sources;
+			this.weights = weights;
+			int h = samples.hashCode();
+			h = 31 * h + ftype;
+			h = 31 * h + Double.hashCode(bias);
+			h = 31 * h + input;
+			for (int i = 0; i < sources.length; i++) {
+				h = 31 * h + System.identityHashCode(sources[i]);
+				h = 31 * h + Double.hashCode(weights[i]);
+			}
+			this.hash = h;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Plane)) {
+				return false;
+			}
+			Plane p = (Plane) other;
+			if (hash != p.hash || ftype != p.ftype || input != p.input || Double.doubleToLongBits(bias) != Double.doubleToLongBits(p.bias)
+					|| sources.length != p.sources.length || !samples.equals(p.samples)) {
+				return false;
+			}
+			for (int i = 0; i < sources.length; i++) {
+				if (sources[i] != p.sources[i] || Double.doubleToLongBits(weights[i]) != Double.doubleToLongBits(p.weights[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	// Access order, so iteration starts with the least recently used plane
+	private static final LinkedHashMap<Plane, Plane> cache = new LinkedHashMap<Plane, Plane>(1024, 0.75f, true);
+	private static long cachedBytes = 0;
+	private static long hits = 0;
+	private static long misses = 0;
+
+	/**
+	 * Outputs of a network for every sample, computing only the node
+	 * activations that are not cached yet. Same results as filling input
+	 * columns for all samples and calling CompiledTWEANN.processBatch.
+	 *
+	 * @param network compiled network
+	 * @param samplesKey unique description of the samples and their inputs (dimensions, input multipliers)
+	 * @param numSamples number of samples
+	 * @param inputs source of the inputs of each sample
+	 * @return one column of every sample for each output, which must not be modified,
+	 *         or null if the network is not simple feed-forward, caching is disabled,
+	 *         or the planes of the network would not fit in the cache (such as for large saved images)
+	 */
+	public static double[][] outputs(CompiledTWEANN network, String samplesKey, int numSamples, InputColumnSource inputs) {
+		long budget = budget();
+		final int n = network.numNodes();
+		// Checked before anything is allocated, so large images neither run out of memory nor flush the cache
+		if ((long) numSamples * n * 8 > budget || !network.isSimpleFeedForward()) {
+			return null;
+		}
+		String samples = samplesKey + "/" + numSamples + "/" + network.usesApproximateActivations();
+		int[] edgeStart = network.edgeStart;
+		int[] edgeTarget = network.edgeTarget;
+		// Incoming links of each node, in the order they transmit
+		int[] incomingCount = new int[n];
+		for (int e = 0; e < edgeTarget.length; e++) {
+			incomingCount[edgeTarget[e]]++;
+		}
+		int[][] incomingSource = new int[n][];
+		double[][] incomingWeight = new double[n][];
+		for (int i = 0; i < n; i++) {
+			incomingSource[i] = new int[incomingCount[i]];
+			incomingWeight[i] = new double[incomingCount[i]];
+		}
+		Arrays.fill(incomingCount, 0);
+		for (int i = 0; i < n; i++) {
+			for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+				int target = edgeTarget[e];
+				incomingSource[target][incomingCount[target]] = i;
+				incomingWeight[target][incomingCount[target]++] = network.edgeWeight[e];
+			}
+		}
+
+		// Sources come before targets, so every source plane is known when its targets are looked up
+		Plane[] planes = new Plane[n];
+		double[][] activations = new double[n][];
+		int[] missingNodes = new int[n];
+		int numMissing = 0;
+		boolean inputsNeeded = false;
+		for (int i = 0; i < n; i++) {
+			Plane[] sources = new Plane[incomingSource[i].length];
+			for (int j = 0; j < sources.length; j++) {
+				sources[j] = planes[incomingSource[i][j]];
+			}
+			Plane key = new Plane(samples, network.ftypes[i], network.biases[i], i < network.numInputs() ? i : -1, sources, incomingWeight[i]);
+			synchronized (cache) {
+				Plane cached = cache.get(key);
+				if (cached != null && cached.activations != null) {
+					hits++;
+					planes[i] = cached;
+					activations[i] = cached.activations;
+					continue;
+				}
+				misses++;
+				// Replaces a plane that was evicted or is being computed by another thread
+				cache.put(key, key);
+			}
+			planes[i] = key;
+			activations[i] = new double[numSamples];
+			missingNodes[numMissing++] = i;
+			inputsNeeded |= key.input >= 0;
+		}
+
+		if (numMissing > 0) {
+			missingNodes = Arrays.copyOf(missingNodes, numMissing);
+			ForkJoinPool.commonPool().invoke(new PlaneTask(network, missingNodes, incomingSource, incomingWeight, activations, inputsNeeded ? inputs : null, 0, numSamples));
+			synchronized (cache) {
+				for (int i : missingNodes) {
+					Plane p = planes[i];
+					// Only counts if no other thread replaced it in the meantime
+					if (cache.get(p) == p) {
+						p.activations = activations[i];
+						cachedBytes += (long) numSamples * 8;
+					}
+				}
+				Iterator<Map.Entry<Plane, Plane>> itr = cache.entrySet().iterator();
+				while (cachedBytes > budget && itr.hasNext()) {
+					Plane p = itr.next().getValue();
+					if (p.activations != null) {
+						cachedBytes -= (long) p.activations.length * 8;
+						p.activations = null;
+					}
+					itr.remove();
+				}
+			}
+		}
+
+		double[][] outputColumns = new double[network.effectiveNumOutputs()][];
+		for (int o = 0; o < outputColumns.length; o++) {
+			outputColumns[o] = activations[network.outputStart + o];
+		}
+		return outputColumns;
+	}
+
+	/**
+	 * Remove all cached planes and reset the counters
+	 */
+	public static void clear() {
+		synchronized (cache) {
+			for (Plane p : cache.values()) {
+				p.activations = null;
+			}
+			cache.clear();
+			cachedBytes = 0;
+			hits = 0;
+			misses = 0;
+		}
+	}
+
+	/**
+	 * Summary of cache performance
+	 *
+	 * @return counters as a String
+	 */
+	public static String statistics() {
+		synchronized (cache) {
+			return "Activation plane cache: " + hits + " hits, " + misses + " misses, " + (cachedBytes / (1024 * 1024)) + " MB";
+		}
+	}
+
+	/**
+	 * Maximum number of bytes of cached activations
+	 *
+	 * @return budget (0 disables caching)
+	 */
+	private static long budget() {
+		long megabytes = Parameters.parameters == null ? DEFAULT_MEGABYTES : Parameters.parameters.integerParameter("activationPlaneCacheMB");
+		return Math.min(megabytes * 1024 * 1024, Runtime.getRuntime().maxMemory() / 4);
+	}
+
+	/**
+	 * Computes the missing planes for a range of samples, splitting large
+	 * ranges in half so that the parts are computed in parallel. Each node
+	 * adds up its bias, its input and its incoming links in the same order
+	 * as CompiledTWEANN.processBatch.
+	 */
+	private static class PlaneTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final CompiledTWEANN network;
+		private final int[] missingNodes;
+		private final int[][] incomingSource;
+		private final double[][] incomingWeight;
+		private final double[][] activations;
+		private final InputColumnSource inputs;
+		private final int firstSample;
+		private final int count;
+
+		PlaneTask(CompiledTWEANN network, int[] missingNodes, int[][] incomingSource, double[][] incomingWeight, double[][] activations, InputColumnSource inputs, int firstSample, int count) {
+			this.network = network;
+			this.missingNodes = missingNodes;
+			this.incomingSource = incomingSource;
+			this.incomingWeight = incomingWeight;
+			this.activations = activations;
+			this.inputs = inputs;
+			this.firstSample = firstSample;
+			this.count = count;
+		}
+
+		@Override
+		protected void compute() {
+			if (count > CHUNK) {
+				int half = count / 2;
+				invokeAll(new PlaneTask(network, missingNodes, incomingSource, incomingWeight, activations, inputs, firstSample, half),
+						  new PlaneTask(network, missingNodes, incomingSource, incomingWeight, activations, inputs, firstSample + half, count - half));
+				return;
+			}
+			double[][] inputColumns = null;
+			if (inputs != null) {
+				inputColumns = new double[network.numInputs()][count];
+				inputs.fillInputColumns(firstSample, count, inputColumns);
+			}
+			double[] sum = new double[count];
+			double[] activation = new double[count];
+			for (int i : missingNodes) {
+				Arrays.fill(sum, network.biases[i]);
+				if (i < network.numInputs()) {
+					double[] input = inputColumns[i];
+					for (int s = 0; s < count; s++) {
+						sum[s] += input[s];
+					}
+				}
+				for (int j = 0; j < incomingSource[i].length; j++) {
+					double[] source = activations[incomingSource[i][j]];
+					double weight = incomingWeight[i][j];
+					for (int s = 0; s < count; s++) {
+						sum[s] += (source[firstSample + s] * weight);
+					}
+				}
+				if (network.usesApproximateActivations()) {
+					ActivationFunctions.approximateActivation(network.ftypes[i], sum, activation, count);
+				} else {
+					ActivationFunctions.activation(network.ftypes[i], sum, activation, count);
+				}
+				System.arraycopy(activation, 0, activations[i], firstSample, count);
+			}
+		}
+	}
+}
@@ -0,0 +1,943 @@
+package edu.southwestern.networks;
+
+import edu.southwestern.evolution.EvolutionaryHistory;
+import edu.southwestern.evolution.genotypes.TWEANNGenotype;
+import edu.southwestern.evolution.genotypes.TWEANNGenotype.LinkGene;
+import edu.southwestern.evolution.genotypes.TWEANNGenotype.NodeGene;
+import edu.southwestern.MMNEAT.MMNEAT;
+import edu.southwestern.parameters.CommonConstants;
+import edu.southwestern.parameters.Parameters;
+import edu.southwestern.util.datastructures.LongIntHashMap;
+import edu.southwestern.util.random.RandomNumbers;
+import edu.southwestern.util.stats.StatisticsUtilities;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A "compiled" version of a TWEANN phenotype. The node list and linked lists
+ * of Link objects are flattened into primitive parallel arrays: each node has
+ * an activation function type and bias, and all outgoing links are stored in
+ * a compressed sparse row (CSR) layout, where the links leaving node i are at
+ * positions edgeStart[i] up to (but not including) edgeStart[i+1] of the
+ * edgeTarget and edgeWeight arrays.
+ *
+ * The network behaves exactly like the TWEANN built from the same genotype:
+ * nodes are activated in the same order, links transmit in the same order,
+ * and the internal sums and activations persist between calls to process
+ * until flush is called. This means outputs are bit-for-bit identical, even
+ * for recurrent networks. Drawing is not supported, which is why this class
+ * is intended for rendering CPPN output (images, animations, shapes, sounds)
+ * rather than for watching networks act in a domain.
+ *
+ * @author Jacob Schrum
+ */
+public class CompiledTWEANN implements Network {
+
+	// Number of specialized networks kept by specialized()
+	public static final int SPECIALIZATION_CACHE_SIZE = 256;
+
+	// Specialized networks keyed by genotype id and constant inputs, each stored with the network it came from
+	private static final LinkedHashMap<String, CompiledTWEANN[]> specializations = new LinkedHashMap<String, CompiledTWEANN[]>(16, 0.75f, true);
+
+	private final long id;
+	private final int numIn;
+	private final int numOut;
+	private final int numModes;
+	private final int neuronsPerModule;
+	private final boolean standardMultitask;
+	public final int outputStart;
+
+	// Per node data, in the same order as the TWEANN node list
+	final int[] ftypes;
+	final double[] biases;
+	// CSR link data: links leaving node i are in [edgeStart[i], edgeStart[i+1])
+	final int[] edgeStart;
+	final int[] edgeTarget;
+	final double[] edgeWeight;
+
+	// Internal state, equivalent to Node.sum and Node.activation
+	private final double[] sums;
+	private final double[] activations;
+
+	private int presetMode;
+	private int chosenModule = 0;
+	private int[] moduleUsage;
+	private double[] preferenceFatigue;
+
+	// Use faster approximate activation functions (for previews only)
+	private boolean approximateActivations = false;
+
+	// Scratch space for processBatch: one column of samples per node
+	private double[][] batchSums = null;
+	private double[][] batchActivations = null;
+
+	/**
+	 * Compile a genotype directly. Only active links are included, and
+	 * links leaving each node keep the order they have in the genotype,
+	 * which is the order the TWEANN phenotype would transmit along them.
+	 *
+	 * @param g TWEANNGenotype to compile
+	 */
+	public CompiledTWEANN(TWEANNGenotype g) {
+		this(g, null);
+	}
+
+	/**
+	 * Compile a genotype, with its nodes activated in the given order
+	 * instead of the order of the node list. The order comes from
+	 * TWEANNGenotype.topologicalNodeOrder, which lets imported genomes
+	 * whose node lists are not sorted be evaluated without changing them.
+	 *
+	 * @param g TWEANNGenotype to compile
+	 * @param nodeOrder positions in g.nodes in the order to activate them,
+	 *        or null to use the order of the node list
+	 */
+	public CompiledTWEANN(TWEANNGenotype g, int[] nodeOrder) {
+		this.id = g.getId();
+		int n = g.nodes.size();
+		this.ftypes = new int[n];
+		this.biases = new double[n];
+		LongIntHashMap nodeIndex = new LongIntHashMap(n);
+		int countIn = 0;
+		int countOut = 0;
+		for (int i = 0; i < n; i++) {
+			NodeGene ng = g.nodes.get(nodeOrder == null ? i : nodeOrder[i]);
+			ftypes[i] = ng.ftype;
+			biases[i] = ng.getBias();
+			nodeIndex.put(ng.innovation, i);
+			if (ng.ntype == TWEANN.Node.NTYPE_INPUT) {
+				countIn++;
+			} else if (ng.ntype == TWEANN.Node.NTYPE_OUTPUT) {
+				countOut++;
+			}
+		}
+		this.numIn = countIn;
+		this.numOut = countOut;
+		this.outputStart = n - numOut;
+		this.numModes = g.numModules;
+		this.neuronsPerModule = g.neuronsPerModule;
+		this.standardMultitask = g.standardMultitask;
+
+		// Count links leaving each node, then place each link after its
+		// predecessors from the same source so that transmission order matches
+		int numLinks = 0;
+		this.edgeStart = new int[n + 1];
+		int[] sources = new int[g.links.size()];
+		int[] targets = new int[g.links.size()];
+		double[] weights = new double[g.links.size()];
+		for (LinkGene lg : g.links) {
+			if (lg.isActive()) {
+				int source = nodeIndex.get(lg.sourceInnovation);
+				int target = nodeIndex.get(lg.targetInnovation);
+				assert source != -1 : "No node with innovation " + lg.sourceInnovation + " existed";
+				assert target != -1 : "No target: " + lg + "\nNet:" + g.getId();
+				sources[numLinks] = source;
+				targets[numLinks] = target;
+				weights[numLinks] = lg.weight;
+				edgeStart[source + 1]++;
+				numLinks++;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			edgeStart[i + 1] += edgeStart[i];
+		}
+		this.edgeTarget = new int[numLinks];
+		this.edgeWeight = new double[numLinks];
+		int[] fill = Arrays.copyOf(edgeStart, n);
+		for (int l = 0; l < numLinks; l++) {
+			int pos = fill[sources[l]]++;
+			edgeTarget[pos] = targets[l];
+			edgeWeight[pos] = weights[l];
+		}
+
+		this.sums = new double[n];
+		this.activations = new double[n];
+		this.moduleUsage = new int[numModes];
+		this.preferenceFatigue = new double[numModes];
+		flush();
+	}
+
+	/**
+	 * Compile an existing TWEANN phenotype. The compiled network starts out
+	 * flushed, regardless of the internal state of the TWEANN.
+	 *
+	 * @param t TWEANN to compile
+	 */
+	public CompiledTWEANN(TWEANN t) {
+		this.id = t.getId();
+		int n = t.nodes.size();
+		this.ftypes = new int[n];
+		this.biases = new double[n];
+		HashMap<TWEANN.Node, Integer> nodeIndex = new HashMap<TWEANN.Node, Integer>(n * 2);
+		int numLinks = 0;
+		for (int i = 0; i < n; i++) {
+			TWEANN.Node node = t.nodes.get(i);
+			ftypes[i] = node.ftype;
+			biases[i] = node.bias;
+			nodeIndex.put(node, i);
+			numLinks += node.outputs.size();
+		}
+		this.numIn = t.numInputs();
+		this.numOut = t.numOutputs();
+		this.outputStart = t.outputStart;
+		this.numModes = t.numModules();
+		this.neuronsPerModule = t.neuronsPerModule();
+		this.standardMultitask = t.isStandardMultitask();
+
+		this.edgeStart = new int[n + 1];
+		this.edgeTarget = new int[numLinks];
+		this.edgeWeight = new double[numLinks];
+		int pos = 0;
+		for (int i = 0; i < n; i++) {
+			edgeStart[i] = pos;
+			for (TWEANN.Link l : t.nodes.get(i).outputs) {
+				edgeTarget[pos] = nodeIndex.get(l.target);
+				edgeWeight[pos] = l.weight;
+				pos++;
+			}
+		}
+		edgeStart[n] = pos;
+
+		this.sums = new double[n];
+		this.activations = new double[n];
+		this.moduleUsage = new int[numModes];
+		this.preferenceFatigue = new double[numModes];
+		flush();
+	}
+
+	/**
+	 * Get a compiled version of a network if possible.
+	 *
+	 * @param n Any network
+	 * @return n itself if already compiled, a new compiled version of n if
+	 *         it is a TWEANN, and null otherwise
+	 */
+	public static CompiledTWEANN compile(Network n) {
+		if (n instanceof CompiledTWEANN) {
+			return (CompiledTWEANN) n;
+		} else if (n instanceof TWEANN) {
+			return new CompiledTWEANN((TWEANN) n);
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Get a compiled version of a network whose outputs do not depend on
+	 * anything left over from previous samples. Such a network can be batch
+	 * processed even by code that never flushes the network between
+	 * samples.
+	 *
+	 * @param n Any network
+	 * @return compiled version of n, or null if n cannot be compiled, has
+	 *         recurrent links, or has multiple modules (preference fatigue
+	 *         carries over between samples)
+	 */
+	public static CompiledTWEANN compileStateless(Network n) {
+		CompiledTWEANN compiled = compile(n);
+		return compiled != null && compiled.numModes == 1 && compiled.isFeedForward() ? compiled : null;
+	}
+
+	/**
+	 * Creates a fresh (flushed) copy that shares the immutable compiled
+	 * arrays, but has its own internal state. Useful for giving each
+	 * thread its own evaluator.
+	 *
+	 * @param other Compiled network to copy
+	 */
+	public CompiledTWEANN(CompiledTWEANN other) {
+		this.id = other.id;
+		this.numIn = other.numIn;
+		this.numOut = other.numOut;
+		this.numModes = other.numModes;
+		this.neuronsPerModule = other.neuronsPerModule;
+		this.standardMultitask = other.standardMultitask;
+		this.outputStart = other.outputStart;
+		this.ftypes = other.ftypes;
+		this.biases = other.biases;
+		this.edgeStart = other.edgeStart;
+		this.edgeTarget = other.edgeTarget;
+		this.edgeWeight = other.edgeWeight;
+		this.approximateActivations = other.approximateActivations;
+		this.sums = new double[biases.length];
+		this.activations = new double[biases.length];
+		this.moduleUsage = new int[numModes];
+		this.preferenceFatigue = new double[numModes];
+		flush();
+	}
+
+	/**
+	 * Network made of the given parts, used for specialized networks
+	 */
+	private CompiledTWEANN(CompiledTWEANN other, int[] ftypes, double[] biases, int[] edgeStart, int[] edgeTarget, double[] edgeWeight) {
+		this.id = other.id;
+		this.numIn = other.numIn;
+		this.numOut = other.numOut;
+		this.numModes = other.numModes;
+		this.neuronsPerModule = other.neuronsPerModule;
+		this.standardMultitask = other.standardMultitask;
+		this.outputStart = biases.length - numOut;
+		this.ftypes = ftypes;
+		this.biases = biases;
+		this.edgeStart = edgeStart;
+		this.edgeTarget = edgeTarget;
+		this.edgeWeight = edgeWeight;
+		this.approximateActivations = other.approximateActivations;
+		this.sums = new double[biases.length];
+		this.activations = new double[biases.length];
+		this.moduleUsage = new int[numModes];
+		this.preferenceFatigue = new double[numModes];
+		flush();
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Total number of nodes in the network
+	 * @return number of nodes
+	 */
+	public int numNodes() {
+		return biases.length;
+	}
+
+	/**
+	 * Total number of active links in the network
+	 * @return number of links
+	 */
+	public int numLinks() {
+		return edgeTarget.length;
+	}
+
+	/**
+	 * Whether every link goes from a node to a later node. Without
+	 * recurrent links, the internal state left over from one call to
+	 * process has no effect on the next, so flushing between samples
+	 * does not matter.
+	 *
+	 * @return true if there are no recurrent links
+	 */
+	public boolean isFeedForward() {
+		for (int i = 0; i < biases.length; i++) {
+			for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+				if (edgeTarget[e] <= i) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Whether the network is feed-forward with a single module that always
+	 * wins, so that processBatch transmits along every link exactly once per
+	 * sample, in node order, and its outputs are just the activations of the
+	 * output nodes. Such networks can be specialized and hoisted.
+	 *
+	 * @return true if batch outputs only depend on the output activations
+	 */
+	public boolean isSimpleFeedForward() {
+		return singleModuleWins() && isFeedForward();
+	}
+
+	/**
+	 * @return whether there is only one module, and it always wins
+	 */
+	private boolean singleModuleWins() {
+		return numModes == 1 && CommonConstants.disabledMode < 0 && !CommonConstants.softmaxModeSelection
+				&& !CommonConstants.weightedAverageModeAggregation;
+	}
+
+	/**
+	 * Whether processBatch ignores every link to an earlier node (or to the
+	 * node itself). Each sample starts flushed, so such a link only adds to
+	 * the sum of a node that has already been activated, and that sum is
+	 * never used unless the final pass activates an output node again.
+	 * Evolved CPPNs often have such links, from output nodes to hidden nodes
+	 * placed before them, or between hidden nodes in an unsorted node list.
+	 *
+	 * @return true if no link to an earlier node can affect batch outputs
+	 */
+	private boolean batchIgnoresBackwardLinks() {
+		for (int i = 0; i < biases.length; i++) {
+			for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+				if (edgeTarget[e] <= i && TWEANN.finalPassOnOutputActivation && edgeTarget[e] >= outputStart) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Hash of everything that affects the outputs of the network
+	 *
+	 * @return hash of structure and weights
+	 */
+	public long structureHash() {
+		long h = Arrays.hashCode(ftypes);
+		h = 31 * h + Arrays.hashCode(biases);
+		h = 31 * h + Arrays.hashCode(edgeStart);
+		h = 31 * h + Arrays.hashCode(edgeTarget);
+		h = 31 * h + Arrays.hashCode(edgeWeight);
+		h = 31 * h + numIn;
+		h = 31 * h + numOut;
+		return 31 * h + (approximateActivations ? 1 : 0);
+	}
+
+	/**
+	 * Whether another network has the same structure and weights, and
+	 * therefore always produces the same outputs as this one
+	 *
+	 * @param other another compiled network
+	 * @return true if the networks are equivalent
+	 */
+	public boolean sameStructure(CompiledTWEANN other) {
+		return numIn == other.numIn && numOut == other.numOut && numModes == other.numModes && neuronsPerModule == other.neuronsPerModule
+				&& standardMultitask == other.standardMultitask && approximateActivations == other.approximateActivations
+				&& Arrays.equals(ftypes, other.ftypes) && Arrays.equals(biases, other.biases) && Arrays.equals(edgeStart, other.edgeStart)
+				&& Arrays.equals(edgeTarget, other.edgeTarget) && Arrays.equals(edgeWeight, other.edgeWeight);
+	}
+
+	/**
+	 * A smaller network that gives exactly the same batch outputs as this
+	 * one, as long as the inputs marked as constant always have the given
+	 * values. This is the case for the bias input, and for inputs that are
+	 * turned off with an input multiplier of zero.
+	 *
+	 * Every node that only depends on constant inputs (or on no inputs at
+	 * all) has the same activation for every sample. Those activations are
+	 * computed once: contributions that reach a node before its first
+	 * non-constant contribution are folded into its bias, and each constant
+	 * node that still sends to a non-constant node later on is replaced by an
+	 * identity node whose bias is its activation, so every sum is still
+	 * accumulated in the same order. Nodes with no path to an output are
+	 * dropped, and so are links to earlier nodes that batch processing
+	 * ignores anyway, which makes the result feed-forward. Input and output
+	 * nodes are always kept, so the inputs and outputs of the network do not
+	 * change.
+	 *
+	 * A zero input may actually arrive as -0.0 (a negative input times a zero
+	 * multiplier), so a zero input is only treated as constant if the sign
+	 * cannot change the sum of its node.
+	 *
+	 * @param constantInputs which inputs are constant
+	 * @param inputValues values of the constant inputs
+	 * @return specialized network, or this network if it has several modules,
+	 *         has links to earlier nodes that matter, or nothing can be removed
+	 */
+	public CompiledTWEANN specialize(boolean[] constantInputs, double[] inputValues) {
+		if (!singleModuleWins() || !batchIgnoresBackwardLinks()) {
+			return this;
+		}
+		final int n = biases.length;
+		boolean[] variable = new boolean[n];
+		// Index of the first non-constant node to send to each node
+		int[] firstVariableSource = new int[n];
+		Arrays.fill(firstVariableSource, n);
+		for (int i = 0; i < numIn; i++) {
+			variable[i] = !constantInputs[i] || (inputValues[i] == 0 && Double.doubleToRawLongBits(biases[i] + 0.0) != Double.doubleToRawLongBits(biases[i] - 0.0));
+			if (variable[i]) {
+				firstVariableSource[i] = -1; // Input arrives before any link transmits
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			if (variable[i]) {
+				for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+					if (edgeTarget[e] > i) {
+						variable[edgeTarget[e]] = true;
+						firstVariableSource[edgeTarget[e]] = Math.min(firstVariableSource[edgeTarget[e]], i);
+					}
+				}
+			}
+		}
+		// Activations of constant nodes, and prefix sums of the others, added up exactly as processBatch does
+		double[] constant = new double[n];
+		double[] sum = Arrays.copyOf(biases, n);
+		for (int i = 0; i < numIn; i++) {
+			if (!variable[i]) {
+				sum[i] += inputValues[i];
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			if (!variable[i]) {
+				constant[i] = approximateActivations ? ActivationFunctions.approximateActivation(ftypes[i], sum[i]) : ActivationFunctions.activation(ftypes[i], sum[i]);
+				for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+					int target = edgeTarget[e];
+					if (target > i && i < firstVariableSource[target]) {
+						sum[target] += (constant[i] * edgeWeight[e]);
+					}
+				}
+			}
+		}
+		// Links still needed are those into kept non-constant nodes that are not part of a prefix.
+		// Targets come after sources, so a backward pass decides which nodes are kept.
+		boolean[] kept = new boolean[n];
+		int numKept = 0;
+		int numKeptLinks = 0;
+		for (int i = n - 1; i >= 0; i--) {
+			for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+				if (keptLink(i, edgeTarget[e], variable, firstVariableSource, kept)) {
+					kept[i] = true;
+					numKeptLinks++;
+				}
+			}
+			kept[i] |= i < numIn || i >= outputStart;
+			if (kept[i]) {
+				numKept++;
+			}
+		}
+		boolean constantHidden = false;
+		for (int i = numIn; i < n; i++) {
+			constantHidden |= kept[i] && !variable[i];
+		}
+		if (numKept == n && numKeptLinks == edgeTarget.length && !constantHidden) {
+			return this;
+		}
+
+		int[] newIndex = new int[n];
+		int[] newFtypes = new int[numKept];
+		double[] newBiases = new double[numKept];
+		int[] newEdgeStart = new int[numKept + 1];
+		int[] newEdgeTarget = new int[numKeptLinks];
+		double[] newEdgeWeight = new double[numKeptLinks];
+		for (int i = 0, k = 0; i < n; i++) {
+			if (kept[i]) {
+				newIndex[i] = k++;
+			}
+		}
+		int pos = 0;
+		for (int i = 0; i < n; i++) {
+			if (kept[i]) {
+				int k = newIndex[i];
+				if (i >= numIn && !variable[i]) {
+					// Identity of the bias is the constant activation
+					newFtypes[k] = ActivationFunctions.FTYPE_ID;
+					newBiases[k] = constant[i];
+				} else {
+					newFtypes[k] = ftypes[i];
+					// Inputs still receive their inputs, so only hidden and output sums include the prefix
+					newBiases[k] = i < numIn ? biases[i] : sum[i];
+				}
+				newEdgeStart[k] = pos;
+				for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+					if (keptLink(i, edgeTarget[e], variable, firstVariableSource, kept)) {
+						newEdgeTarget[pos] = newIndex[edgeTarget[e]];
+						newEdgeWeight[pos] = edgeWeight[e];
+						pos++;
+					}
+				}
+			}
+		}
+		newEdgeStart[numKept] = pos;
+		return new CompiledTWEANN(this, newFtypes, newBiases, newEdgeStart, newEdgeTarget, newEdgeWeight);
+	}
+
+	/**
+	 * Whether a link survives specialization: it must lead forward to a kept
+	 * node that is not constant, and must not be part of that node's prefix
+	 */
+	private static boolean keptLink(int source, int target, boolean[] variable, int[] firstVariableSource, boolean[] kept) {
+		return target > source && kept[target] && variable[target] && source >= firstVariableSource[target];
+	}
+
+	/**
+	 * Shared specialized version of a network (see specialize), so that
+	 * each genotype is only specialized once for each combination of
+	 * constant inputs, even though every image and frame compiles a new
+	 * copy of its phenotype.
+	 *
+	 * @param network compiled network
+	 * @param constantInputs which inputs are constant
+	 * @param inputValues values of the constant inputs
+	 * @return specialized network, which should be copied before use by several threads
+	 */
+	public static CompiledTWEANN specialized(CompiledTWEANN network, boolean[] constantInputs, double[] inputValues) {
+		if (!network.singleModuleWins() || !network.batchIgnoresBackwardLinks()) {
+			return network;
+		}
+		StringBuilder key = new StringBuilder().append(network.id).append('/').append(network.structureHash());
+		for (int i = 0; i < network.numIn; i++) {
+			key.append(constantInputs[i] ? "/" + inputValues[i] : "/*");
+		}
+		String k = key.toString();
+		synchronized (specializations) {
+			CompiledTWEANN[] entry = specializations.get(k);
+			if (entry != null && entry[0].sameStructure(network)) {
+				return entry[1];
+			}
+		}
+		CompiledTWEANN result = network.specialize(constantInputs, inputValues);
+		synchronized (specializations) {
+			// A copy shares the structure without holding on to the caller's batch scratch space
+			specializations.put(k, new CompiledTWEANN[] {new CompiledTWEANN(network), result});
+			Iterator<Map.Entry<String, CompiledTWEANN[]>> itr = specializations.entrySet().iterator();
+			while (specializations.size() > SPECIALIZATION_CACHE_SIZE && itr.hasNext()) {
+				itr.next();
+				itr.remove();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Whether to use ActivationFunctions.approximateActivation instead of
+	 * the exact activation functions. Results are slightly different, so
+	 * this is only appropriate for previews.
+	 *
+	 * @param approximate true to use approximate activation functions
+	 */
+	public void setApproximateActivations(boolean approximate) {
+		approximateActivations = approximate;
+	}
+
+	/**
+	 * @return whether approximate activation functions are used
+	 */
+	public boolean usesApproximateActivations() {
+		return approximateActivations;
+	}
+
+	@Override
+	public int[] getModuleUsage() {
+		return moduleUsage;
+	}
+
+	@Override
+	public int numInputs() {
+		return numIn;
+	}
+
+	@Override
+	public int numOutputs() {
+		return numOut;
+	}
+
+	@Override
+	public int effectiveNumOutputs() {
+		return neuronsPerModule;
+	}
+
+	@Override
+	public int numModules() {
+		return numModes;
+	}
+
+	@Override
+	public boolean isMultitask() {
+		return standardMultitask;
+	}
+
+	@Override
+	public void chooseMode(int mode) {
+		presetMode = mode;
+	}
+
+	@Override
+	public int lastModule() {
+		return chosenModule;
+	}
+
+	/**
+	 * Activate node i, reset its sum to the bias, and send the activation
+	 * along all outgoing links. Same as Node.activateAndTransmit in TWEANN.
+	 *
+	 * @param i index of node
+	 */
+	private void activateAndTransmit(int i) {
+		double activation = approximateActivations ? ActivationFunctions.approximateActivation(ftypes[i], sums[i]) : ActivationFunctions.activation(ftypes[i], sums[i]);
+		activations[i] = activation;
+		sums[i] = biases[i];
+		for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+			sums[edgeTarget[e]] += (activation * edgeWeight[e]);
+		}
+	}
+
+	/**
+	 * Same semantics as TWEANN.process, but without any drawing.
+	 *
+	 * @param inputs sensor readings for the network
+	 * @return network output (single module)
+	 */
+	@Override
+	public double[] process(double[] inputs) {
+		assert(inputs.length == numIn) : "Input mismatch! numIn = " + numIn + "\n" + "inputs.length = " + inputs.length + "\n" + Arrays.toString(inputs);
+		// Load inputs
+		for (int i = 0; i < numIn; i++) {
+			sums[i] += inputs[i];
+		}
+		// Activate nodes in forward order
+		final int n = biases.length;
+		for (int i = 0; i < n; i++) {
+			activateAndTransmit(i);
+		}
+		// Remaining activation in output neurons (see TWEANN.process)
+		if (TWEANN.finalPassOnOutputActivation) {
+			for (int i = outputStart; i < n; i++) {
+				if (sums[i] != biases[i]) {
+					activateAndTransmit(i);
+				}
+			}
+		}
+
+		double[] preferences = new double[numModes];
+		if (numModes == 1) {
+			preferences[0] = 1.0;
+		} else if (standardMultitask) {
+			preferences[presetMode] = 1.0;
+		} else {
+			for (int m = 0; m < numModes; m++) {
+				preferences[m] = activations[outputStart + (m * (neuronsPerModule + 1)) + neuronsPerModule];
+			}
+		}
+		// subtract fatigue
+		for (int i = 0; i < preferenceFatigue.length; i++) {
+			preferences[i] -= preferenceFatigue[i];
+		}
+		if (CommonConstants.disabledMode >= 0) {
+			// Can never be selected
+			preferences[CommonConstants.disabledMode] = -2;
+		}
+		// determine winner
+		chosenModule = CommonConstants.softmaxModeSelection
+				? StatisticsUtilities.softmax(preferences, CommonConstants.softmaxTemperature)
+				: StatisticsUtilities.argmax(preferences);
+		this.moduleUsage[chosenModule]++;
+		// add new fatigue
+		preferenceFatigue[chosenModule] += CommonConstants.preferenceNeuronFatigueUnit;
+		// decay fatigue
+		for (int i = 0; i < preferenceFatigue.length; i++) {
+			if (i != chosenModule) { // don't decay chosen mode
+				preferenceFatigue[i] *= CommonConstants.preferenceNeuronDecay;
+			}
+		}
+
+		if (CommonConstants.weightedAverageModeAggregation) {
+			double[] outputs = new double[neuronsPerModule];
+			for (int i = 0; i < outputs.length; i++) {
+				for (int j = 0; j < numModes; j++) {
+					int modeStart = outputStart + (j * (neuronsPerModule + 1));
+					outputs[i] += preferences[j] * activations[modeStart + i];
+				}
+				outputs[i] /= numModes;
+			}
+			return outputs;
+		} else {
+			return moduleOutput(chosenModule);
+		}
+	}
+
+	/**
+	 * Evaluate many samples at once. Data is laid out as a structure of
+	 * arrays: inputColumns[i][s] is input i of sample s, and
+	 * outputColumns[o][s] receives output o of sample s. Each node is
+	 * processed across all samples before moving to the next node, so the
+	 * inner loops are simple array operations that the JIT can vectorize,
+	 * and no arrays are allocated per sample once the scratch space is big
+	 * enough.
+	 *
+	 * The result for each sample is identical to calling flush() followed
+	 * by process() on that sample alone. The network is left flushed
+	 * afterward. One difference: when there is only one module there is
+	 * nothing to arbitrate, so no random tie-breaking numbers are drawn.
+	 *
+	 * @param inputColumns numInputs() columns of sample inputs
+	 * @param outputColumns effectiveNumOutputs() columns to fill with
+	 *            outputs, each at least as long as the input columns
+	 */
+	public void processBatch(double[][] inputColumns, double[][] outputColumns) {
+		processBatch(inputColumns, outputColumns, numIn == 0 ? outputColumns[0].length : inputColumns[0].length);
+	}
+
+	/**
+	 * Same as above, but only the first count samples in each column are
+	 * processed. Allows the same column arrays to be reused for batches of
+	 * different sizes.
+	 *
+	 * @param inputColumns numInputs() columns of sample inputs
+	 * @param outputColumns effectiveNumOutputs() columns to fill with outputs
+	 * @param count number of samples to process
+	 */
+	public void processBatch(double[][] inputColumns, double[][] outputColumns, int count) {
+		assert inputColumns.length == numIn : "Input mismatch! numIn = " + numIn + "\n" + "inputColumns.length = " + inputColumns.length;
+		assert outputColumns.length == neuronsPerModule : "Output mismatch! neuronsPerModule = " + neuronsPerModule + "\n" + "outputColumns.length = " + outputColumns.length;
+		final int n = biases.length;
+		if (batchSums == null || batchSums[0].length < count) {
+			batchSums = new double[n][count];
+			batchActivations = new double[n][count];
+		}
+		// Flushed state, then load inputs
+		for (int i = 0; i < n; i++) {
+			Arrays.fill(batchSums[i], 0, count, biases[i]);
+		}
+		for (int i = 0; i < numIn; i++) {
+			double[] sum = batchSums[i];
+			double[] input = inputColumns[i];
+			for (int s = 0; s < count; s++) {
+				sum[s] += input[s];
+			}
+		}
+		// Activate nodes in forward order
+		for (int i = 0; i < n; i++) {
+			double[] sum = batchSums[i];
+			double[] activation = batchActivations[i];
+			if (approximateActivations) {
+				ActivationFunctions.approximateActivation(ftypes[i], sum, activation, count);
+			} else {
+				ActivationFunctions.activation(ftypes[i], sum, activation, count);
+			}
+			Arrays.fill(sum, 0, count, biases[i]);
+			for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+				double[] target = batchSums[edgeTarget[e]];
+				double weight = edgeWeight[e];
+				for (int s = 0; s < count; s++) {
+					target[s] += (activation[s] * weight);
+				}
+			}
+		}
+		// Remaining activation in output neurons (see TWEANN.process)
+		if (TWEANN.finalPassOnOutputActivation) {
+			for (int i = outputStart; i < n; i++) {
+				double[] sum = batchSums[i];
+				double[] activation = batchActivations[i];
+				for (int s = 0; s < count; s++) {
+					if (sum[s] != biases[i]) {
+						activation[s] = approximateActivations ? ActivationFunctions.approximateActivation(ftypes[i], sum[s]) : ActivationFunctions.activation(ftypes[i], sum[s]);
+						sum[s] = biases[i];
+						for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+							batchSums[edgeTarget[e]][s] += (activation[s] * edgeWeight[e]);
+						}
+					}
+				}
+			}
+		}
+
+		if (numModes == 1 && CommonConstants.disabledMode < 0 && !CommonConstants.softmaxModeSelection && !CommonConstants.weightedAverageModeAggregation) {
+			// Single module always wins
+			for (int o = 0; o < neuronsPerModule; o++) {
+				System.arraycopy(batchActivations[outputStart + o], 0, outputColumns[o], 0, count);
+			}
+			chosenModule = 0;
+			moduleUsage[0] += count;
+		} else {
+			double[] preferences = new double[numModes];
+			for (int s = 0; s < count; s++) {
+				Arrays.fill(preferences, 0.0);
+				if (numModes == 1) {
+					preferences[0] = 1.0;
+				} else if (standardMultitask) {
+					preferences[presetMode] = 1.0;
+				} else {
+					for (int m = 0; m < numModes; m++) {
+						preferences[m] = batchActivations[outputStart + (m * (neuronsPerModule + 1)) + neuronsPerModule][s];
+					}
+				}
+				// No fatigue to subtract, since each sample starts flushed
+				if (CommonConstants.disabledMode >= 0) {
+					preferences[CommonConstants.disabledMode] = -2;
+				}
+				chosenModule = CommonConstants.softmaxModeSelection
+						? StatisticsUtilities.softmax(preferences, CommonConstants.softmaxTemperature)
+						: StatisticsUtilities.argmax(preferences);
+				this.moduleUsage[chosenModule]++;
+				if (CommonConstants.weightedAverageModeAggregation) {
+					for (int o = 0; o < neuronsPerModule; o++) {
+						double output = 0;
+						for (int j = 0; j < numModes; j++) {
+							int modeStart = outputStart + (j * (neuronsPerModule + 1));
+							output += preferences[j] * batchActivations[modeStart + o][s];
+						}
+						outputColumns[o][s] = output / numModes;
+					}
+				} else {
+					int selectedModeStart = outputStart + (chosenModule * (neuronsPerModule + (standardMultitask ? 0 : 1)));
+					for (int o = 0; o < neuronsPerModule; o++) {
+						outputColumns[o][s] = batchActivations[selectedModeStart + o][s];
+					}
+				}
+			}
+		}
+		flush();
+	}
+
+	@Override
+	public double[] moduleOutput(int mode) {
+		int selectedModeStart = outputStart + (mode * (neuronsPerModule + (standardMultitask ? 0 : 1)));
+		return Arrays.copyOfRange(activations, selectedModeStart, selectedModeStart + neuronsPerModule);
+	}
+
+	@Override
+	public void flush() {
+		System.arraycopy(biases, 0, sums, 0, biases.length);
+		Arrays.fill(activations, 0.0);
+		this.preferenceFatigue = new double[numModes];
+	}
+
+	/**
+	 * For quick testing: evolve some random CPPNs and make sure the compiled
+	 * network produces exactly the same outputs as the TWEANN, both one
+	 * sample at a time and in batches.
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		Parameters.initializeParameterCollections(new String[] {"io:false","netio:false","allowMultipleFunctions:true","recurrency:true",
+				"includeSigmoidFunction:true","includeGaussFunction:true","includeSineFunction:true","includeAbsValFunction:true",
+				"includeHalfLinearPiecewiseFunction:true","includeCosineFunction:true","includeSiLFunction:true"});
+		MMNEAT.loadClasses();
+		RandomNumbers.reset(0);
+		final int samples = 200;
+		for (int trial = 0; trial < 50; trial++) {
+			TWEANNGenotype g = new TWEANNGenotype(4, 3, 0);
+			EvolutionaryHistory.initArchetype(0, null, (TWEANNGenotype) g.copy());
+			for (int i = 0; i < 40; i++) {
+				g.mutate();
+			}
+			TWEANN reference = g.getPhenotype();
+			CompiledTWEANN compiled = new CompiledTWEANN(g);
+			CompiledTWEANN fromPhenotype = compile(reference);
+			double[][] inputColumns = new double[4][samples];
+			double[][] outputColumns = new double[3][samples];
+			double[][] expectedColumns = new double[3][samples];
+			for (int s = 0; s < samples; s++) {
+				double[] inputs = new double[] {RandomNumbers.fullSmallRand(), RandomNumbers.fullSmallRand(), RandomNumbers.fullSmallRand(), 1.0};
+				for (int i = 0; i < inputs.length; i++) {
+					inputColumns[i][s] = inputs[i];
+				}
+				if (s % 50 == 0) { // Also test without flushing so recurrent state matters
+					reference.flush();
+					compiled.flush();
+					fromPhenotype.flush();
+				}
+				double[] expected = reference.process(inputs);
+				double[] actual = compiled.process(inputs);
+				double[] actual2 = fromPhenotype.process(inputs);
+				if (!Arrays.equals(expected, actual) || !Arrays.equals(expected, actual2)) {
+					System.out.println("Mismatch in trial " + trial + ": " + Arrays.toString(expected) + " vs " + Arrays.toString(actual) + " vs " + Arrays.toString(actual2));
+					System.exit(1);
+				}
+			}
+			// Batch results should match flushing before every sample
+			for (int s = 0; s < samples; s++) {
+				reference.flush();
+				double[] expected = reference.process(new double[] {inputColumns[0][s], inputColumns[1][s], inputColumns[2][s], inputColumns[3][s]});
+				for (int o = 0; o < expected.length; o++) {
+					expectedColumns[o][s] = expected[o];
+				}
+			}
+			compiled.processBatch(inputColumns, outputColumns);
+			for (int o = 0; o < outputColumns.length; o++) {
+				if (!Arrays.equals(expectedColumns[o], outputColumns[o])) {
+					System.out.println("Batch mismatch in trial " + trial + " output " + o + ": " + Arrays.toString(expectedColumns[o]) + " vs " + Arrays.toString(outputColumns[o]));
+					System.exit(1);
+				}
+			}
+		}
+		System.out.println("Compiled networks match TWEANN outputs");
+	}
+}
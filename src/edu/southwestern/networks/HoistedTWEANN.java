@@ -0,0 +1,448 @@
+package edu.southwestern.networks;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A compiled CPPN evaluated over the same fixed set of samples many times,
+ * where only one input (the variable input, such as time in an animation)
+ * changes between evaluations, and it has the same value for every sample.
+ * Nodes that cannot be reached from the variable input have the same
+ * activation in every evaluation, so they are computed once per sample and
+ * stored in planes. Each evaluation after that only activates the nodes that
+ * depend on the variable input.
+ *
+ * Results are bit-for-bit identical to CompiledTWEANN.processBatch. The sum
+ * of a node that depends on the variable input is accumulated in the same
+ * order as always: the contributions of invariant nodes that arrive before
+ * the first contribution of a dependent node are added up in advance and
+ * stored as a prefix plane, and the remaining contributions of invariant
+ * nodes are replayed from their stored activations at the point where they
+ * would normally arrive.
+ *
+ * Only feed-forward networks with a single module can be hoisted. The
+ * planes are never modified after construction, so copies made with the
+ * copy constructor can evaluate different samples in different threads.
+ * The input column of the variable input is never read while computing
+ * the planes.
+ *
+ * @author Jacob Schrum
+ */
+public class HoistedTWEANN {
+
+	// Hoisted networks are evicted (least recently used first) once their planes exceed this size
+	public static final long MAX_CACHED_BYTES = 128L * 1024 * 1024;
+	// Samples per task when computing the planes in parallel
+	private static final int BUILD_CHUNK = 4096;
+
+	private static final LinkedHashMap<String, HoistedTWEANN> cache = new LinkedHashMap<String, HoistedTWEANN>(16, 0.75f, true);
+	private static long cachedBytes = 0;
+
+	private final CompiledTWEANN network;
+	private final int variableInput;
+	public final int numSamples;
+	// Whether the activation of each node can change with the variable input
+	private final boolean[] dependent;
+	// Links followed in every evaluation, in CSR layout like CompiledTWEANN:
+	// all links of dependent nodes, and the links of invariant nodes that
+	// arrive at a dependent node after its first dependent contribution
+	private final int[] replayStart;
+	private final int[] replayTarget;
+	private final double[] replayWeight;
+	// Nodes with work to do in every evaluation, in activation order
+	private final int[] schedule;
+	// Prefix sum of each dependent node (null if just the bias), and activation
+	// of each invariant node that is replayed or is an output (null otherwise)
+	private final double[][] planes;
+
+	// Scratch space for evaluate: one column of samples per dependent node
+	private double[][] scratchSums = null;
+	private double[][] scratchActivations = null;
+
+	// Index of the first dependent node to send to each node (only needed until the planes are computed)
+	private int[] firstDependentSource;
+
+	/**
+	 * Analyze the network and allocate the planes, without computing them yet.
+	 *
+	 * @param network feed-forward, single module network
+	 * @param variableInput index of the input that changes between evaluations
+	 * @param numSamples number of samples
+	 */
+	private HoistedTWEANN(CompiledTWEANN network, int variableInput, int numSamples) {
+		this.network = network;
+		this.variableInput = variableInput;
+		this.numSamples = numSamples;
+		final int n = network.numNodes();
+		int[] edgeStart = network.edgeStart;
+		int[] edgeTarget = network.edgeTarget;
+
+		// Links only go forward, so one pass in node order finds every node reachable from the variable input
+		dependent = new boolean[n];
+		dependent[variableInput] = true;
+		// The variable input arrives before any link transmits
+		firstDependentSource = new int[n];
+		Arrays.fill(firstDependentSource, n);
+		firstDependentSource[variableInput] = -1;
+		for (int i = 0; i < n; i++) {
+			if (dependent[i]) {
+				for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+					int target = edgeTarget[e];
+					dependent[target] = true;
+					firstDependentSource[target] = Math.min(firstDependentSource[target], i);
+				}
+			}
+		}
+
+		replayStart = new int[n + 1];
+		int numReplayed = 0;
+		for (int i = 0; i < n; i++) {
+			replayStart[i] = numReplayed;
+			for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+				if (replayed(i, edgeTarget[e])) {
+					numReplayed++;
+				}
+			}
+		}
+		replayStart[n] = numReplayed;
+		replayTarget = new int[numReplayed];
+		replayWeight = new double[numReplayed];
+		int pos = 0;
+		int scheduled = 0;
+		for (int i = 0; i < n; i++) {
+			for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+				if (replayed(i, edgeTarget[e])) {
+					replayTarget[pos] = edgeTarget[e];
+					replayWeight[pos] = network.edgeWeight[e];
+					pos++;
+				}
+			}
+			if (dependent[i] || replayStart[i + 1] > replayStart[i]) {
+				scheduled++;
+			}
+		}
+		schedule = new int[scheduled];
+		scheduled = 0;
+		for (int i = 0; i < n; i++) {
+			if (dependent[i] || replayStart[i + 1] > replayStart[i]) {
+				schedule[scheduled++] = i;
+			}
+		}
+
+		planes = new double[n][];
+		int numOutputs = network.effectiveNumOutputs();
+		for (int i = 0; i < n; i++) {
+			boolean output = i >= network.outputStart && i < network.outputStart + numOutputs;
+			if (dependent[i] ? hasPrefix(i) : (output || replayStart[i + 1] > replayStart[i])) {
+				planes[i] = new double[numSamples];
+			}
+		}
+	}
+
+	/**
+	 * Creates a copy that shares the analysis and planes, but has its own
+	 * scratch space. Useful for giving each thread its own evaluator.
+	 *
+	 * @param other Hoisted network to copy
+	 */
+	public HoistedTWEANN(HoistedTWEANN other) {
+		this.network = other.network;
+		this.variableInput = other.variableInput;
+		this.numSamples = other.numSamples;
+		this.dependent = other.dependent;
+		this.replayStart = other.replayStart;
+		this.replayTarget = other.replayTarget;
+		this.replayWeight = other.replayWeight;
+		this.schedule = other.schedule;
+		this.planes = other.planes;
+	}
+
+	/**
+	 * Whether a link is followed in every evaluation instead of being
+	 * included in the planes
+	 */
+	private boolean replayed(int source, int target) {
+		return dependent[source] || (dependent[target] && source > firstDependentSource[target]);
+	}
+
+	/**
+	 * Whether any invariant node sends to a dependent node before its first dependent source
+	 */
+	private boolean hasPrefix(int node) {
+		if (node < network.numInputs() && node != variableInput) {
+			return true; // Input value is part of the prefix
+		}
+		for (int i = 0; i < firstDependentSource[node]; i++) {
+			for (int e = network.edgeStart[i]; e < network.edgeStart[i + 1]; e++) {
+				if (network.edgeTarget[e] == node) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Compute the planes for a range of samples. Invariant nodes are
+	 * activated exactly as processBatch would, and each dependent node
+	 * collects the contributions that precede its first dependent one.
+	 *
+	 * @param inputs source of inputs
+	 * @param firstSample first sample of range
+	 * @param count number of samples in range
+	 */
+	private void build(InputColumnSource inputs, int firstSample, int count) {
+		final int n = dependent.length;
+		double[][] inputColumns = new double[network.numInputs()][count];
+		inputs.fillInputColumns(firstSample, count, inputColumns);
+		double[][] sums = new double[n][count];
+		double[] activation = new double[count];
+		for (int i = 0; i < n; i++) {
+			Arrays.fill(sums[i], network.biases[i]);
+		}
+		for (int i = 0; i < inputColumns.length; i++) {
+			if (i != variableInput) {
+				double[] sum = sums[i];
+				double[] input = inputColumns[i];
+				for (int s = 0; s < count; s++) {
+					sum[s] += input[s];
+				}
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			if (dependent[i]) {
+				if (planes[i] != null) {
+					// Nothing but invariant contributions can have arrived yet
+					System.arraycopy(sums[i], 0, planes[i], firstSample, count);
+				}
+				continue;
+			}
+			if (network.usesApproximateActivations()) {
+				ActivationFunctions.approximateActivation(network.ftypes[i], sums[i], activation, count);
+			} else {
+				ActivationFunctions.activation(network.ftypes[i], sums[i], activation, count);
+			}
+			if (planes[i] != null) {
+				System.arraycopy(activation, 0, planes[i], firstSample, count);
+			}
+			for (int e = network.edgeStart[i]; e < network.edgeStart[i + 1]; e++) {
+				int target = network.edgeTarget[e];
+				if (!replayed(i, target)) {
+					double[] sum = sums[target];
+					double weight = network.edgeWeight[e];
+					for (int s = 0; s < count; s++) {
+						sum[s] += (activation[s] * weight);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evaluate a contiguous range of samples for one value of the variable
+	 * input. Same outputs as filling input columns for those samples and
+	 * calling CompiledTWEANN.processBatch.
+	 *
+	 * @param firstSample index of first sample
+	 * @param count number of samples
+	 * @param variableValue value of the variable input, after any input multiplier
+	 * @param outputColumns effectiveNumOutputs() columns to fill with outputs
+	 */
+	public void evaluate(int firstSample, int count, double variableValue, double[][] outputColumns) {
+		final int n = dependent.length;
+		if (scratchSums == null || scratchSums[variableInput].length < count) {
+			scratchSums = new double[n][];
+			scratchActivations = new double[n][];
+			for (int i = 0; i < n; i++) {
+				if (dependent[i]) {
+					scratchSums[i] = new double[count];
+					scratchActivations[i] = new double[count];
+				}
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			if (dependent[i]) {
+				if (planes[i] == null) {
+					Arrays.fill(scratchSums[i], 0, count, network.biases[i]);
+				} else {
+					System.arraycopy(planes[i], firstSample, scratchSums[i], 0, count);
+				}
+			}
+		}
+		double[] variableSum = scratchSums[variableInput];
+		for (int s = 0; s < count; s++) {
+			variableSum[s] += variableValue;
+		}
+		for (int i : schedule) {
+			double[] activation;
+			int offset;
+			if (dependent[i]) {
+				activation = scratchActivations[i];
+				offset = 0;
+				if (network.usesApproximateActivations()) {
+					ActivationFunctions.approximateActivation(network.ftypes[i], scratchSums[i], activation, count);
+				} else {
+					ActivationFunctions.activation(network.ftypes[i], scratchSums[i], activation, count);
+				}
+			} else {
+				activation = planes[i];
+				offset = firstSample;
+			}
+			for (int e = replayStart[i]; e < replayStart[i + 1]; e++) {
+				double[] target = scratchSums[replayTarget[e]];
+				double weight = replayWeight[e];
+				for (int s = 0; s < count; s++) {
+					target[s] += (activation[offset + s] * weight);
+				}
+			}
+		}
+		for (int o = 0; o < outputColumns.length; o++) {
+			int node = network.outputStart + o;
+			if (dependent[node]) {
+				System.arraycopy(scratchActivations[node], 0, outputColumns[o], 0, count);
+			} else {
+				System.arraycopy(planes[node], firstSample, outputColumns[o], 0, count);
+			}
+		}
+	}
+
+	/**
+	 * @return number of nodes that are activated in every evaluation
+	 */
+	public int numDependentNodes() {
+		int count = 0;
+		for (boolean d : dependent) {
+			if (d) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return memory used by the planes, in bytes
+	 */
+	public long sizeInBytes() {
+		return (long) countPlanes(planes) * numSamples * 8;
+	}
+
+	private static int countPlanes(double[][] planes) {
+		int count = 0;
+		for (double[] plane : planes) {
+			if (plane != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Whether a network can be hoisted: it must be feed-forward, so that
+	 * every link transmits once in node order, and it must have a single
+	 * module that always wins, so that the outputs are just the activations
+	 * of the output nodes.
+	 *
+	 * @param network compiled network
+	 * @return true if the network can be hoisted
+	 */
+	public static boolean canHoist(CompiledTWEANN network) {
+		return network.isSimpleFeedForward();
+	}
+
+	/**
+	 * Shared hoisted version of a network for a set of samples, computing
+	 * the planes if they are not cached. Networks are matched by their
+	 * structure and weights rather than their identity, since every frame
+	 * of an animation may be rendered with a different copy of the same
+	 * phenotype.
+	 *
+	 * @param network compiled network
+	 * @param variableInput index of the input that changes between evaluations
+	 * @param samplesKey unique description of the samples and their inputs (dimensions, input multipliers)
+	 * @param numSamples number of samples
+	 * @param inputs source of the inputs of each sample
+	 * @return hoisted network to copy for each thread, or null if the network cannot be
+	 *         hoisted, if nothing would be saved, or if the planes would be too big to cache
+	 */
+	public static HoistedTWEANN get(CompiledTWEANN network, int variableInput, String samplesKey, int numSamples, InputColumnSource inputs) {
+		if (variableInput >= network.numInputs() || !canHoist(network)) {
+			return null;
+		}
+		String key = samplesKey + "/" + variableInput + "/" + network.structureHash();
+		synchronized (cache) {
+			HoistedTWEANN result = cache.get(key);
+			if (result != null && result.network.sameStructure(network)) {
+				return result;
+			}
+		}
+		HoistedTWEANN result = new HoistedTWEANN(network, variableInput, numSamples);
+		if (result.numDependentNodes() == result.dependent.length - network.numInputs() + 1) {
+			return null; // Every node but the fixed inputs needs to be activated anyway
+		}
+		long bytes = result.sizeInBytes();
+		if (bytes > MAX_CACHED_BYTES) {
+			return null;
+		}
+		ForkJoinPool.commonPool().invoke(new BuildTask(result, inputs, 0, numSamples));
+		result.firstDependentSource = null;
+		synchronized (cache) {
+			HoistedTWEANN previous = cache.put(key, result);
+			if (previous != null) {
+				cachedBytes -= previous.sizeInBytes();
+			}
+			cachedBytes += bytes;
+			Iterator<Map.Entry<String, HoistedTWEANN>> itr = cache.entrySet().iterator();
+			while (cachedBytes > MAX_CACHED_BYTES && itr.hasNext()) {
+				cachedBytes -= itr.next().getValue().sizeInBytes();
+				itr.remove();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Remove all cached planes
+	 */
+	public static void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+			cachedBytes = 0;
+		}
+	}
+
+	/**
+	 * Computes the planes of a range of samples, splitting large ranges in
+	 * half so that the parts are computed in parallel. Different tasks write
+	 * to different parts of the planes.
+	 */
+	private static class BuildTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final HoistedTWEANN hoisted;
+		private final InputColumnSource inputs;
+		private final int firstSample;
+		private final int count;
+
+		BuildTask(HoistedTWEANN hoisted, InputColumnSource inputs, int firstSample, int count) {
+			this.hoisted = hoisted;
+			this.inputs = inputs;
+			this.firstSample = firstSample;
+			this.count = count;
+		}
+
+		@Override
+		protected void compute() {
+			if (count > BUILD_CHUNK) {
+				int half = count / 2;
+				invokeAll(new BuildTask(hoisted, inputs, firstSample, half),
+						  new BuildTask(hoisted, inputs, firstSample + half, count - half));
+				return;
+			}
+			hoisted.build(inputs, firstSample, count);
+		}
+	}
+}
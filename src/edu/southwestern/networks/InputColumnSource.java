@@ -0,0 +1,18 @@
+package edu.southwestern.networks;
+
+/**
+ * Fills CPPN input columns (as used by CompiledTWEANN.processBatch) for a
+ * contiguous range of samples out of a fixed set, such as the pixels of an
+ * image. Lets evaluators that keep per-sample results between calls ask
+ * for the inputs of just the samples they need.
+ *
+ * @author Jacob Schrum
+ */
+public interface InputColumnSource {
+	/**
+	 * @param firstSample index of first sample
+	 * @param count number of samples
+	 * @param inputColumns one column per network input, each with room for count samples
+	 */
+	void fillInputColumns(int firstSample, int count, double[][] inputColumns);
+}
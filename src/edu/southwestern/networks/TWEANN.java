@@ -8,6 +8,7 @@ import edu.southwestern.MMNEAT.MMNEAT;
 import edu.southwestern.parameters.CommonConstants;
 import edu.southwestern.parameters.Parameters;
 import edu.southwestern.util.CombinatoricUtilities;
+import edu.southwestern.util.datastructures.LongIntHashMap;
 import edu.southwestern.util.graphics.DrawingPanel;
 import edu.southwestern.util.graphics.GraphicsUtil;
 import edu.southwestern.util.graphics.Plot;
@@ -486,10 +487,13 @@ public class TWEANN implements Network {
 		int countIn = 0;
 		int countOut = 0;
 
+		// Index of each node by innovation number, so links are resolved in constant time
+		LongIntHashMap nodeIndex = new LongIntHashMap(g.nodes.size());
 		int section = Node.NTYPE_INPUT;
 		for (int i = 0; i < g.nodes.size(); i++) {
 			TWEANNGenotype.NodeGene ng = g.nodes.get(i);
 			Node n = new Node(ng.ftype, ng.ntype, ng.innovation, ng.isFrozen(), ng.getBias());
+			nodeIndex.put(ng.innovation, i);
 			switch (ng.ntype) {
 			case Node.NTYPE_INPUT:
 				assert(section == Node.NTYPE_INPUT) : "Genome encoded false network: inputs: \n" + g;
@@ -543,10 +547,12 @@ public class TWEANN implements Network {
 
 		for (LinkGene lg : g.links) {
 			if (lg.isActive()) {
-				Node source = getNode(lg.sourceInnovation);
-				Node target = getNode(lg.targetInnovation);
-				assert(target != null) : "No target: " + lg + "\nNet:" + g.getId();
-				assert(source != null) : "How could the source be null?";
+				int sourceIndex = nodeIndex.get(lg.sourceInnovation);
+				int targetIndex = nodeIndex.get(lg.targetInnovation);
+				assert(targetIndex != -1) : "No target: " + lg + "\nNet:" + g.getId();
+				assert(sourceIndex != -1) : "How could the source be null?";
+				Node source = nodes.get(sourceIndex);
+				Node target = nodes.get(targetIndex);
 				source.connect(target, lg.weight, lg.innovation, lg.isRecurrent(), lg.isFrozen());
 			}
 		}
@@ -762,18 +768,6 @@ public class TWEANN implements Network {
 		}
 	}
 
-	private Node getNode(long targetInnovation) {
-		Node targetNode = null;
-		for (Node n : nodes) {
-			if (n.innovation == targetInnovation) {
-				targetNode = n;
-				break;
-			}
-		}
-		assert targetNode != null : "No node with innovation " + targetInnovation + " existed";
-		return targetNode;
-	}
-
 	@Override
 	public String toString() {
 		String result = "";
@@ -7,6 +7,20 @@ public interface ActivationFunction {
 	 * @return Result
 	 */
 	public double f(double x);
+
+	/**
+	 * Apply the function to the first n values of an array, so that
+	 * whole columns of neuron sums can be transformed at once.
+	 * Results are the same as calling f on each value.
+	 * @param in Function inputs
+	 * @param out Array to store results in (may be the same as in)
+	 * @param n Number of values to transform
+	 */
+	public default void f(double[] in, double[] out, int n) {
+		for(int i = 0; i < n; i++) {
+			out[i] = f(in[i]);
+		}
+	}
 	
 	/**
 	 * Display name for this function
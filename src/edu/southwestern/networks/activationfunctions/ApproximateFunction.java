@@ -0,0 +1,126 @@
+package edu.southwestern.networks.activationfunctions;
+
+import edu.southwestern.networks.ActivationFunctions;
+import edu.southwestern.util.ApproximateMath;
+
+/**
+ * Faster version of an activation function that relies on exp, sin, cos
+ * or tanh, computed with ApproximateMath instead of java.lang.Math.
+ * Meant for rendering previews, where the small error cannot be seen.
+ * The maximum absolute error for each function is given by maxError,
+ * and is checked by running main.
+ *
+ * @author Jacob Schrum
+ */
+public class ApproximateFunction implements ActivationFunction {
+
+	private static final double GAUSSIAN_SCALE = 1 / Math.sqrt(2 * Math.PI);
+	private static final double STRETCHED_TANH_SCALE = 2.0 / 3;
+
+	private final int ftype;
+	private final ActivationFunction exact;
+
+	/**
+	 * @param ftype type of function to approximate (must satisfy hasApproximation)
+	 * @param exact exact version of the same function
+	 */
+	public ApproximateFunction(int ftype, ActivationFunction exact) {
+		assert hasApproximation(ftype) : "No approximation for " + exact.name();
+		this.ftype = ftype;
+		this.exact = exact;
+	}
+
+	/**
+	 * Whether there is a faster approximate version of a function
+	 * @param ftype type of function
+	 * @return true if ApproximateFunction supports it
+	 */
+	public static boolean hasApproximation(int ftype) {
+		return maxError(ftype) > 0;
+	}
+
+	/**
+	 * Maximum absolute difference between the approximation and the exact function
+	 * @param ftype type of function
+	 * @return error bound, or 0 if there is no approximation
+	 */
+	public static double maxError(int ftype) {
+		switch (ftype) {
+		case ActivationFunctions.FTYPE_SIGMOID:
+		case ActivationFunctions.FTYPE_GAUSS:
+		case ActivationFunctions.FTYPE_TANH:
+		case ActivationFunctions.FTYPE_STRETCHED_TANH:
+			return 1e-13;
+		case ActivationFunctions.FTYPE_FULLSIGMOID:
+		case ActivationFunctions.FTYPE_FULLGAUSS:
+			return 2e-13;
+		case ActivationFunctions.FTYPE_SOFTPLUS:
+		case ActivationFunctions.FTYPE_SIL:
+			return 1e-12;
+		case ActivationFunctions.FTYPE_SINE:
+		case ActivationFunctions.FTYPE_COS:
+			return ApproximateMath.SIN_MAX_ERROR;
+		default:
+			return 0;
+		}
+	}
+
+	@Override
+	public double f(double x) {
+		switch (ftype) {
+		case ActivationFunctions.FTYPE_SIGMOID:
+			return 1.0 / (1.0 + ApproximateMath.exp(-x));
+		case ActivationFunctions.FTYPE_FULLSIGMOID:
+			return (2 * (1.0 / (1.0 + ApproximateMath.exp(-x)))) - 1;
+		case ActivationFunctions.FTYPE_GAUSS:
+			return GAUSSIAN_SCALE * ApproximateMath.exp(-0.5 * x * x);
+		case ActivationFunctions.FTYPE_FULLGAUSS:
+			return ApproximateMath.exp(-x * x) * 2 - 1;
+		case ActivationFunctions.FTYPE_TANH:
+			return ApproximateMath.tanh(x);
+		case ActivationFunctions.FTYPE_STRETCHED_TANH:
+			return 1.7159 * ApproximateMath.tanh(STRETCHED_TANH_SCALE * x);
+		case ActivationFunctions.FTYPE_SOFTPLUS:
+			return Math.log(1 + ApproximateMath.exp(x));
+		case ActivationFunctions.FTYPE_SIL:
+			return x * (1.0 / (1.0 + ApproximateMath.exp(-x)));
+		case ActivationFunctions.FTYPE_SINE:
+			return ApproximateMath.sin(x);
+		case ActivationFunctions.FTYPE_COS:
+			return ApproximateMath.cos(x);
+		default:
+			return exact.f(x);
+		}
+	}
+
+	@Override
+	public String name() {
+		return exact.name();
+	}
+
+	/**
+	 * Check every approximation against the exact function on a dense
+	 * sample of inputs, failing if any error bound is exceeded.
+	 *
+	 * @param args not used
+	 */
+	public static void main(String[] args) {
+		final int samples = 2000001;
+		boolean failed = false;
+		for (int ftype : ActivationFunctions.allPossibleActivationFunctions()) {
+			if (!hasApproximation(ftype)) {
+				continue;
+			}
+			double error = 0;
+			for (int i = 0; i < samples; i++) {
+				double x = -100 + 200.0 * i / (samples - 1);
+				error = Math.max(error, Math.abs(ActivationFunctions.approximateActivation(ftype, x) - ActivationFunctions.activation(ftype, x)));
+			}
+			System.out.println(ActivationFunctions.activationName(ftype) + ": max error " + error + " (bound " + maxError(ftype) + ")");
+			failed = failed || error > maxError(ftype);
+		}
+		if (failed) {
+			throw new IllegalStateException("Approximation exceeds its error bound");
+		}
+	}
+}
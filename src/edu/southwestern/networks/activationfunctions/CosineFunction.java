@@ -14,6 +14,13 @@ public class CosineFunction implements ActivationFunction {
 		return Math.cos(x);
 	}
 
+	@Override
+	public void f(double[] in, double[] out, int n) {
+		for(int i = 0; i < n; i++) {
+			out[i] = Math.cos(in[i]);
+		}
+	}
+
 	@Override
 	public String name() {
 		return "cos"; //"Cosine";
@@ -22,6 +22,13 @@ public class FullLinearPiecewiseFunction implements ActivationFunction {
 		return Math.max(-1, Math.min(1, x));
 	}
 
+	@Override
+	public void f(double[] in, double[] out, int n) {
+		for(int i = 0; i < n; i++) {
+			out[i] = Math.max(-1, Math.min(1, in[i]));
+		}
+	}
+
 	@Override
 	public String name() {
 		return "piecewise-full"; //"Full Piecewise";
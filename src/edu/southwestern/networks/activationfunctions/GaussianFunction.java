@@ -16,6 +16,13 @@ public class GaussianFunction implements ActivationFunction {
 		return ActivationFunctions.gaussian(x, 1, 0);
 	}
 
+	@Override
+	public void f(double[] in, double[] out, int n) {
+		for(int i = 0; i < n; i++) {
+			out[i] = ActivationFunctions.gaussian(in[i], 1, 0);
+		}
+	}
+
 	@Override
 	public String name() {
 		return "gauss";
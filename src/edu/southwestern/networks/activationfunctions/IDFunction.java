@@ -11,6 +11,13 @@ public class IDFunction implements ActivationFunction {
 		return x;
 	}
 
+	@Override
+	public void f(double[] in, double[] out, int n) {
+		if(in != out) {
+			System.arraycopy(in, 0, out, 0, n);
+		}
+	}
+
 	@Override
 	public String name() {
 		return "id";
@@ -12,6 +12,13 @@ public class SineFunction implements ActivationFunction {
 		return Math.sin(x);
 	}
 
+	@Override
+	public void f(double[] in, double[] out, int n) {
+		for(int i = 0; i < n; i++) {
+			out[i] = Math.sin(in[i]);
+		}
+	}
+
 	@Override
 	public String name() {
 		return "sin";
@@ -13,6 +13,13 @@ public class TanHFunction implements ActivationFunction {
 		return Math.tanh(x);
 	}
 
+	@Override
+	public void f(double[] in, double[] out, int n) {
+		for(int i = 0; i < n; i++) {
+			out[i] = Math.tanh(in[i]);
+		}
+	}
+
 	@Override
 	public String name() {
 		return "tanh";
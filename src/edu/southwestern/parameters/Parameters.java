@@ -248,6 +248,8 @@ public class Parameters {
 		integerOptions.add("defaultPause", 50, "Default pause length between each iteraton of animation in AnimationBreeder");
 		integerOptions.add("maxPause", 500, "Maximum pause length between each iteraton of animation in AnimationBreeder");
 		integerOptions.add("defaultFramePause", 50, "Default pause length between frames in AnimationBreeder");
+		integerOptions.add("animationFrameCacheMB", 256, "Megabytes of rendered animation frames kept by AnimationBreeder and 3DObjectBreeder (at most a quarter of the heap)");
+		integerOptions.add("activationPlaneCacheMB", 128, "Megabytes of per-node CPPN activations kept so that offspring images only recompute nodes changed by mutation (at most a quarter of the heap, 0 disables)");
 		integerOptions.add("steadyStateIndividualsPerGeneration", 400, "How many individuals count as a log generation for SteadyStateEAs");
 		integerOptions.add("numShapeInnovationSamples", 3, "Number of angles to take 2D image of 3D shape from for shape innovation task");
 		integerOptions.add("receptiveFieldSize", 3, "Size of input windows for convolutional structures");
@@ -558,6 +560,11 @@ public class Parameters {
 		booleanOptions.add("boardGameOthelloFitness", false, "Enables the OthelloPiece BoardGame Fitness Function to be used as a Selection Function");
 		booleanOptions.add("alwaysAnimate", true, "Loads and plays all animations in AnimationBreeder and 3DObjectBreeder at once");
 		booleanOptions.add("saveInteractiveSelections", false, "Automatically saves all currently selected buttons when user moves to next generation");
+		booleanOptions.add("progressiveButtonRendering", true, "Interactive evolution buttons show coarse previews that are refined until the full image is done");
+		booleanOptions.add("fastMathPreviews", false, "Interactive evolution buttons are rendered with faster approximate activation functions (saved images stay exact)");
+		booleanOptions.add("asyncLogging", true, "Log files are written by a background thread instead of the evolution thread");
+		booleanOptions.add("genotypeArchive", true, "Append every TWEANN genotype of a run to a single archive file, so ancestors can be loaded by id");
+		booleanOptions.add("binaryGenotypes", false, "Save TWEANN genotypes and archetypes in a compact binary format instead of XML (loading accepts either, but the files keep their .xml names and only this code can read them)");
 		//booleanOptions.add("gvgaiSave", false, "If true, save the actions from the GVGAI game that was just played.");
 		booleanOptions.add("gvgaiVictory", true, "Use the GVGAI Victory as a Selection Function");
 		booleanOptions.add("gvgaiScore", false, "Use the GVGAI Score as a Selection Function");
@@ -0,0 +1,363 @@
+package edu.southwestern.tasks.interactive;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.southwestern.data.GenotypeArchive;
+import edu.southwestern.data.GenotypeFiles;
+import edu.southwestern.evolution.genotypes.TWEANNGenotype;
+import edu.southwestern.networks.TWEANN;
+import edu.southwestern.parameters.Parameters;
+import edu.southwestern.tasks.interactive.breedesizer.BreedesizerTask;
+import edu.southwestern.tasks.interactive.objectbreeder.ThreeDimensionalObjectBreederTask;
+import edu.southwestern.util.datastructures.ArrayUtil;
+import edu.southwestern.util.datastructures.Triangle;
+import edu.southwestern.util.file.XMLFilter;
+import edu.southwestern.util.graphics.AnimationUtil;
+import edu.southwestern.util.graphics.GraphicsUtil;
+import edu.southwestern.util.graphics.ThreeDimensionalUtil;
+import edu.southwestern.util.sound.SoundFromCPPNUtil;
+
+/**
+ * Renders saved CPPN genotypes to files without any user interface, so
+ * that galleries can be rendered again at new resolutions on a machine
+ * with no display. Genotypes are rendered in parallel, one genotype per
+ * thread, and a line is printed as each file is saved.
+ *
+ * Usage:
+ * BatchRenderer source output spec ... [parameter:value ...]
+ *
+ * The source is either a directory of saved genotypes (.xml, in XML or
+ * binary format), or a genotype archive file. Each spec is one of:
+ *
+ * - image:WxH[:format]   still image, as in Picbreeder (default format bmp)
+ * - animation:WxH:frames animated GIF, as in AnimationBreeder
+ * - rotation:WxH:frames  animated GIF of a rotating 3D object, as in 3DObjectBreeder
+ * - wav:length           sound clip, as in Breedesizer
+ *
+ * Every genotype is rendered with every spec, so each spec must suit the
+ * kind of CPPN in the source. Any other argument is passed on as a
+ * parameter, such as threads:16 or defaultFramePause:40. The number of
+ * threads defaults to the number of processors.
+ *
+ * @author Jacob Schrum
+ */
+public class BatchRenderer {
+
+	// Same background that 3DObjectBreeder uses when saving animations
+	public static final Color ROTATION_BACKGROUND = new Color(223,233,244);
+
+	public static void main(String[] args) throws InterruptedException {
+		System.setProperty("java.awt.headless", "true");
+		if (args.length < 3) {
+			System.out.println("Usage: BatchRenderer source output spec ... [parameter:value ...]");
+			System.out.println("Specs: image:WxH[:format] animation:WxH:frames rotation:WxH:frames wav:length");
+			System.exit(1);
+		}
+		ArrayList<RenderSpec> specs = new ArrayList<RenderSpec>();
+		ArrayList<String> parameterArgs = new ArrayList<String>(Arrays.asList("io:false", "netio:false", "threads:" + Runtime.getRuntime().availableProcessors()));
+		for (int i = 2; i < args.length; i++) {
+			RenderSpec spec = RenderSpec.parse(args[i]);
+			if (spec != null) {
+				specs.add(spec);
+			} else {
+				parameterArgs.add(args[i]);
+			}
+		}
+		if (specs.isEmpty()) {
+			System.out.println("No render specs given");
+			System.exit(1);
+		}
+		Parameters.initializeParameterCollections(parameterArgs.toArray(new String[parameterArgs.size()]));
+
+		File output = new File(args[1]);
+		if (!output.isDirectory() && !output.mkdirs()) {
+			System.out.println("Could not create output directory " + output);
+			System.exit(1);
+		}
+		int failures = render(new File(args[0]), output, specs, Parameters.parameters.integerParameter("threads"));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Render every genotype in a source with every spec
+	 *
+	 * @param source directory of genotype files, or genotype archive
+	 * @param output directory to save rendered files in
+	 * @param specs what to render for each genotype
+	 * @param threads number of genotypes rendered at once
+	 * @return number of genotypes that could not be rendered
+	 * @throws InterruptedException if interrupted while waiting for rendering
+	 */
+	public static int render(File source, File output, List<RenderSpec> specs, int threads) throws InterruptedException {
+		final ArrayList<Source> sources = sources(source);
+		final int total = sources.size() * specs.size();
+		final AtomicInteger done = new AtomicInteger(0);
+		final AtomicInteger failures = new AtomicInteger(0);
+		System.out.println("Rendering " + sources.size() + " genotypes from " + source + " with " + threads + " threads");
+		long start = System.currentTimeMillis();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		for (final Source s : sources) {
+			pool.execute(() -> {
+				TWEANNGenotype g;
+				try {
+					g = s.load();
+				} catch (RuntimeException e) {
+					System.out.println("Could not load " + s.name + ": " + e);
+					failures.incrementAndGet();
+					done.addAndGet(specs.size());
+					return;
+				}
+				if (g == null) {
+					System.out.println("Skipping " + s.name + ": not a TWEANN genotype");
+					done.addAndGet(specs.size());
+					return;
+				}
+				boolean failed = false;
+				for (RenderSpec spec : specs) {
+					String filename = new File(output, s.name + "_" + spec.tag() + "." + spec.extension()).getPath();
+					try {
+						spec.render(g.getPhenotype(), filename);
+						System.out.println("[" + done.incrementAndGet() + "/" + total + "] " + filename);
+					} catch (IOException | RuntimeException e) {
+						System.out.println("[" + done.incrementAndGet() + "/" + total + "] Failed " + filename + ": " + e);
+						failed = true;
+					}
+				}
+				if (failed) {
+					failures.incrementAndGet();
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		System.out.println("Rendered " + sources.size() + " genotypes in " + (System.currentTimeMillis() - start) / 1000.0 + " seconds, " + failures.get() + " failed");
+		return failures.get();
+	}
+
+	/**
+	 * All genotypes in a directory or archive
+	 */
+	private static ArrayList<Source> sources(File source) {
+		ArrayList<Source> result = new ArrayList<Source>();
+		if (source.isDirectory()) {
+			String[] names = source.list(new XMLFilter());
+			Arrays.sort(names);
+			for (String name : names) {
+				final String path = new File(source, name).getPath();
+				result.add(new Source(name.substring(0, name.lastIndexOf('.'))) {
+					@Override
+					TWEANNGenotype load() {
+						Object loaded = GenotypeFiles.load(path);
+						return loaded instanceof TWEANNGenotype ? (TWEANNGenotype) loaded : null;
+					}
+				});
+			}
+		} else {
+			final GenotypeArchive archive;
+			try {
+				archive = new GenotypeArchive(source.getPath(), true);
+			} catch (IOException e) {
+				System.out.println("Could not open " + source + ": " + e.getMessage());
+				System.exit(1);
+				return result;
+			}
+			for (final long id : archive.ids()) {
+				result.add(new Source("genotype" + id) {
+					@Override
+					TWEANNGenotype load() {
+						return archive.get(id);
+					}
+				});
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * A genotype that can be loaded by a rendering thread
+	 */
+	private static abstract class Source {
+		final String name;
+
+		Source(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @return genotype, or null if the source is not a TWEANNGenotype
+		 */
+		abstract TWEANNGenotype load();
+	}
+
+	/**
+	 * One kind of file to render from each genotype
+	 */
+	public static abstract class RenderSpec {
+		protected final int width;
+		protected final int height;
+
+		RenderSpec(int width, int height) {
+			this.width = width;
+			this.height = height;
+		}
+
+		/**
+		 * Parse a spec from the command line
+		 *
+		 * @param arg command line argument
+		 * @return spec, or null if the argument is not a spec
+		 */
+		public static RenderSpec parse(String arg) {
+			String[] parts = arg.split(":");
+			switch (parts[0]) {
+			case "image":
+				int[] size = size(arg, parts, 2, 3);
+				return new ImageSpec(size[0], size[1], parts.length == 3 ? parts[2] : "bmp");
+			case "animation":
+				size = size(arg, parts, 3, 3);
+				return new AnimationSpec(size[0], size[1], Integer.parseInt(parts[2]));
+			case "rotation":
+				size = size(arg, parts, 3, 3);
+				return new RotationSpec(size[0], size[1], Integer.parseInt(parts[2]));
+			case "wav":
+				if (parts.length != 2) {
+					throw new IllegalArgumentException("Expected wav:length but got " + arg);
+				}
+				return new SoundSpec(Integer.parseInt(parts[1]));
+			default:
+				return null;
+			}
+		}
+
+		private static int[] size(String arg, String[] parts, int minParts, int maxParts) {
+			String[] dims = parts.length > 1 ? parts[1].split("x") : new String[0];
+			if (parts.length < minParts || parts.length > maxParts || dims.length != 2) {
+				throw new IllegalArgumentException("Could not parse render spec " + arg);
+			}
+			return new int[] {Integer.parseInt(dims[0]), Integer.parseInt(dims[1])};
+		}
+
+		/**
+		 * @return part of the saved file name that identifies this spec
+		 */
+		public abstract String tag();
+
+		/**
+		 * @return file extension of saved files
+		 */
+		public abstract String extension();
+
+		/**
+		 * Render a CPPN and save the result
+		 *
+		 * @param cppn phenotype of genotype, only used by this spec
+		 * @param filename file to save
+		 * @throws IOException if saving fails
+		 */
+		public abstract void render(TWEANN cppn, String filename) throws IOException;
+	}
+
+	private static class ImageSpec extends RenderSpec {
+		private final String format;
+
+		ImageSpec(int width, int height, String format) {
+			super(width, height);
+			this.format = format;
+		}
+
+		public String tag() {
+			return "image" + width + "x" + height;
+		}
+
+		public String extension() {
+			return format;
+		}
+
+		public void render(TWEANN cppn, String filename) {
+			BufferedImage image = GraphicsUtil.imageFromCPPN(cppn, width, height, ArrayUtil.doubleOnes(cppn.numInputs()));
+			GraphicsUtil.saveImage(image, filename);
+		}
+	}
+
+	private static class AnimationSpec extends RenderSpec {
+		private final int frames;
+
+		AnimationSpec(int width, int height, int frames) {
+			super(width, height);
+			this.frames = frames;
+		}
+
+		public String tag() {
+			return "animation" + width + "x" + height + "_" + frames;
+		}
+
+		public String extension() {
+			return "gif";
+		}
+
+		public void render(TWEANN cppn, String filename) throws IOException {
+			double[] inputMultipliers = ArrayUtil.doubleOnes(cppn.numInputs());
+			AnimationUtil.createGif(frame -> GraphicsUtil.imageFromCPPN(cppn, width, height, inputMultipliers, frame / AnimationUtil.FRAMES_PER_SEC),
+					frames, Parameters.parameters.integerParameter("defaultFramePause"), filename);
+		}
+	}
+
+	private static class RotationSpec extends RenderSpec {
+		private final int frames;
+
+		RotationSpec(int width, int height, int frames) {
+			super(width, height);
+			this.frames = frames;
+		}
+
+		public String tag() {
+			return "rotation" + width + "x" + height + "_" + frames;
+		}
+
+		public String extension() {
+			return "gif";
+		}
+
+		public void render(TWEANN cppn, String filename) throws IOException {
+			double pitch = (Parameters.parameters.integerParameter("defaultPitch") / (double) ThreeDimensionalObjectBreederTask.MAX_ROTATION) * 2 * Math.PI;
+			double heading = (Parameters.parameters.integerParameter("defaultHeading") / (double) ThreeDimensionalObjectBreederTask.MAX_ROTATION) * 2 * Math.PI;
+			// Evolved colors, as in 3DObjectBreeder
+			List<Triangle> tris = ThreeDimensionalUtil.trianglesFromCPPN(cppn, width, height, ThreeDimensionalObjectBreederTask.CUBE_SIDE_LENGTH,
+					ThreeDimensionalObjectBreederTask.SHAPE_WIDTH, ThreeDimensionalObjectBreederTask.SHAPE_HEIGHT, ThreeDimensionalObjectBreederTask.SHAPE_DEPTH,
+					null, ArrayUtil.doubleOnes(cppn.numInputs()));
+			AnimationUtil.createGif(frame -> ThreeDimensionalUtil.rotationFrameFromTriangles(tris, width, height, frame, frames, heading, pitch, ROTATION_BACKGROUND, false),
+					frames, Parameters.parameters.integerParameter("defaultFramePause"), filename);
+		}
+	}
+
+	private static class SoundSpec extends RenderSpec {
+		private final int length;
+
+		SoundSpec(int length) {
+			super(0, 0);
+			this.length = length;
+		}
+
+		public String tag() {
+			return "sound" + length;
+		}
+
+		public String extension() {
+			return "wav";
+		}
+
+		public void render(TWEANN cppn, String filename) throws IOException {
+			SoundFromCPPNUtil.saveFileFromCPPN(cppn, length, BreedesizerTask.FREQUENCY_DEFAULT, filename);
+		}
+	}
+}
@@ -11,6 +11,7 @@ import java.awt.event.ActionListener;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -18,6 +19,10 @@ import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
@@ -28,6 +33,7 @@ import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JSlider;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
@@ -88,6 +94,8 @@ public abstract class InteractiveEvolutionTask<T extends Network> implements Sin
 	private static final int UNDO_BUTTON_INDEX = -7;
 
 	private static final int BORDER_THICKNESS = 4;
+	// Distances between computed pixels in successive preview passes, before the full image
+	private static final int[] PREVIEW_STEPS = new int[]{8, 4, 2};
 	private static final int MPG_MIN = 0;//minimum # of mutations per generation
 	private static final int MPG_MAX = 10;//maximum # of mutations per generation
 
@@ -126,6 +134,13 @@ public abstract class InteractiveEvolutionTask<T extends Network> implements Sin
 
 	public LinkedList<Integer> selectedCPPNs;
 
+	// Button images are rendered in the background by this pool of threads
+	private ExecutorService renderPool;
+	// Most recent render job for each button
+	private Future<?>[] renderJobs;
+	// Incremented whenever a button gets a new render job, so that results of stale jobs can be discarded
+	private int[] renderTickets;
+
 	/**
 	 * Default Constructor
 	 * @throws IllegalAccessException 
@@ -147,6 +162,16 @@ public abstract class InteractiveEvolutionTask<T extends Network> implements Sin
 		numRows = numButtonOptions / NUM_COLUMNS;
 		picSize = Parameters.parameters.integerParameter("imageSize");
 		chosen = new boolean[numButtonOptions];
+		renderJobs = new Future<?>[numButtonOptions];
+		renderTickets = new int[numButtonOptions];
+		renderPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ButtonRenderer");
+				t.setDaemon(true); // Do not prevent the program from closing
+				return t;
+			}
+		});
 		//showLineage = false;
 		showNetwork = false;
 		waitingForUser = false;
@@ -509,11 +534,114 @@ public abstract class InteractiveEvolutionTask<T extends Network> implements Sin
 	 */
 	protected void resetButton(Genotype<T> individual, int x) { 
 		scores.add(new Score<T>(individual, new double[]{0}, null));
-		setButtonImage(showNetwork ? getNetwork(individual) : getButtonImage(individual.getPhenotype(),  picSize, picSize, inputMultipliers), x);
+		renderButtonImage(individual, x);
 		chosen[x] = false;
 		buttons.get(x).setBorder(BorderFactory.createLineBorder(Color.lightGray, BORDER_THICKNESS));
 	}
 	
+	/**
+	 * Renders the image for a button on the pool of render threads, and puts
+	 * it on the button (in the Swing event dispatch thread) as soon as it is
+	 * done. Whatever job was still pending for the same button is cancelled,
+	 * and its result is discarded even if it was already being rendered.
+	 * 
+	 * @param individual genotype whose image (or network) goes on the button
+	 * @param x index of button
+	 */
+	protected void renderButtonImage(final Genotype<T> individual, final int x) {
+		final boolean network = showNetwork;
+		final boolean progressive = Parameters.parameters.booleanParameter("progressiveButtonRendering");
+		final double[] multipliers = Arrays.copyOf(inputMultipliers, inputMultipliers.length);
+		// Swing components may only be read on the event dispatch thread, not the render threads
+		final int networkHeight = network ? networkImageHeight() : 0;
+		synchronized(renderTickets) {
+			if(renderJobs[x] != null) {
+				renderJobs[x].cancel(false);
+			}
+			final int ticket = ++renderTickets[x];
+			renderJobs[x] = renderPool.submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if(network) {
+							postButtonImage(getNetwork(individual, networkHeight), x, ticket);
+							return;
+						}
+						T phenotype = individual.getPhenotype();
+						if(progressive) {
+							for(int step : PREVIEW_STEPS) {
+								if(!isCurrentRender(x, ticket)) {
+									return; // Drop remaining refinements of stale images
+								}
+								BufferedImage preview = getPreviewButtonImage(phenotype, picSize, picSize, multipliers, step);
+								if(preview == null) {
+									break; // Task does not support previews
+								}
+								postButtonImage(preview, x, ticket);
+							}
+							if(!isCurrentRender(x, ticket)) {
+								return;
+							}
+						}
+						postButtonImage(getButtonImage(phenotype, picSize, picSize, multipliers), x, ticket);
+					} catch(RuntimeException e) {
+						// Exceptions would otherwise disappear inside the Future
+						e.printStackTrace();
+						throw e;
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Puts a rendered image on its button from the Swing event dispatch
+	 * thread, unless the render job became stale in the meantime.
+	 * 
+	 * @param image rendered image
+	 * @param x index of button
+	 * @param ticket ticket of the render job
+	 */
+	private void postButtonImage(final BufferedImage image, final int x, final int ticket) {
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				if(isCurrentRender(x, ticket)) {
+					setButtonImage(image, x);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Whether a render job is still the most recent one for its button
+	 * 
+	 * @param x index of button
+	 * @param ticket ticket of the render job
+	 * @return false if a newer job was scheduled or rendering was cancelled
+	 */
+	protected boolean isCurrentRender(int x, int ticket) {
+		synchronized(renderTickets) {
+			return renderTickets[x] == ticket;
+		}
+	}
+
+	/**
+	 * Cancels all pending render jobs and discards the results of jobs that are
+	 * already running. Used when the images being rendered are no longer wanted.
+	 */
+	protected void cancelRendering() {
+		synchronized(renderTickets) {
+			for(int i = 0; i < renderJobs.length; i++) {
+				if(renderJobs[i] != null) {
+					renderJobs[i].cancel(false);
+					renderJobs[i] = null;
+				}
+				renderTickets[i]++;
+			}
+		}
+	}
+
 	/**
 	 * Creates BufferedImage representation of item to be displayed on 
 	 * the buttons of the interface.
@@ -527,17 +655,63 @@ public abstract class InteractiveEvolutionTask<T extends Network> implements Sin
 	protected abstract BufferedImage getButtonImage(T phenotype, int width, int height, double[] inputMultipliers);
 
 	/**
-	 * Used to get the image of a network using a drawing panel
+	 * Creates a quick, low resolution version of the button image, where
+	 * only every step-th pixel in each direction is actually computed.
+	 * These previews are shown while the full image is rendered. Tasks
+	 * that cannot make previews return null, which is the default.
+	 * 
+	 * @param phenotype CPPN input
+	 * @param width width of image
+	 * @param height height of image
+	 * @param inputMultipliers determines whether CPPN inputs are turned on or off
+	 * @param step distance between computed pixels
+	 * @return preview image, or null if previews are not supported
+	 */
+	protected BufferedImage getPreviewButtonImage(T phenotype, int width, int height, double[] inputMultipliers, int step) {
+		return null;
+	}
+
+	/**
+	 * Height of the network images shown on the buttons, which depends on the
+	 * current size of the window. The components are read on the event dispatch
+	 * thread, waiting for it if called from any other thread.
+	 * @return height of network images
+	 */
+	private int networkImageHeight() {
+		if(SwingUtilities.isEventDispatchThread()) {
+			return (frame.getHeight() - topper.getHeight())/numRows;
+		}
+		final int[] height = new int[1];
+		try {
+			SwingUtilities.invokeAndWait(new Runnable() {
+				@Override
+				public void run() {
+					height[0] = networkImageHeight();
+				}
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading the window size", e);
+		} catch (InvocationTargetException e) {
+			throw new IllegalStateException("Could not read the window size", e.getCause());
+		}
+		return height[0];
+	}
+
+	/**
+	 * Used to get the image of a network using a drawing panel. Called on the
+	 * render threads, so the height is read from the window beforehand.
 	 * @param tg genotype of network
+	 * @param height height of image, from networkImageHeight
 	 * @return
 	 */
-	private BufferedImage getNetwork(Genotype<T> tg) {
+	private BufferedImage getNetwork(Genotype<T> tg, int height) {
 		T pheno = tg.getPhenotype();
 //		DrawingPanel network = new DrawingPanel(picSize,( frame.getHeight() - topper.getHeight())/numRows, "network");
 //		((TWEANN) pheno).draw(network);
 //		network.setVisibility(false);
 //		return network.image;
-		return ((TWEANN) pheno).getNetworkImage(picSize, (frame.getHeight() - topper.getHeight())/numRows, false, false);
+		return ((TWEANN) pheno).getNetworkImage(picSize, height, false, false);
 	}
 
 	/**
@@ -647,13 +821,12 @@ public abstract class InteractiveEvolutionTask<T extends Network> implements Sin
 		if(showNetwork) {//puts images back on buttons
 			showNetwork = false;
 			for(int i = 0; i < scores.size(); i++) {
-				setButtonImage(getButtonImage(scores.get(i).individual.getPhenotype(), picSize, picSize, inputMultipliers), i);
+				renderButtonImage(scores.get(i).individual, i);
 			}
 		} else {//puts networks on buttons
 			showNetwork = true;
 			for(int i = 0; i < buttons.size(); i++) {
-				BufferedImage network = getNetwork(scores.get(i).individual);
-				setButtonImage(network, i);
+				renderButtonImage(scores.get(i).individual, i);
 			}
 		}
 	}
@@ -703,7 +876,7 @@ public abstract class InteractiveEvolutionTask<T extends Network> implements Sin
 	 */
 	public void resetButtons(boolean hardReset){
 		for(int i = 0; i < scores.size(); i++) {
-			setButtonImage(getButtonImage(scores.get(i).individual.getPhenotype(),  picSize, picSize, inputMultipliers), i);
+			renderButtonImage(scores.get(i).individual, i);
 		}		
 	}
 
@@ -791,6 +964,8 @@ public abstract class InteractiveEvolutionTask<T extends Network> implements Sin
 	}
 
 	protected void evolve() {
+		// Images of the current generation are no longer needed
+		cancelRendering();
 		previousScores = new ArrayList<Score<T>>();
 		previousScores.addAll(scores);
 		waitingForUser = false;//tells evaluateAll method to finish	
@@ -902,7 +1077,7 @@ public abstract class InteractiveEvolutionTask<T extends Network> implements Sin
 	public void drawLineage(long id, long childId, int x, int y, int depth) {
 		Offspring o = Offspring.lineage.get((int) id);
 		if(o != null && !drawnOffspring.contains(id)) { // Don't draw if already drawn
-			Genotype<T> g = (Genotype<T>) Offspring.getGenotype(o.xmlNetwork);
+			Genotype<T> g = (Genotype<T>) Offspring.getGenotype(o);
 			BufferedImage bi = getButtonImage(g.getPhenotype(), picSize/2, picSize/2, inputMultipliers);
 			DrawingPanel p = GraphicsUtil.drawImage(bi, id + " -> " + childId, picSize/2, picSize/2);
 			p.setLocation(x, y);
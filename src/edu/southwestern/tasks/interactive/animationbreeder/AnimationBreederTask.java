@@ -1,15 +1,17 @@
 package edu.southwestern.tasks.interactive.animationbreeder;
 
-import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.image.BufferedImage;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
@@ -23,7 +25,6 @@ import edu.southwestern.MMNEAT.MMNEAT;
 import edu.southwestern.evolution.genotypes.Genotype;
 import edu.southwestern.networks.Network;
 import edu.southwestern.parameters.Parameters;
-import edu.southwestern.scores.Score;
 import edu.southwestern.tasks.interactive.InteractiveEvolutionTask;
 import edu.southwestern.util.graphics.AnimationUtil;
 
@@ -47,6 +48,54 @@ public class AnimationBreederTask<T extends Network> extends InteractiveEvolutio
 		return AnimationUtil.imagesFromCPPN(cppn, picSize, picSize, startFrame, endFrame, getInputMultipliers());
 	}
 
+	/**
+	 * A single frame of an animation, used when saving one frame at a time.
+	 * Must match the corresponding image from getAnimationImages.
+	 * 
+	 * @param cppn network that defines the animation
+	 * @param frame index of frame
+	 * @param frames number of frames in the whole animation
+	 * @param beingSaved whether the frame is being saved to a file
+	 * @return image of frame
+	 */
+	protected BufferedImage getAnimationFrame(T cppn, int frame, int frames, boolean beingSaved) {
+		return getAnimationImages(cppn, frame, frame + 1, beingSaved)[0];
+	}
+
+	/**
+	 * Description of every setting besides the genotype, frame index and
+	 * image size that changes what the animation frames look like. Frames are
+	 * only reused from the frame cache if this has not changed since they were
+	 * rendered, so subclasses that have additional settings must append them.
+	 * The actual values are included, rather than a hash, so that different
+	 * settings can never be mistaken for each other.
+	 * 
+	 * @return description of the current settings
+	 */
+	protected String animationSettings() {
+		return Arrays.toString(inputMultipliers);
+	}
+
+	/**
+	 * Frame of the animation of an individual, from the frame cache if
+	 * possible, and otherwise rendered and added to the cache.
+	 * 
+	 * @param individual genotype that defines the animation
+	 * @param phenotype network of that genotype, or null to build it only if the frame must be rendered
+	 * @param frame index of frame
+	 * @param frames number of frames in the whole animation
+	 * @param settings result of animationSettings
+	 * @return image of frame
+	 */
+	protected BufferedImage cachedAnimationFrame(Genotype<T> individual, T phenotype, int frame, int frames, String settings) {
+		BufferedImage image = frameCache.get(individual.getId(), frame, picSize, picSize, settings);
+		if(image == null) {
+			image = getAnimationFrame(phenotype == null ? individual.getPhenotype() : phenotype, frame, frames, false);
+			frameCache.put(individual.getId(), frame, picSize, picSize, settings, image);
+		}
+		return image;
+	}
+
 	// use private inner class to run animation in a loop
 	protected class AnimationThread extends Thread {
 		private int imageID;
@@ -64,26 +113,19 @@ public class AnimationBreederTask<T extends Network> extends InteractiveEvolutio
 				stopAnimation();
 			}
 			int end = Parameters.parameters.integerParameter("defaultAnimationLength");
-			// Only one thread can add frames at a time
-			buttons.get(imageID).setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR)); //turn on busy cursor while animations are loading
-			synchronized(animations[imageID]) {
-				//adds images to array at index of specified button (imageID)
-				if(animations[imageID].size() < Parameters.parameters.integerParameter("defaultAnimationLength")) {
-					int start = animations[imageID].size();
-					BufferedImage[] newFrames = getAnimationImages(scores.get(imageID).individual.getPhenotype(), start, end, false);
-					for(BufferedImage bi : newFrames) {
-						if(abort) break; // stop loading if animation is aborted
-						animations[imageID].add(bi);
-					}
-				}
-			}
-			buttons.get(imageID).setCursor(Cursor.getDefaultCursor()); //turn off busy cursor after animations have finished loading
-
+			String settings = animationSettings();
+			Genotype<T> individual = scores.get(imageID).individual;
+			T phenotype = null; // Only built if some frame is not cached yet
 			while(!abort) {
 				// One animation loop
 				for(int frame = 0; !abort && frame < end; frame++) {
+					if(phenotype == null && !frameCache.contains(individual.getId(), frame, picSize, picSize, settings)) {
+						phenotype = individual.getPhenotype();
+					}
+					BufferedImage image = cachedAnimationFrame(individual, phenotype, frame, end, settings);
+					if(abort) break;
 					// set button over and over
-					setButtonImage(animations[imageID].get(frame), imageID);
+					setButtonImage(image, imageID);
 					try {
 						// pause between frames (each image in animation)
 						Thread.sleep(Parameters.parameters.integerParameter("defaultFramePause"));
@@ -108,10 +150,15 @@ public class AnimationBreederTask<T extends Network> extends InteractiveEvolutio
 	public static final int CPPN_NUM_INPUTS	= 5;
 	public static final int CPPN_NUM_OUTPUTS = 3;
 
-	// stores all animations in an array with a different button's animation at each index
-	public ArrayList<BufferedImage>[] animations;
+	// Rendered frames of all animations, shared by every button and generation
+	protected AnimationFrameCache frameCache;
 	protected AnimationThread[] animationThreads;
 
+	// Animations of the buttons are rendered ahead of time by this low priority thread
+	private ExecutorService prerenderPool;
+	// Incremented whenever a button gets a new individual or the settings change, so that stale pre-rendering stops
+	private int[] prerenderTickets;
+
 	public AnimationBreederTask() throws IllegalAccessException {
 		this(true);
 	}
@@ -124,6 +171,18 @@ public class AnimationBreederTask<T extends Network> extends InteractiveEvolutio
 	public AnimationBreederTask(boolean justAnimationBreeder) throws IllegalAccessException {
 		super();
 		animationThreads = new AnimationBreederTask.AnimationThread[Parameters.parameters.integerParameter("mu")];
+		long budget = Math.min(Parameters.parameters.integerParameter("animationFrameCacheMB") * 1024L * 1024L, Runtime.getRuntime().maxMemory() / 4);
+		frameCache = new AnimationFrameCache(budget);
+		prerenderTickets = new int[Parameters.parameters.integerParameter("mu")];
+		prerenderPool = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "AnimationPrerenderer");
+				t.setDaemon(true); // Do not prevent the program from closing
+				t.setPriority(Thread.MIN_PRIORITY); // Rendering for the user comes first
+				return t;
+			}
+		});
 		if(justAnimationBreeder) {
 			//Construction of JSlider for desired animation length
 
@@ -309,12 +368,12 @@ public class AnimationBreederTask<T extends Network> extends InteractiveEvolutio
 
 	@Override
 	protected void save(String filename, int i) {
-		// Use of imageHeight and imageWidth allows saving a higher quality image than is on the button
-		BufferedImage[] toSave = getAnimationImages(scores.get(i).individual.getPhenotype(), 0, Parameters.parameters.integerParameter("defaultAnimationLength"), true);
+		T phenotype = scores.get(i).individual.getPhenotype();
+		int frames = Parameters.parameters.integerParameter("defaultAnimationLength");
 		filename += ".gif";
 		try {
-			//saves gif to chosen file name
-			AnimationUtil.createGif(toSave, Parameters.parameters.integerParameter("defaultFramePause"), filename);
+			//saves gif to chosen file name, writing each frame as soon as it is rendered
+			AnimationUtil.createGif(frame -> getAnimationFrame(phenotype, frame, frames, true), frames, Parameters.parameters.integerParameter("defaultFramePause"), filename);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -342,22 +401,55 @@ public class AnimationBreederTask<T extends Network> extends InteractiveEvolutio
 		// do nothing
 	}
 
-	public ArrayList<Score<T>> evaluateAll(ArrayList<Genotype<T>> population) {
-		clearAnimations(population.size());
-		return super.evaluateAll(population); // wait for user choices
-	}
-
-	@SuppressWarnings("unchecked")
-	private void clearAnimations(int num) {
-		// Load all Image arrays with animations
-		animations = new ArrayList[num];
-		for(int i = 0; i < animations.length; i++) {
-			animations[i] = new ArrayList<BufferedImage>();
-		}		
+	/**
+	 * Renders every frame of the animation of an individual that is not in
+	 * the frame cache yet, on the low priority pre-rendering thread, so that
+	 * hovering over its button plays the animation right away. Stops as soon
+	 * as the button gets another individual or the settings change.
+	 * Not needed when alwaysAnimate is true, since all animations are
+	 * then rendered as they are played.
+	 * 
+	 * @param individual genotype whose animation is rendered
+	 * @param x index of button showing the individual
+	 */
+	protected void prerenderAnimation(final Genotype<T> individual, final int x) {
+		final int ticket;
+		synchronized(prerenderTickets) {
+			ticket = ++prerenderTickets[x];
+		}
+		if(alwaysAnimate) {
+			return;
+		}
+		final int frames = Parameters.parameters.integerParameter("defaultAnimationLength");
+		final String settings = animationSettings();
+		prerenderPool.submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					T phenotype = null;
+					for(int frame = 0; frame < frames; frame++) {
+						synchronized(prerenderTickets) {
+							if(prerenderTickets[x] != ticket) {
+								return; // Button shows something else now
+							}
+						}
+						if(!frameCache.contains(individual.getId(), frame, picSize, picSize, settings)) {
+							if(phenotype == null) {
+								phenotype = individual.getPhenotype();
+							}
+							cachedAnimationFrame(individual, phenotype, frame, frames, settings);
+						}
+					}
+				} catch(RuntimeException e) {
+					// Exceptions would otherwise disappear inside the Future
+					e.printStackTrace();
+					throw e;
+				}
+			}
+		});
 	}
 
 	protected void setUndo() {
-		clearAnimations(scores.size());
 		if(alwaysAnimate) {
 			for(int x = 0; x < animationThreads.length; x++) {
 				if(animationThreads[x] != null) animationThreads[x].stopAnimation();
@@ -374,14 +466,9 @@ public class AnimationBreederTask<T extends Network> extends InteractiveEvolutio
 				if(animationThreads[x] != null) animationThreads[x].stopAnimation();
 			}
 		}
-		if(hardReset) {
-			//Clears out all pre-computed animations so that checking/unchecking boxes actually creates new animations
-			for(int i = 0; i < animations.length; i++) {
-				// Cannot clear animation if being loaded
-				synchronized(animations[i]) {
-					animations[i].clear();
-				}
-			}
+		// Frames rendered with different settings are not used, but remain cached in case the settings change back
+		for(int x = 0; x < scores.size(); x++) {
+			prerenderAnimation(scores.get(x).individual, x);
 		}
 		if(alwaysAnimate) {
 			for(int x = 0; x < animationThreads.length; x++) {
@@ -394,6 +481,7 @@ public class AnimationBreederTask<T extends Network> extends InteractiveEvolutio
 	@Override
 	protected void resetButton(Genotype<T> individual, int x) {
 		super.resetButton(individual, x);
+		prerenderAnimation(individual, x);
 		if(alwaysAnimate) {
 			if(animationThreads[x] != null) animationThreads[x].stopAnimation();
 			animationThreads[x] = new AnimationThread(x);
@@ -408,13 +496,6 @@ public class AnimationBreederTask<T extends Network> extends InteractiveEvolutio
 				if(animationThreads[x] != null) animationThreads[x].stopAnimation();
 			}
 		}
-		//Clears out all pre-computed animations so that checking/unchecking boxes actually creates new animations
-		for(int i = 0; i < animations.length; i++) {
-			// Cannot clear animation if being loaded
-			synchronized(animations[i]) {
-				animations[i].clear();
-			}
-		}
 		super.reset();
 	}
 
@@ -0,0 +1,195 @@
+package edu.southwestern.tasks.interactive.animationbreeder;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rendered animation frames, kept across hovers, button resets and
+ * generations so that an animation only has to be rendered once. Frames
+ * are keyed by genotype id, frame index, image size and a description of
+ * every other setting that affects the frame (such as the input multipliers),
+ * so toggling a setting and toggling it back finds the earlier frames
+ * again instead of rendering them from scratch.
+ *
+ * The total size of the cached images is bounded by a byte budget, and
+ * the least recently used frames are discarded first when it is exceeded.
+ * All methods are thread-safe.
+ *
+ * @author Jacob Schrum
+ */
+public class AnimationFrameCache {
+
+	private static class FrameKey {
+		final long genotypeId;
+		final int frame;
+		final int width;
+		final int height;
+		final String settings;
+
+		FrameKey(long genotypeId, int frame, int width, int height, String settings) {
+			this.genotypeId = genotypeId;
+			this.frame = frame;
+			this.width = width;
+			this.height = height;
+			this.settings = settings;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof FrameKey)) {
+				return false;
+			}
+			FrameKey k = (FrameKey) other;
+			return genotypeId == k.genotypeId && frame == k.frame && width == k.width && height == k.height && settings.equals(k.settings);
+		}
+
+		@Override
+		public int hashCode() {
+			long h = genotypeId;
+			h = 31 * h + frame;
+			h = 31 * h + width;
+			h = 31 * h + height;
+			h = 31 * h + settings.hashCode();
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+
+	// Access order, so iteration starts with the least recently used frame
+	private final LinkedHashMap<FrameKey, BufferedImage> frames = new LinkedHashMap<FrameKey, BufferedImage>(256, 0.75f, true);
+	private final long budget;
+	private long bytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+
+	/**
+	 * @param budget maximum number of bytes of cached images
+	 */
+	public AnimationFrameCache(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Cached frame, if there is one
+	 *
+	 * @param genotypeId id of genotype whose animation the frame is from
+	 * @param frame index of frame
+	 * @param width width of image
+	 * @param height height of image
+	 * @param settings description of the other settings the frame was rendered with
+	 * @return frame, or null if it is not cached
+	 */
+	public BufferedImage get(long genotypeId, int frame, int width, int height, String settings) {
+		synchronized (frames) {
+			BufferedImage image = frames.get(new FrameKey(genotypeId, frame, width, height, settings));
+			if (image == null) {
+				misses++;
+			} else {
+				hits++;
+			}
+			return image;
+		}
+	}
+
+	/**
+	 * Whether a frame is cached. Unlike get, this does not count as a use
+	 * of the frame.
+	 *
+	 * @param genotypeId id of genotype whose animation the frame is from
+	 * @param frame index of frame
+	 * @param width width of image
+	 * @param height height of image
+	 * @param settings description of the other settings the frame was rendered with
+	 * @return true if cached
+	 */
+	public boolean contains(long genotypeId, int frame, int width, int height, String settings) {
+		synchronized (frames) {
+			return frames.containsKey(new FrameKey(genotypeId, frame, width, height, settings));
+		}
+	}
+
+	/**
+	 * Add a rendered frame, discarding the least recently used frames if
+	 * the budget is exceeded. Frames larger than the whole budget are not
+	 * cached.
+	 *
+	 * @param genotypeId id of genotype whose animation the frame is from
+	 * @param frame index of frame
+	 * @param width width of image
+	 * @param height height of image
+	 * @param settings description of the other settings the frame was rendered with
+	 * @param image the frame
+	 */
+	public void put(long genotypeId, int frame, int width, int height, String settings, BufferedImage image) {
+		long size = sizeOf(image);
+		if (size > budget) {
+			return;
+		}
+		synchronized (frames) {
+			BufferedImage previous = frames.put(new FrameKey(genotypeId, frame, width, height, settings), image);
+			if (previous != null) {
+				bytes -= sizeOf(previous);
+			}
+			bytes += size;
+			Iterator<Map.Entry<FrameKey, BufferedImage>> itr = frames.entrySet().iterator();
+			while (bytes > budget && itr.hasNext()) {
+				bytes -= sizeOf(itr.next().getValue());
+				itr.remove();
+			}
+		}
+	}
+
+	/**
+	 * Remove all frames and reset the counters
+	 */
+	public void clear() {
+		synchronized (frames) {
+			frames.clear();
+			bytes = 0;
+			hits = 0;
+			misses = 0;
+		}
+	}
+
+	/**
+	 * @return number of cached frames
+	 */
+	public int size() {
+		synchronized (frames) {
+			return frames.size();
+		}
+	}
+
+	/**
+	 * @return number of bytes of cached images
+	 */
+	public long bytes() {
+		synchronized (frames) {
+			return bytes;
+		}
+	}
+
+	/**
+	 * Summary of cache performance
+	 *
+	 * @return counters as a String
+	 */
+	public String statistics() {
+		synchronized (frames) {
+			return "Animation frame cache: " + hits + " hits, " + misses + " misses, " + frames.size() + " frames, " + (bytes / (1024 * 1024)) + " of " + (budget / (1024 * 1024)) + " MB";
+		}
+	}
+
+	/**
+	 * Memory used by the pixels of an image
+	 *
+	 * @param image image
+	 * @return size in bytes
+	 */
+	private static long sizeOf(BufferedImage image) {
+		DataBuffer data = image.getRaster().getDataBuffer();
+		return (long) data.getSize() * data.getNumBanks() * DataBuffer.getDataTypeSize(data.getDataType()) / 8;
+	}
+}
@@ -170,6 +170,11 @@ public class ThreeDimensionalAnimationBreederTask<T extends Network> extends Ani
 		return AnimationUtil.shapesFromCPPN(cppn, picSize, picSize, startFrame, endFrame, beingSaved ? new Color(223,233,244) : null, heading, pitch, inputMultipliers);
 	}
 	
+	@Override
+	protected String animationSettings() {
+		return super.animationSettings() + "/" + heading + "/" + pitch;
+	}
+	
 	@Override
 	protected BufferedImage getButtonImage(T phenotype, int width, int height, double[] inputMultipliers) {
 		// Just get first frame for button. Slightly inefficent though, since all animation frames were pre-computed
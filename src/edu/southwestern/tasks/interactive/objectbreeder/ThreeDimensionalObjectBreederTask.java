@@ -7,9 +7,10 @@ import java.awt.event.ItemListener;
 import java.awt.image.BufferedImage;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.BoxLayout;
 import javax.swing.JComboBox;
@@ -67,9 +68,9 @@ public class ThreeDimensionalObjectBreederTask extends AnimationBreederTask<TWEA
 	protected boolean vertical;
 
 	// For undo button
-	public HashMap<Long,List<Triangle>> previousShapes;
-	// Pre-load shapes for current generation
-	public HashMap<Long,List<Triangle>> shapes;
+	public Map<Long,List<Triangle>> previousShapes;
+	// Pre-load shapes for current generation (concurrent because button images are rendered in parallel)
+	public Map<Long,List<Triangle>> shapes;
 
 	double pitch = (Parameters.parameters.integerParameter("defaultPitch")/(double) MAX_ROTATION) * 2 * Math.PI; 
 	double heading = (Parameters.parameters.integerParameter("defaultHeading")/(double) MAX_ROTATION) * 2 * Math.PI;
@@ -236,7 +237,7 @@ public class ThreeDimensionalObjectBreederTask extends AnimationBreederTask<TWEA
 	public ArrayList<Score<TWEANN>> evaluateAll(ArrayList<Genotype<TWEANN>> population) {
 		// Load all shapes in advance
 		previousShapes = shapes;
-		shapes = new HashMap<Long,List<Triangle>>();
+		shapes = new ConcurrentHashMap<Long,List<Triangle>>();
 		for(Genotype<TWEANN> g : population) {
 			shapes.put(g.getId(), ThreeDimensionalUtil.trianglesFromCPPN(g.getPhenotype(), picSize, picSize, CUBE_SIDE_LENGTH, SHAPE_WIDTH, SHAPE_HEIGHT, SHAPE_DEPTH, color, getInputMultipliers()));
 		}
@@ -265,7 +266,7 @@ public class ThreeDimensionalObjectBreederTask extends AnimationBreederTask<TWEA
 				}
 			}
 			
-			shapes = new HashMap<Long,List<Triangle>>();
+			shapes = new ConcurrentHashMap<Long,List<Triangle>>();
 			assert inputMultipliers.length == numCPPNInputs() : "Number of inputs should always match CPPN inputs! " + inputMultipliers.length + " vs " + numCPPNInputs();
 			for(Score<TWEANN> s : scores) {
 				shapes.put(s.individual.getId(), ThreeDimensionalUtil.trianglesFromCPPN(s.individual.getPhenotype(), picSize, picSize, CUBE_SIDE_LENGTH, SHAPE_WIDTH, SHAPE_HEIGHT, SHAPE_DEPTH, color, inputMultipliers));
@@ -276,7 +277,7 @@ public class ThreeDimensionalObjectBreederTask extends AnimationBreederTask<TWEA
 	
 	@Override
 	protected void reset() { 
-		shapes = new HashMap<Long,List<Triangle>>();
+		shapes = new ConcurrentHashMap<Long,List<Triangle>>();
 		super.reset();
 	}
 
@@ -311,19 +312,45 @@ public class ThreeDimensionalObjectBreederTask extends AnimationBreederTask<TWEA
 		return (Parameters.parameters.booleanParameter("allowCubeDisplacement") ? 7 : 4);
 	}
 
+	/**
+	 * Triangles of the shape defined by a CPPN. If the reset button cleared
+	 * out the triangles, they are loaded again.
+	 * 
+	 * @param phenotype CPPN
+	 * @return triangles of shape
+	 */
+	private List<Triangle> shape(TWEANN phenotype) {
+		Map<Long,List<Triangle>> current = shapes;
+		List<Triangle> tris = current.get(phenotype.getId());
+		if(tris == null) {
+			tris = ThreeDimensionalUtil.trianglesFromCPPN(phenotype, picSize, picSize, CUBE_SIDE_LENGTH, SHAPE_WIDTH, SHAPE_HEIGHT, SHAPE_DEPTH, color, getInputMultipliers());
+			current.put(phenotype.getId(), tris);
+		}
+		return tris;
+	}
+
 	@Override
 	protected BufferedImage getButtonImage(TWEANN phenotype, int width, int height, double[] inputMultipliers) {
-		// If reset button cleared out triangles, then load again right before displaying
-		if(!shapes.containsKey(phenotype.getId())) {
-			shapes.put(phenotype.getId(), ThreeDimensionalUtil.trianglesFromCPPN(phenotype, picSize, picSize, CUBE_SIDE_LENGTH, SHAPE_WIDTH, SHAPE_HEIGHT, SHAPE_DEPTH, color, getInputMultipliers()));
-		}		
-		return ThreeDimensionalUtil.imageFromTriangles(shapes.get(phenotype.getId()), picSize, picSize, heading, pitch, null);
+		return ThreeDimensionalUtil.imageFromTriangles(shape(phenotype), picSize, picSize, heading, pitch, null);
 	}
 
 	@Override
 	protected BufferedImage[] getAnimationImages(TWEANN cppn, int startFrame, int endFrame, boolean beingSaved) {
 		//if animation images are being saved as a gif, set background to grey (similar to button background) to avoid frame overlap
-		return ThreeDimensionalUtil.imagesFromTriangles(shapes.get(cppn.getId()), picSize, picSize, startFrame, endFrame, heading, pitch, beingSaved ? new Color(223,233,244) : null, vertical);
+		return ThreeDimensionalUtil.imagesFromTriangles(shape(cppn), picSize, picSize, startFrame, endFrame, heading, pitch, beingSaved ? new Color(223,233,244) : null, vertical);
+	}
+
+	@Override
+	protected BufferedImage getAnimationFrame(TWEANN cppn, int frame, int frames, boolean beingSaved) {
+		// The angle of each frame depends on the length of the whole rotation
+		return ThreeDimensionalUtil.rotationFrameFromTriangles(shape(cppn), picSize, picSize, frame, frames, heading, pitch, beingSaved ? new Color(223,233,244) : null, vertical);
+	}
+
+	@Override
+	protected String animationSettings() {
+		return super.animationSettings() + "/" + (color == null ? "none" : Integer.toHexString(color.getRGB())) + "/" + heading + "/" + pitch + "/" + vertical
+				// Rotation angle of each frame depends on the animation length
+				+ "/" + Parameters.parameters.integerParameter("defaultAnimationLength");
 	}
 
 	/**
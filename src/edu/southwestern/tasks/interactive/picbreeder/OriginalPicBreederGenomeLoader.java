@@ -35,9 +35,6 @@ public class OriginalPicBreederGenomeLoader {
 	public static final int SIZE = 256;
 	public static void main(String[] args) throws ParserConfigurationException, SAXException, IOException {		
 		Parameters.initializeParameterCollections(new String[] {"io:false","netio:false","allowMultipleFunctions:true","finalPassOnOutputActivation:true"});
-		TWEANNGenotype tg = new TWEANNGenotype(PicbreederTask.CPPN_NUM_INPUTS, PicbreederTask.CPPN_NUM_OUTPUTS, 0);
-		//System.out.println(tg);
-		// Now, load TWEANN structure from file
 		//File inputFile = new File("data\\picbreeder\\originalGenomes\\5736_ShinyRedApple.xml"); // Crash from loop?
 		//File inputFile = new File("data\\picbreeder\\originalGenomes\\4547_Face.xml"); // Crash from loop?
 		//File inputFile = new File("data\\picbreeder\\originalGenomes\\4376_ButterflyColor.xml"); // Output loops back to hidden neuron
@@ -54,6 +51,31 @@ public class OriginalPicBreederGenomeLoader {
 		//File inputFile = new File("data\\picbreeder\\originalGenomes\\121_ShortSDCoif.xml"); // PERFECT
 		//File inputFile = new File("data\\picbreeder\\originalGenomes\\4041_Doplhin.xml");
 		//File inputFile = new File("data\\picbreeder\\originalGenomes\\simple.xml"); // PERFECT
+        TWEANNGenotype tg = loadGenome(inputFile, true);
+        
+        DrawingPanel panel = new DrawingPanel(800, 800, "Network");
+		TWEANN network = tg.getPhenotype();
+		network.draw(panel, true, false);
+		
+        // Now show the image
+		BufferedImage image = GraphicsUtil.imageFromCPPN(network, SIZE, SIZE);
+		DrawingPanel picture = GraphicsUtil.drawImage(image, "Image", SIZE, SIZE);
+		// Wait for user
+		MiscUtil.waitForReadStringAndEnterKeyPress();
+		picture.dispose();
+	}
+	
+	/**
+	 * Load a genome in the XML format of the original Picbreeder into
+	 * a TWEANNGenotype, with the nodes sorted so that every link goes
+	 * forward.
+	 * 
+	 * @param inputFile XML file of the original Picbreeder genome
+	 * @param verbose whether to print the genotype before and after sorting
+	 * @return equivalent TWEANNGenotype
+	 */
+	public static TWEANNGenotype loadGenome(File inputFile, boolean verbose) throws ParserConfigurationException, SAXException, IOException {
+		TWEANNGenotype tg = new TWEANNGenotype(PicbreederTask.CPPN_NUM_INPUTS, PicbreederTask.CPPN_NUM_OUTPUTS, 0);
         DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
         DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
         Document doc = dBuilder.parse(inputFile);
@@ -107,23 +129,17 @@ public class OriginalPicBreederGenomeLoader {
             tg.links.add(lg);
         }
 
-        System.out.println("BEFORE");
-        System.out.println(tg.toString());
+        if(verbose) {
+        	System.out.println("BEFORE");
+        	System.out.println(tg.toString());
+        }
         // Get nodes in right order according to the links
         TWEANNGenotype.sortNodeGenesByLinkConnectivity(tg);
-        System.out.println("AFTER");
-        System.out.println(tg.toString());
-        
-        DrawingPanel panel = new DrawingPanel(800, 800, "Network");
-		TWEANN network = tg.getPhenotype();
-		network.draw(panel, true, false);
-		
-        // Now show the image
-		BufferedImage image = GraphicsUtil.imageFromCPPN(network, SIZE, SIZE);
-		DrawingPanel picture = GraphicsUtil.drawImage(image, "Image", SIZE, SIZE);
-		// Wait for user
-		MiscUtil.waitForReadStringAndEnterKeyPress();
-		picture.dispose();
+        if(verbose) {
+        	System.out.println("AFTER");
+        	System.out.println(tg.toString());
+        }
+        return tg;
 	}
 	
 	public static int getFType(String name) {
@@ -0,0 +1,137 @@
+package edu.southwestern.tasks.interactive.picbreeder;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import edu.southwestern.evolution.genotypes.TWEANNGenotype;
+import edu.southwestern.evolution.genotypes.TWEANNGenotype.LinkGene;
+import edu.southwestern.evolution.genotypes.TWEANNGenotype.NodeGene;
+import edu.southwestern.networks.ActivationFunctions;
+import edu.southwestern.networks.CompiledTWEANN;
+import edu.southwestern.networks.TWEANN;
+import edu.southwestern.parameters.Parameters;
+import edu.southwestern.util.random.RandomNumbers;
+
+/**
+ * Times how long it takes to build TWEANN and CompiledTWEANN phenotypes
+ * from large genomes. Also times the old approach of resolving each link's
+ * source and target with a linear scan of the node list, to show how much
+ * the innovation index saves as genomes grow.
+ *
+ * If a command line parameter is given, it is a directory of genomes in the
+ * format of the original Picbreeder (see OriginalPicBreederGenomeLoader),
+ * and every XML file in it is benchmarked. Otherwise, random layered
+ * genomes of increasing size are used.
+ *
+ * @author Jacob Schrum
+ */
+public class PhenotypeConstructionBenchmark {
+
+	public static final int ROUNDS = 200;
+	public static final int[] SYNTHETIC_HIDDEN = new int[] {50, 200, 800};
+	public static final int LINKS_PER_HIDDEN = 5;
+
+	public static void main(String[] args) throws Exception {
+		Parameters.initializeParameterCollections(new String[] {"io:false","netio:false","allowMultipleFunctions:true","finalPassOnOutputActivation:true"});
+		RandomNumbers.reset(0);
+		ArrayList<TWEANNGenotype> genomes = new ArrayList<>();
+		ArrayList<String> names = new ArrayList<>();
+		if(args.length > 0) {
+			File[] files = new File(args[0]).listFiles();
+			for(File f : files) {
+				if(f.getName().endsWith(".xml")) {
+					genomes.add(OriginalPicBreederGenomeLoader.loadGenome(f, false));
+					names.add(f.getName());
+				}
+			}
+		} else {
+			for(int hidden : SYNTHETIC_HIDDEN) {
+				genomes.add(layeredGenome(hidden, LINKS_PER_HIDDEN));
+				names.add("synthetic-" + hidden);
+			}
+		}
+
+		// Twice: the first pass warms up the JIT
+		for(int pass = 0; pass < 2; pass++) {
+			for(int i = 0; i < genomes.size(); i++) {
+				TWEANNGenotype g = genomes.get(i);
+				long start = System.nanoTime();
+				for(int r = 0; r < ROUNDS; r++) {
+					new TWEANN(g);
+				}
+				long tweann = System.nanoTime() - start;
+				start = System.nanoTime();
+				for(int r = 0; r < ROUNDS; r++) {
+					new CompiledTWEANN(g);
+				}
+				long compiled = System.nanoTime() - start;
+				start = System.nanoTime();
+				long found = 0;
+				for(int r = 0; r < ROUNDS; r++) {
+					found += linearScanLookups(g);
+				}
+				long scan = System.nanoTime() - start;
+				if(pass == 1) {
+					System.out.println(names.get(i) + ": " + g.nodes.size() + " nodes, " + g.links.size() + " links: TWEANN " + (tweann / ROUNDS / 1000.0) + " us, CompiledTWEANN " + (compiled / ROUNDS / 1000.0) + " us, linear scan lookups alone " + (scan / ROUNDS / 1000.0) + " us (" + found / ROUNDS + " found)");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find the source and target of every active link by scanning the node
+	 * list, the way TWEANN construction used to.
+	 *
+	 * @param g genotype
+	 * @return number of nodes found (to keep the work from being optimized away)
+	 */
+	private static long linearScanLookups(TWEANNGenotype g) {
+		long found = 0;
+		for(LinkGene lg : g.links) {
+			if(lg.isActive()) {
+				for(NodeGene ng : g.nodes) {
+					if(ng.innovation == lg.sourceInnovation) {
+						found++;
+						break;
+					}
+				}
+				for(NodeGene ng : g.nodes) {
+					if(ng.innovation == lg.targetInnovation) {
+						found++;
+						break;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Random feed forward CPPN with Picbreeder inputs and outputs. Each hidden
+	 * and output node receives links from random earlier nodes.
+	 *
+	 * @param hidden number of hidden nodes
+	 * @param linksPerNode number of links into each hidden and output node
+	 * @return genotype
+	 */
+	public static TWEANNGenotype layeredGenome(int hidden, int linksPerNode) {
+		ArrayList<NodeGene> nodes = new ArrayList<>();
+		ArrayList<LinkGene> links = new ArrayList<>();
+		long innovation = 0;
+		for(int i = 0; i < PicbreederTask.CPPN_NUM_INPUTS; i++) {
+			nodes.add(TWEANNGenotype.newNodeGene(ActivationFunctions.FTYPE_ID, TWEANN.Node.NTYPE_INPUT, -1 - i));
+		}
+		int[] ftypes = new int[] {ActivationFunctions.FTYPE_FULLGAUSS, ActivationFunctions.FTYPE_SINE, ActivationFunctions.FTYPE_COS, ActivationFunctions.FTYPE_FULLSIGMOID, ActivationFunctions.FTYPE_ID};
+		for(int i = 0; i < hidden + PicbreederTask.CPPN_NUM_OUTPUTS; i++) {
+			boolean output = i >= hidden;
+			NodeGene target = TWEANNGenotype.newNodeGene(ftypes[RandomNumbers.randomGenerator.nextInt(ftypes.length)], output ? TWEANN.Node.NTYPE_OUTPUT : TWEANN.Node.NTYPE_HIDDEN, innovation++);
+			int earlier = output ? PicbreederTask.CPPN_NUM_INPUTS + hidden : nodes.size();
+			for(int j = 0; j < linksPerNode; j++) {
+				NodeGene source = nodes.get(RandomNumbers.randomGenerator.nextInt(earlier));
+				links.add(TWEANNGenotype.newLinkGene(source.innovation, target.innovation, RandomNumbers.fullSmallRand(), innovation++, false));
+			}
+			nodes.add(target);
+		}
+		return new TWEANNGenotype(nodes, links, PicbreederTask.CPPN_NUM_OUTPUTS, false, false, 0);
+	}
+}
@@ -5,6 +5,7 @@ import java.io.FileNotFoundException;
 
 import edu.southwestern.MMNEAT.MMNEAT;
 import edu.southwestern.evolution.genotypes.Genotype;
+import edu.southwestern.networks.CompiledTWEANN;
 import edu.southwestern.networks.Network;
 import edu.southwestern.parameters.Parameters;
 import edu.southwestern.tasks.interactive.InteractiveEvolutionTask;
@@ -51,7 +52,33 @@ public class PicbreederTask<T extends Network> extends InteractiveEvolutionTask<
 
 	@Override
 	protected BufferedImage getButtonImage(T phenotype, int width, int height, double[] inputMultipliers) {
-		return GraphicsUtil.imageFromCPPN(phenotype, width, height, inputMultipliers);
+		return GraphicsUtil.imageFromCPPN(buttonNetwork(phenotype), width, height, inputMultipliers);
+	}
+
+	@Override
+	protected BufferedImage getPreviewButtonImage(T phenotype, int width, int height, double[] inputMultipliers, int step) {
+		return GraphicsUtil.imageFromCPPN(buttonNetwork(phenotype), width, height, inputMultipliers, -1, step);
+	}
+
+	/**
+	 * Network used to draw button images. Uses faster approximate activation
+	 * functions if fastMathPreviews is set. Saved images always use the
+	 * phenotype itself.
+	 *
+	 * @param phenotype CPPN of individual
+	 * @return network to render button image with
+	 */
+	private Network buttonNetwork(T phenotype) {
+		if(Parameters.parameters.booleanParameter("fastMathPreviews")) {
+			CompiledTWEANN compiled = CompiledTWEANN.compile(phenotype);
+			if(compiled != null) {
+				// Copy so that an already compiled phenotype is not changed
+				compiled = new CompiledTWEANN(compiled);
+				compiled.setApproximateActivations(true);
+				return compiled;
+			}
+		}
+		return phenotype;
 	}
 
 	@Override
@@ -0,0 +1,186 @@
+package edu.southwestern.util;
+
+/**
+ * Table based approximations of the transcendental functions that CPPN
+ * activation functions depend on. These are faster than the java.lang.Math
+ * versions, and accurate enough for rendering previews: every error bound
+ * below is far smaller than one step (1/255) of an 8-bit color channel.
+ * The bounds are checked by running main.
+ *
+ * Inputs outside of the ranges the tables handle well (including infinite
+ * and NaN inputs) are passed on to the exact Math methods.
+ *
+ * @author Jacob Schrum
+ */
+public class ApproximateMath {
+
+	/**
+	 * Maximum relative error of exp compared to Math.exp
+	 */
+	public static final double EXP_MAX_RELATIVE_ERROR = 1e-13;
+	/**
+	 * Maximum absolute error of sin and cos compared to Math.sin and Math.cos
+	 */
+	public static final double SIN_MAX_ERROR = 3e-7;
+	/**
+	 * Maximum absolute error of tanh compared to Math.tanh
+	 */
+	public static final double TANH_MAX_ERROR = 1e-14;
+
+	// exp(x) = 2^m * 2^(j/EXP_TABLE_SIZE) * exp(r), where |r| <= ln(2)/(2*EXP_TABLE_SIZE)
+	private static final int EXP_TABLE_BITS = 10;
+	private static final int EXP_TABLE_SIZE = 1 << EXP_TABLE_BITS;
+	private static final double EXP_SCALE = EXP_TABLE_SIZE / Math.log(2);
+	private static final double EXP_STEP = Math.log(2) / EXP_TABLE_SIZE;
+	// Beyond these bounds results overflow or become subnormal
+	private static final double EXP_MAX = 709;
+	private static final double EXP_MIN = -708;
+	private static final double[] EXP_TABLE = new double[EXP_TABLE_SIZE];
+
+	// One full period of sine, with an extra entry so interpolation never wraps
+	private static final int SIN_TABLE_SIZE = 4096;
+	private static final double SIN_SCALE = SIN_TABLE_SIZE / (2 * Math.PI);
+	// Larger inputs lose too much precision in range reduction
+	private static final double SIN_MAX_INPUT = 1e6;
+	private static final double[] SIN_TABLE = new double[SIN_TABLE_SIZE + 1];
+
+	// tanh is within TANH_MAX_ERROR of +/-1 beyond this
+	private static final double TANH_SATURATION = 20;
+
+	static {
+		for (int j = 0; j < EXP_TABLE_SIZE; j++) {
+			EXP_TABLE[j] = Math.pow(2, j / (double) EXP_TABLE_SIZE);
+		}
+		for (int i = 0; i <= SIN_TABLE_SIZE; i++) {
+			SIN_TABLE[i] = Math.sin(i / SIN_SCALE);
+		}
+	}
+
+	/**
+	 * Approximation of Math.exp
+	 *
+	 * @param x exponent
+	 * @return e^x, within EXP_MAX_RELATIVE_ERROR
+	 */
+	public static double exp(double x) {
+		if (!(x > EXP_MIN && x < EXP_MAX)) { // Also catches NaN
+			return Math.exp(x);
+		}
+		long k = (long) Math.floor(x * EXP_SCALE + 0.5);
+		double r = x - k * EXP_STEP;
+		int m = (int) (k >> EXP_TABLE_BITS);
+		int j = (int) (k & (EXP_TABLE_SIZE - 1));
+		// Third order Taylor series is enough for such a small remainder
+		double expR = 1 + r * (1 + r * (0.5 + r * (1.0 / 6)));
+		double twoToM = Double.longBitsToDouble(((long) (m + 1023)) << 52);
+		return twoToM * EXP_TABLE[j] * expR;
+	}
+
+	/**
+	 * Approximation of Math.sin
+	 *
+	 * @param x angle in radians
+	 * @return sin(x), within SIN_MAX_ERROR
+	 */
+	public static double sin(double x) {
+		return periodic(x, 0);
+	}
+
+	/**
+	 * Approximation of Math.cos
+	 *
+	 * @param x angle in radians
+	 * @return cos(x), within SIN_MAX_ERROR
+	 */
+	public static double cos(double x) {
+		return periodic(x, SIN_TABLE_SIZE / 4);
+	}
+
+	/**
+	 * Linear interpolation in the sine table, with the index shifted
+	 * by some number of table entries (a quarter period gives cosine).
+	 *
+	 * @param x angle in radians
+	 * @param shift number of table entries to shift by
+	 * @return interpolated value
+	 */
+	private static double periodic(double x, int shift) {
+		if (!(x > -SIN_MAX_INPUT && x < SIN_MAX_INPUT)) { // Also catches NaN
+			return shift == 0 ? Math.sin(x) : Math.cos(x);
+		}
+		double t = x * SIN_SCALE;
+		double floor = Math.floor(t);
+		double fraction = t - floor;
+		int index = (((int) floor) + shift) & (SIN_TABLE_SIZE - 1);
+		double low = SIN_TABLE[index];
+		return low + fraction * (SIN_TABLE[index + 1] - low);
+	}
+
+	/**
+	 * Approximation of Math.tanh
+	 *
+	 * @param x function parameter
+	 * @return tanh(x), within TANH_MAX_ERROR
+	 */
+	public static double tanh(double x) {
+		if (x > TANH_SATURATION) {
+			return 1;
+		} else if (x < -TANH_SATURATION) {
+			return -1;
+		} else if (Double.isNaN(x)) {
+			return x;
+		}
+		double e = exp(2 * x);
+		return (e - 1) / (e + 1);
+	}
+
+	/**
+	 * Check the error bounds of all approximations on a dense sample
+	 * of inputs, and compare speed to the exact versions.
+	 *
+	 * @param args not used
+	 */
+	public static void main(String[] args) {
+		final int samples = 2000001;
+		double expError = 0, sinError = 0, cosError = 0, tanhError = 0;
+		for (int i = 0; i < samples; i++) {
+			double x = -50 + 100.0 * i / (samples - 1);
+			expError = Math.max(expError, Math.abs(exp(x) - Math.exp(x)) / Math.exp(x));
+			sinError = Math.max(sinError, Math.abs(sin(x) - Math.sin(x)));
+			cosError = Math.max(cosError, Math.abs(cos(x) - Math.cos(x)));
+			tanhError = Math.max(tanhError, Math.abs(tanh(x) - Math.tanh(x)));
+		}
+		// Larger magnitudes, still within the tables
+		for (int i = 0; i < samples; i++) {
+			double x = -700 + 1400.0 * i / (samples - 1);
+			expError = Math.max(expError, Math.abs(exp(x) - Math.exp(x)) / Math.exp(x));
+			sinError = Math.max(sinError, Math.abs(sin(x * 1000) - Math.sin(x * 1000)));
+			cosError = Math.max(cosError, Math.abs(cos(x * 1000) - Math.cos(x * 1000)));
+		}
+		System.out.println("exp relative error:  " + expError + " (bound " + EXP_MAX_RELATIVE_ERROR + ")");
+		System.out.println("sin absolute error:  " + sinError + " (bound " + SIN_MAX_ERROR + ")");
+		System.out.println("cos absolute error:  " + cosError + " (bound " + SIN_MAX_ERROR + ")");
+		System.out.println("tanh absolute error: " + tanhError + " (bound " + TANH_MAX_ERROR + ")");
+		if (expError > EXP_MAX_RELATIVE_ERROR || sinError > SIN_MAX_ERROR || cosError > SIN_MAX_ERROR || tanhError > TANH_MAX_ERROR) {
+			throw new IllegalStateException("Approximation exceeds its error bound");
+		}
+
+		// Rough timing, done twice so the second pass is JIT compiled
+		for (int pass = 0; pass < 2; pass++) {
+			double check = 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < samples; i++) {
+				double x = -10 + 20.0 * i / samples;
+				check += Math.exp(x) + Math.sin(x) + Math.cos(x) + Math.tanh(x);
+			}
+			long exact = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int i = 0; i < samples; i++) {
+				double x = -10 + 20.0 * i / samples;
+				check += exp(x) + sin(x) + cos(x) + tanh(x);
+			}
+			long approximate = System.nanoTime() - start;
+			System.out.printf("Pass %d: exact %.2f ns, approximate %.2f ns per sample (checksum %f)\n", pass, exact / (double) samples, approximate / (double) samples, check);
+		}
+	}
+}
@@ -12,6 +12,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import edu.southwestern.MMNEAT.MMNEAT;
+import edu.southwestern.data.GenotypeFiles;
 import edu.southwestern.data.SaveThread;
 import edu.southwestern.evolution.EvolutionaryHistory;
 import edu.southwestern.evolution.GenerationalEA;
@@ -200,7 +201,7 @@ public class PopulationUtil {
 		}
 		// save all of the best objectives
 		for (int j = 0; j < bestObjectives.length; j++) {
-			Easy.save(bestGenotypes[j], bestDir + "/" + filePrefix + "bestIn" + j + ".xml");
+			GenotypeFiles.save(bestGenotypes[j], bestDir + "/" + filePrefix + "bestIn" + j + ".xml");
 			FileUtilities.simpleFileWrite(bestDir + "/" + filePrefix + "score" + j + ".txt", bestScores[j].toString());
 		}
 	}
@@ -378,7 +379,7 @@ public class PopulationUtil {
 	@SuppressWarnings("unchecked")
 	public static <T> Genotype<T> extractGenotype(String file) {
 		System.out.print("Load File: \"" + file + "\"");
-		Object loaded = Easy.load(file);
+		Object loaded = GenotypeFiles.load(file);
 		Genotype<T> individual = null;
 		if (loaded instanceof Genotype) {
 			individual = (Genotype<T>) loaded;
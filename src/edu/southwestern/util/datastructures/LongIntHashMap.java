@@ -0,0 +1,148 @@
+package edu.southwestern.util.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long keys to int values. Used to look up
+ * the index of a node or link from its innovation number without boxing
+ * either one, which a HashMap<Long,Integer> would require on every access.
+ *
+ * The map only grows: there is no remove, since the maps are built once
+ * per network and then only queried.
+ *
+ * @author Jacob Schrum
+ */
+public class LongIntHashMap {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private final int missingValue;
+	private long[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int size;
+	private int mask;
+
+	/**
+	 * Empty map that returns -1 for missing keys
+	 *
+	 * @param expectedSize number of keys that will be added
+	 */
+	public LongIntHashMap(int expectedSize) {
+		this(expectedSize, -1);
+	}
+
+	/**
+	 * Empty map
+	 *
+	 * @param expectedSize number of keys that will be added
+	 * @param missingValue value returned by get for keys not in the map
+	 */
+	public LongIntHashMap(int expectedSize, int missingValue) {
+		this.missingValue = missingValue;
+		allocate(capacityFor(expectedSize));
+	}
+
+	/**
+	 * Associate a key with a value, replacing any previous value
+	 *
+	 * @param key long key (such as an innovation number)
+	 * @param value int value (such as an index)
+	 */
+	public void put(long key, int value) {
+		int slot = slot(key);
+		if (used[slot]) {
+			values[slot] = value;
+			return;
+		}
+		used[slot] = true;
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+		// Load factor of at most 1/2 keeps probe sequences short
+		if (2 * size > keys.length) {
+			rehash(keys.length * 2);
+		}
+	}
+
+	/**
+	 * Value associated with key
+	 *
+	 * @param key long key
+	 * @return associated value, or the missing value if key is not present
+	 */
+	public int get(long key) {
+		int slot = slot(key);
+		return used[slot] ? values[slot] : missingValue;
+	}
+
+	/**
+	 * @param key long key
+	 * @return whether key has a value in the map
+	 */
+	public boolean containsKey(long key) {
+		return used[slot(key)];
+	}
+
+	/**
+	 * @return number of keys in the map
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Remove all keys, keeping the current capacity
+	 */
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	/**
+	 * Slot that either contains key, or is the empty slot where it belongs
+	 */
+	private int slot(long key) {
+		int slot = hash(key) & mask;
+		while (used[slot] && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				int slot = slot(oldKeys[i]);
+				used[slot] = true;
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < 2 * expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	// Innovation numbers are often consecutive, so spread the bits before masking
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
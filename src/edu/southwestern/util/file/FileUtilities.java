@@ -1,5 +1,6 @@
 package edu.southwestern.util.file;
 
+import edu.southwestern.data.GenotypeFiles;
 import edu.southwestern.evolution.genotypes.TWEANNGenotype;
 import edu.southwestern.networks.TWEANN;
 import edu.southwestern.parameters.Parameters;
@@ -10,7 +11,6 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.util.Scanner;
-import wox.serial.Easy;
 
 /**
  * Various static methods associated with files.
@@ -89,7 +89,7 @@ public class FileUtilities {
 	 *            xml file containing TWEANN
 	 */
 	public static void drawTWEANN(String filename) {
-		TWEANNGenotype genotype = (TWEANNGenotype) Easy.load(filename);
+		TWEANNGenotype genotype = (TWEANNGenotype) GenotypeFiles.load(filename);
 		DrawingPanel panel = new DrawingPanel(TWEANN.NETWORK_VIEW_DIM, TWEANN.NETWORK_VIEW_DIM, "Evolving Network");
 		panel.setLocation(500, 0);
 		genotype.getPhenotype().draw(panel);
@@ -0,0 +1,107 @@
+package edu.southwestern.util.graphics;
+
+import java.util.Arrays;
+
+import edu.southwestern.MMNEAT.MMNEAT;
+import edu.southwestern.evolution.EvolutionaryHistory;
+import edu.southwestern.evolution.genotypes.TWEANNGenotype;
+import edu.southwestern.networks.CompiledTWEANN;
+import edu.southwestern.networks.HoistedTWEANN;
+import edu.southwestern.parameters.Parameters;
+import edu.southwestern.util.random.RandomNumbers;
+
+/**
+ * Confirms that animation frames rendered with HoistedTWEANN, which only
+ * re-evaluates the part of a CPPN that depends on time, have exactly the
+ * same CPPN outputs as evaluating the whole CPPN for every pixel (or voxel)
+ * of every frame. Then compares the time needed to render the frames both
+ * ways. The CPPNs start fully connected, like those of the animation
+ * breeders, and are evolved with many mutations.
+ *
+ * Run with a command line parameter to set the number of mutations.
+ *
+ * @author Jacob Schrum
+ */
+public class AnimationHoistingBenchmark {
+
+	public static final int IMAGE_SIZE = 200;
+	public static final int SHAPE_SIZE = 30;
+	public static final int FRAMES = 30;
+	public static final int TRIALS = 10;
+
+	public static void main(String[] args) {
+		int mutations = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+		Parameters.initializeParameterCollections(new String[] {"io:false","netio:false","allowMultipleFunctions:true",
+				"includeSigmoidFunction:true","includeGaussFunction:true","includeSineFunction:true","includeAbsValFunction:true",
+				"includeHalfLinearPiecewiseFunction:true","includeCosineFunction:true","includeSiLFunction:true"});
+		MMNEAT.loadClasses();
+		RandomNumbers.reset(0);
+		// 2D: x, y, distance, time, bias. 3D: x, y, z, distance, bias, time
+		CPPNInputPlanes image = CPPNInputPlanes.get2D(IMAGE_SIZE, IMAGE_SIZE);
+		CPPNInputPlanes shape = CPPNInputPlanes.get3D(SHAPE_SIZE, SHAPE_SIZE, SHAPE_SIZE);
+		compare("2D", image, 5, 3, mutations);
+		compare("3D", shape, 6, 6, mutations);
+	}
+
+	/**
+	 * Render frames of random CPPNs both ways, exit if any output differs,
+	 * and print the times
+	 *
+	 * @param label name of the kind of animation
+	 * @param planes input planes of every sample
+	 * @param numInputs number of CPPN inputs
+	 * @param numOutputs number of CPPN outputs
+	 * @param mutations number of mutations of each CPPN
+	 */
+	private static void compare(String label, CPPNInputPlanes planes, int numInputs, int numOutputs, int mutations) {
+		double[] inputMultipliers = new double[numInputs];
+		Arrays.fill(inputMultipliers, 1.0);
+		int samples = planes.numSamples();
+		double[][] inputColumns = new double[numInputs][samples];
+		double[][] expected = new double[numOutputs][samples];
+		double[][] actual = new double[numOutputs][samples];
+		long wholeTime = 0;
+		long hoistedTime = 0;
+		int hoistedNetworks = 0;
+		double dependentFraction = 0;
+		for (int trial = 0; trial < TRIALS; trial++) {
+			TWEANNGenotype g = new TWEANNGenotype(numInputs, numOutputs, 0);
+			EvolutionaryHistory.initArchetype(0, null, (TWEANNGenotype) g.copy());
+			for (int i = 0; i < mutations; i++) {
+				g.mutate();
+			}
+			CompiledTWEANN compiled = CompiledTWEANN.compileStateless(g.getPhenotype());
+			if (compiled == null) {
+				continue; // Recurrent links are never hoisted
+			}
+			long start = System.nanoTime();
+			HoistedTWEANN hoisted = planes.hoistTime(compiled, inputMultipliers);
+			hoistedTime += System.nanoTime() - start;
+			if (hoisted == null) {
+				continue; // Nothing to gain
+			}
+			hoistedNetworks++;
+			dependentFraction += (hoisted.numDependentNodes() - 1.0) / (compiled.numNodes() - numInputs);
+			for (int frame = 0; frame < FRAMES; frame++) {
+				double time = frame / AnimationUtil.FRAMES_PER_SEC;
+				start = System.nanoTime();
+				planes.fillInputColumns(0, 1, samples, time, inputMultipliers, inputColumns);
+				compiled.processBatch(inputColumns, expected);
+				wholeTime += System.nanoTime() - start;
+				start = System.nanoTime();
+				hoisted.evaluate(0, samples, planes.timeInput(time, inputMultipliers), actual);
+				hoistedTime += System.nanoTime() - start;
+				for (int o = 0; o < numOutputs; o++) {
+					if (!Arrays.equals(expected[o], actual[o])) {
+						System.out.println(label + " mismatch in trial " + trial + " frame " + frame + " output " + o);
+						System.exit(1);
+					}
+				}
+			}
+		}
+		System.out.println(label + ": " + hoistedNetworks + " of " + TRIALS + " CPPNs hoisted, outputs identical, "
+				+ Math.round(100 * dependentFraction / Math.max(1, hoistedNetworks)) + "% of non-input nodes depend on time");
+		System.out.println("Whole CPPN every frame: " + (wholeTime / 1000000) + " ms");
+		System.out.println("Hoisted (including planes): " + (hoistedTime / 1000000) + " ms");
+	}
+}
@@ -4,6 +4,9 @@ import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.IntFunction;
 
 import javax.imageio.stream.FileImageOutputStream;
 import javax.imageio.stream.ImageOutputStream;
@@ -22,6 +25,8 @@ public class AnimationUtil {
 
 	//default frame rate to smooth out animation
 	public static final double FRAMES_PER_SEC = 24.0;
+	// Frames that can be rendered ahead of the frame being written to a gif
+	public static final int GIF_FRAME_BUFFER = 4;
 
 	/**
 	 * Utility method that generates an array of images based on an input CPPN.
@@ -83,4 +88,79 @@ public class AnimationUtil {
 		writer.close();
 		output.close();
 	}
+
+	/**
+	 * Save an animation to a gif without holding all of its frames in memory.
+	 * A separate thread renders the frames in order, while this thread writes
+	 * each one to the file as soon as it is ready. At most GIF_FRAME_BUFFER
+	 * rendered frames wait to be written, so rendering can only get slightly
+	 * ahead of writing.
+	 * 
+	 * @param frames renders the frame with a given index. Only called from the rendering thread.
+	 * @param numFrames number of frames in the animation
+	 * @param pauseBetweenFrames designated pause between frames for gif
+	 * @param filename Desired name of file being saved
+	 * @throws IOException if an I/O operation has failed or been interrupted
+	 */
+	public static void createGif(final IntFunction<BufferedImage> frames, final int numFrames, int pauseBetweenFrames, String filename) throws IOException {
+		final ArrayBlockingQueue<Object> rendered = new ArrayBlockingQueue<Object>(GIF_FRAME_BUFFER);
+		Thread renderer = new Thread(() -> {
+			try {
+				for (int i = 0; i < numFrames; i++) {
+					rendered.put(frames.apply(i));
+				}
+			} catch (InterruptedException e) {
+				// Writing failed, so the remaining frames are not needed
+			} catch (RuntimeException | Error e) {
+				try {
+					rendered.put(e); // Rethrown by the writing thread
+				} catch (InterruptedException ie) {
+					// Writing already failed
+				}
+			}
+		}, "GifFrameRenderer");
+		renderer.setDaemon(true);
+		renderer.start();
+
+		ImageOutputStream output = new FileImageOutputStream(new File(filename));
+		try {
+			GifSequenceWriter writer = null;
+			for (int i = 0; i < numFrames; i++) {
+				BufferedImage slide = nextFrame(rendered);
+				if (writer == null) { // Type of image is known once the first frame exists
+					writer = new GifSequenceWriter(output, slide.getType(), pauseBetweenFrames, true);
+				}
+				writer.writeToSequence(slide);
+			}
+			if (writer != null) {
+				writer.close();
+			}
+		} finally {
+			renderer.interrupt();
+			output.close();
+		}
+	}
+
+	/**
+	 * Wait for the next rendered frame
+	 * 
+	 * @param rendered queue filled by the rendering thread
+	 * @return next frame
+	 * @throws IOException if interrupted while waiting
+	 */
+	private static BufferedImage nextFrame(ArrayBlockingQueue<Object> rendered) throws IOException {
+		Object next;
+		try {
+			next = rendered.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for animation frame");
+		}
+		if (next instanceof RuntimeException) {
+			throw (RuntimeException) next;
+		} else if (next instanceof Error) {
+			throw (Error) next;
+		}
+		return (BufferedImage) next;
+	}
 }
@@ -0,0 +1,410 @@
+package edu.southwestern.util.graphics;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.southwestern.networks.ActivationPlaneCache;
+import edu.southwestern.networks.CompiledTWEANN;
+import edu.southwestern.networks.HoistedTWEANN;
+
+/**
+ * Precomputed geometric CPPN inputs for every pixel of an image (or every
+ * voxel of a 3D shape) of a given size. The scaled coordinates and the
+ * distance from the center only depend on the position and the dimensions,
+ * so they are computed once per resolution and shared by all renderers,
+ * individuals and animation frames. The planes are never modified after
+ * construction, so they can be read by several threads at once.
+ *
+ * Each plane holds one input for all samples. For images, sample x*height + y
+ * is pixel (x,y), so one column of the image is a contiguous run of samples.
+ * For shapes, sample (x*height + y)*depth + z is voxel (x,y,z). The values
+ * are produced by the same methods the renderers always used
+ * (GraphicsUtil.get2DObjectCPPNInputs and ThreeDimensionalUtil.get3DObjectCPPNInputs),
+ * so they are exactly the same.
+ *
+ * Time, bias and the input multipliers are applied when CPPN input columns
+ * are filled, since those change much more often than the dimensions.
+ *
+ * Resolutions whose planes would not fit in the cache (such as large saved
+ * images) are never precomputed: their geometric inputs are computed when
+ * input columns are filled, one sample at a time, as the renderers used to.
+ *
+ * @author Jacob Schrum
+ */
+public class CPPNInputPlanes {
+
+	// Planes of cached resolutions are evicted (least recently used first) once they exceed this size
+	public static final long MAX_CACHED_BYTES = 64L * 1024 * 1024;
+
+	private static final LinkedHashMap<String, CPPNInputPlanes> cache = new LinkedHashMap<String, CPPNInputPlanes>(16, 0.75f, true);
+	private static long cachedBytes = 0;
+
+	public final int width;
+	public final int height;
+	public final int depth;
+	// 2D images put the time input before the bias, but 3D shapes put it after
+	private final boolean timeBeforeBias;
+	// Number of geometric inputs
+	private final int numPlanes;
+	private final int numSamples;
+	// planes[i][sample] is geometric input i for the sample, or null if the planes are too big to precompute
+	private final double[][] planes;
+
+	/**
+	 * Input planes for a 2D image: scaled x, scaled y, and distance from center
+	 *
+	 * @param width width of image
+	 * @param height height of image
+	 */
+	private CPPNInputPlanes(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.depth = 1;
+		this.timeBeforeBias = true;
+		this.numPlanes = 3;
+		this.numSamples = width * height;
+		if (sizeInBytes() > MAX_CACHED_BYTES) {
+			this.planes = null;
+			return;
+		}
+		this.planes = new double[numPlanes][numSamples];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				double[] inputs = GraphicsUtil.get2DObjectCPPNInputs(x, y, width, height, -1);
+				for (int i = 0; i < planes.length; i++) {
+					planes[i][x * height + y] = inputs[i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Input planes for a 3D shape: scaled x, y, z and distance from center
+	 *
+	 * @param width width of shape
+	 * @param height height of shape
+	 * @param depth depth of shape
+	 */
+	private CPPNInputPlanes(int width, int height, int depth) {
+		this.width = width;
+		this.height = height;
+		this.depth = depth;
+		this.timeBeforeBias = false;
+		this.numPlanes = 4;
+		this.numSamples = width * height * depth;
+		if (sizeInBytes() > MAX_CACHED_BYTES) {
+			this.planes = null;
+			return;
+		}
+		this.planes = new double[numPlanes][numSamples];
+		int sample = 0;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				for (int z = 0; z < depth; z++) {
+					double[] inputs = ThreeDimensionalUtil.get3DObjectCPPNInputs(x, y, z, width, height, depth, -1);
+					for (int i = 0; i < planes.length; i++) {
+						planes[i][sample] = inputs[i];
+					}
+					sample++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Shared input planes for a 2D image of the given size
+	 *
+	 * @param width width of image
+	 * @param height height of image
+	 * @return input planes
+	 */
+	public static CPPNInputPlanes get2D(int width, int height) {
+		String key = width + "x" + height;
+		synchronized (cache) {
+			CPPNInputPlanes result = cache.get(key);
+			if (result != null) {
+				return result;
+			}
+		}
+		// Built outside of the lock, so that renders of cached sizes are not held up
+		return store(key, new CPPNInputPlanes(width, height));
+	}
+
+	/**
+	 * Shared input planes for a 3D shape of the given size
+	 *
+	 * @param width width of shape
+	 * @param height height of shape
+	 * @param depth depth of shape
+	 * @return input planes
+	 */
+	public static CPPNInputPlanes get3D(int width, int height, int depth) {
+		String key = width + "x" + height + "x" + depth;
+		synchronized (cache) {
+			CPPNInputPlanes result = cache.get(key);
+			if (result != null) {
+				return result;
+			}
+		}
+		return store(key, new CPPNInputPlanes(width, height, depth));
+	}
+
+	/**
+	 * Add new planes to the cache, evicting the least recently used ones if
+	 * the cache gets too big. Planes too big to precompute are not cached at all.
+	 * If another thread stored planes of the same size first, those are kept.
+	 *
+	 * @param key dimensions of planes
+	 * @param planes new planes
+	 * @return planes to use
+	 */
+	private static CPPNInputPlanes store(String key, CPPNInputPlanes planes) {
+		if (planes.planes == null) {
+			return planes;
+		}
+		long bytes = planes.sizeInBytes();
+		synchronized (cache) {
+			CPPNInputPlanes previous = cache.get(key);
+			if (previous != null) {
+				return previous;
+			}
+			Iterator<Map.Entry<String, CPPNInputPlanes>> itr = cache.entrySet().iterator();
+			while (cachedBytes + bytes > MAX_CACHED_BYTES && itr.hasNext()) {
+				cachedBytes -= itr.next().getValue().sizeInBytes();
+				itr.remove();
+			}
+			cache.put(key, planes);
+			cachedBytes += bytes;
+			return planes;
+		}
+	}
+
+	/**
+	 * Remove all cached planes
+	 */
+	public static void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+			cachedBytes = 0;
+		}
+	}
+
+	/**
+	 * @return memory used by the planes once precomputed, in bytes
+	 */
+	public long sizeInBytes() {
+		return (long) numPlanes * numSamples * 8;
+	}
+
+	/**
+	 * @return number of pixels or voxels
+	 */
+	public int numSamples() {
+		return numSamples;
+	}
+
+	/**
+	 * One geometric input of one sample, before any input multiplier
+	 *
+	 * @param input index of input (0 to 2 for images, 0 to 3 for shapes)
+	 * @param sample index of sample
+	 * @return value of input
+	 */
+	public double input(int input, int sample) {
+		return planes == null ? geometricInputs(sample)[input] : planes[input][sample];
+	}
+
+	/**
+	 * Fill columns with the geometric inputs of consecutive samples, before
+	 * any input multipliers
+	 *
+	 * @param firstSample index of first sample
+	 * @param count number of samples
+	 * @param columns at least one column for each geometric input, each with room for count samples
+	 */
+	public void fillGeometricInputs(int firstSample, int count, double[][] columns) {
+		if (planes == null) {
+			for (int s = 0; s < count; s++) {
+				double[] inputs = geometricInputs(firstSample + s);
+				for (int i = 0; i < numPlanes; i++) {
+					columns[i][s] = inputs[i];
+				}
+			}
+		} else {
+			for (int i = 0; i < numPlanes; i++) {
+				System.arraycopy(planes[i], firstSample, columns[i], 0, count);
+			}
+		}
+	}
+
+	/**
+	 * Geometric inputs of a sample computed from its position, for planes
+	 * that are too big to precompute
+	 *
+	 * @param sample index of sample
+	 * @return inputs, starting with the geometric ones
+	 */
+	private double[] geometricInputs(int sample) {
+		if (timeBeforeBias) { // 2D image
+			return GraphicsUtil.get2DObjectCPPNInputs(sample / height, sample % height, width, height, -1);
+		}
+		int z = sample % depth;
+		int xy = sample / depth;
+		return ThreeDimensionalUtil.get3DObjectCPPNInputs(xy / height, xy % height, z, width, height, depth, -1);
+	}
+
+	/**
+	 * Number of CPPN inputs for these planes, counting time and bias
+	 *
+	 * @param time time input, or -1 if time is not used
+	 * @return number of inputs
+	 */
+	public int numInputs(double time) {
+		return numPlanes + (time == -1 ? 1 : 2);
+	}
+
+	/**
+	 * @return index of the time input among the CPPN inputs
+	 */
+	public int timeInputIndex() {
+		return timeBeforeBias ? numPlanes : numPlanes + 1;
+	}
+
+	/**
+	 * Value of the time input column for a given time
+	 *
+	 * @param time time input
+	 * @param inputMultipliers multipliers for the inputs
+	 * @return time multiplied by its input multiplier, if it has one
+	 */
+	public double timeInput(double time, double[] inputMultipliers) {
+		int index = timeInputIndex();
+		return index < inputMultipliers.length ? time * inputMultipliers[index] : time;
+	}
+
+	/**
+	 * Shared version of a CPPN specialized for the input multipliers used
+	 * with these planes (see GraphicsUtil.specializeCPPN)
+	 *
+	 * @param cppn compiled CPPN
+	 * @param time time input, or -1 if time is not used
+	 * @param inputMultipliers multipliers for the inputs
+	 * @return specialized CPPN, which must be copied before being used by several threads
+	 */
+	public CompiledTWEANN specialize(CompiledTWEANN cppn, double time, double[] inputMultipliers) {
+		if (cppn.numInputs() != numInputs(time)) {
+			return cppn;
+		}
+		return GraphicsUtil.specializeCPPN(cppn, inputMultipliers, time != -1 && timeBeforeBias ? numPlanes + 1 : numPlanes);
+	}
+
+	/**
+	 * Shared version of a CPPN for rendering animation frames over these
+	 * planes, with everything that does not depend on time computed once
+	 * for every sample (see HoistedTWEANN).
+	 *
+	 * @param cppn compiled CPPN with a time input
+	 * @param inputMultipliers multipliers for the inputs
+	 * @return hoisted CPPN, or null if hoisting is not possible or not worthwhile
+	 */
+	public HoistedTWEANN hoistTime(CompiledTWEANN cppn, double[] inputMultipliers) {
+		// Any time will do, since the time input column is never read
+		return HoistedTWEANN.get(cppn, timeInputIndex(), samplesKey(inputMultipliers), numSamples(),
+				(firstSample, count, inputColumns) -> fillInputColumns(firstSample, 1, count, 0, inputMultipliers, inputColumns));
+	}
+
+	/**
+	 * Outputs of a CPPN for every sample, only computing the node activations
+	 * that were not already computed for an earlier CPPN, such as the parent
+	 * of a mutated offspring (see ActivationPlaneCache).
+	 *
+	 * @param cppn compiled CPPN
+	 * @param time time input, or -1 if time is not used
+	 * @param inputMultipliers multipliers for the inputs
+	 * @return one column of every sample for each output (must not be modified),
+	 *         or null if the CPPN is not simple feed-forward, caching is disabled,
+	 *         or the image is too big for the cache
+	 */
+	public double[][] cachedOutputs(CompiledTWEANN cppn, double time, double[] inputMultipliers) {
+		return ActivationPlaneCache.outputs(cppn, samplesKey(inputMultipliers) + "/" + time, numSamples(),
+				(firstSample, count, inputColumns) -> fillInputColumns(firstSample, 1, count, time, inputMultipliers, inputColumns));
+	}
+
+	/**
+	 * Description of the samples and input multipliers, for caches of results computed over all samples
+	 *
+	 * @param inputMultipliers multipliers for the inputs
+	 * @return unique key
+	 */
+	private String samplesKey(double[] inputMultipliers) {
+		return numPlanes + ":" + width + "x" + height + "x" + depth + Arrays.toString(inputMultipliers);
+	}
+
+	/**
+	 * Fill CPPN input columns (as used by CompiledTWEANN.processBatch) with the
+	 * inputs for a sequence of evenly spaced samples: firstSample, firstSample + stride,
+	 * and so on. Time and bias inputs are added, and every input is multiplied by
+	 * its input multiplier, giving exactly the values the per-sample input methods
+	 * would produce.
+	 *
+	 * @param firstSample index of first sample
+	 * @param stride distance between consecutive samples
+	 * @param count number of samples
+	 * @param time time input, or -1 if time is not used
+	 * @param inputMultipliers multipliers for the inputs (may be shorter than the number of inputs)
+	 * @param inputColumns numInputs(time) columns, each with room for count samples
+	 */
+	public void fillInputColumns(int firstSample, int stride, int count, double time, double[] inputMultipliers, double[][] inputColumns) {
+		assert inputColumns.length == numInputs(time) : "Wrong number of input columns: " + inputColumns.length + " instead of " + numInputs(time);
+		if (planes == null) {
+			for (int s = 0, sample = firstSample; s < count; s++, sample += stride) {
+				double[] inputs = geometricInputs(sample);
+				for (int i = 0; i < numPlanes; i++) {
+					inputColumns[i][s] = i < inputMultipliers.length ? inputs[i] * inputMultipliers[i] : inputs[i];
+				}
+			}
+		} else {
+			for (int i = 0; i < numPlanes; i++) {
+				double[] plane = planes[i];
+				double[] column = inputColumns[i];
+				if (i < inputMultipliers.length) {
+					double multiplier = inputMultipliers[i];
+					for (int s = 0, sample = firstSample; s < count; s++, sample += stride) {
+						column[s] = plane[sample] * multiplier;
+					}
+				} else {
+					for (int s = 0, sample = firstSample; s < count; s++, sample += stride) {
+						column[s] = plane[sample];
+					}
+				}
+			}
+		}
+		if (time == -1) {
+			fillConstant(inputColumns, numPlanes, GraphicsUtil.BIAS, count, inputMultipliers);
+		} else if (timeBeforeBias) {
+			fillConstant(inputColumns, numPlanes, time, count, inputMultipliers);
+			fillConstant(inputColumns, numPlanes + 1, GraphicsUtil.BIAS, count, inputMultipliers);
+		} else {
+			fillConstant(inputColumns, numPlanes, GraphicsUtil.BIAS, count, inputMultipliers);
+			fillConstant(inputColumns, numPlanes + 1, time, count, inputMultipliers);
+		}
+	}
+
+	/**
+	 * Fill an input column with a constant, scaled by the input multiplier
+	 *
+	 * @param inputColumns all input columns
+	 * @param index index of column to fill
+	 * @param value constant input value
+	 * @param count number of samples
+	 * @param inputMultipliers multipliers for the inputs
+	 */
+	private static void fillConstant(double[][] inputColumns, int index, double value, int count, double[] inputMultipliers) {
+		double input = index < inputMultipliers.length ? value * inputMultipliers[index] : value;
+		for (int s = 0; s < count; s++) {
+			inputColumns[index][s] = input;
+		}
+	}
+}
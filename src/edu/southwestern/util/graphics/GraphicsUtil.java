@@ -6,10 +6,16 @@ import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsEnvironment;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.imageio.ImageIO;
 
+import edu.southwestern.networks.CompiledTWEANN;
+import edu.southwestern.networks.HoistedTWEANN;
 import edu.southwestern.networks.Network;
 import edu.southwestern.networks.activationfunctions.FullLinearPiecewiseFunction;
 import edu.southwestern.networks.activationfunctions.HalfLinearPiecewiseFunction;
@@ -35,6 +41,9 @@ public class GraphicsUtil {
 	public static final int NUM_HSB = 3;
 	public static final double BIAS = 1.0;// a common input used in neural networks
 	public static final double SQRT2 = Math.sqrt(2); // Used for scaling distance from center
+	// Remix CPPNs take the scaled position, the distance from the center, the average HSB of a window, and a bias
+	public static final int NUM_REMIX_GEOMETRIC_INPUTS = 3;
+	public static final int NUM_REMIX_INPUTS = NUM_REMIX_GEOMETRIC_INPUTS + NUM_HSB + 1;
 	
 	/**
 	 * Determine the default graphics configuration for the current system.
@@ -100,20 +109,314 @@ public class GraphicsUtil {
 	 * @return buffered image containing image drawn by network
 	 */
 	public static BufferedImage imageFromCPPN(Network n, int imageWidth, int imageHeight, double[] inputMultiples, double time) {
+		return imageFromCPPN(n, imageWidth, imageHeight, inputMultiples, time, 1);
+	}
+
+	/**
+	 * Shared version of a compiled CPPN specialized for the current input
+	 * multipliers (see CompiledTWEANN.specialize). Inputs with a multiplier
+	 * of zero are always zero and the bias input never changes, so whatever
+	 * only depends on them is computed once, and whatever cannot reach an
+	 * output is dropped. Toggling an input off therefore makes rendering
+	 * faster instead of just multiplying by zero everywhere. Results are
+	 * exactly the same as with the original CPPN.
+	 *
+	 * @param cppn compiled CPPN
+	 * @param inputMultipliers multipliers for the inputs (may be shorter than the number of inputs)
+	 * @param biasIndex index of the bias input
+	 * @return specialized CPPN, which must be copied before being used by several threads
+	 */
+	public static CompiledTWEANN specializeCPPN(CompiledTWEANN cppn, double[] inputMultipliers, int biasIndex) {
+		int numInputs = cppn.numInputs();
+		boolean[] constantInputs = new boolean[numInputs];
+		double[] inputValues = new double[numInputs];
+		for(int i = 0; i < numInputs; i++) {
+			constantInputs[i] = i < inputMultipliers.length && inputMultipliers[i] == 0;
+		}
+		if(biasIndex < numInputs) {
+			constantInputs[biasIndex] = true;
+			inputValues[biasIndex] = biasIndex < inputMultipliers.length ? BIAS * inputMultipliers[biasIndex] : BIAS;
+		}
+		return CompiledTWEANN.specialized(cppn, constantInputs, inputValues);
+	}
+
+	/**
+	 * Draws a coarse preview of the image created by the CPPN. The CPPN is
+	 * only queried at pixels whose coordinates are both multiples of step,
+	 * and each result colors the step by step block of pixels below and to
+	 * the right of it. A step of 1 produces the full resolution image.
+	 * Repeating with smaller steps gives progressively refined previews.
+	 *
+	 * @param n
+	 *            the network used to process the image
+	 * @param imageWidth
+	 *            width of image
+	 * @param imageHeight
+	 *            height of image
+	 * @param inputMultiples
+	 *            array of multiples indicating whether to turn activation functions on or off
+	 * @param time
+	 *            time input, or -1 if time does not matter
+	 * @param step
+	 *            distance between pixels that are actually computed
+	 * @return buffered image containing image drawn by network
+	 */
+	public static BufferedImage imageFromCPPN(Network n, int imageWidth, int imageHeight, double[] inputMultiples, double time, int step) {
 		BufferedImage image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
-		for (int x = 0; x < imageWidth; x++) {// scans across whole image
-			for (int y = 0; y < imageHeight; y++) {
-				float[] hsb = getHSBFromCPPN(n, x, y, imageWidth, imageHeight, inputMultiples, time);
+		int[] rgb = pixels(image);
+		CompiledTWEANN compiled = CompiledTWEANN.compile(n);
+		if(compiled != null) {
+			CPPNInputPlanes planes = CPPNInputPlanes.get2D(imageWidth, imageHeight);
+			// Turned off inputs, the bias, and nodes that cannot affect the image are folded away
+			compiled = planes.specialize(compiled, time, inputMultiples);
+			if(time == -1 && step == 1) {
+				// Offspring only recompute the nodes their mutations changed (thumbnails, not large images)
+				double[][] outputs = planes.cachedOutputs(compiled, time, inputMultiples);
+				if(outputs != null) {
+					for(int x = 0, sample = 0; x < imageWidth; x++) {
+						for(int y = 0; y < imageHeight; y++, sample++) {
+							rgb[y * imageWidth + x] = rgbFromCPPNOutputs(outputs[HUE_INDEX][sample], outputs[SATURATION_INDEX][sample], outputs[BRIGHTNESS_INDEX][sample]);
+						}
+					}
+					return image;
+				}
+			}
+			// Animation frames only re-evaluate the part of the CPPN that depends on time
+			HoistedTWEANN hoisted = time != -1 && step == 1 ? planes.hoistTime(compiled, inputMultiples) : null;
+			// Columns of the image are split among the threads of the fork-join pool
+			ForkJoinPool.commonPool().invoke(new CPPNImageTile(compiled, hoisted, planes, rgb, 0, imageWidth, imageWidth, imageHeight, inputMultiples, time, step));
+			return image;
+		}
+		for (int x = 0; x < imageWidth; x += step) {// scans across whole image
+			for (int y = 0; y < imageHeight; y += step) {
+				double[] input = get2DObjectCPPNInputs(x, y, imageWidth, imageHeight, time);
+				// Multiplies the inputs of the pictures by the inputMultiples; used to turn on or off the effects in each picture
+				for(int i = 0; i < inputMultiples.length; i++) {
+					input[i] = input[i] * inputMultiples[i];
+				}
+				// Eliminate recurrent activation for consistent images at all resolutions
+				n.flush();
 				// network outputs computed on hsb, not rgb scale because
 				// creates better images
-				Color childColor = Color.getHSBColor(hsb[HUE_INDEX], hsb[SATURATION_INDEX], hsb[BRIGHTNESS_INDEX]);
-				// set back to RGB to draw picture to JFrame
-				image.setRGB(x, y, childColor.getRGB());
+				fillBlock(rgb, imageWidth, imageHeight, x, y, step, rgbFromCPPNOutputs(n.process(input)));
 			}
 		}
 		return image;
 	}
 
+	/**
+	 * Sets all pixels in a square block of an image to the same color,
+	 * clipping the block at the image border.
+	 *
+	 * @param rgb packed pixels of image, in row-major order
+	 * @param imageWidth width of image
+	 * @param imageHeight height of image
+	 * @param x left column of block
+	 * @param y top row of block
+	 * @param size width and height of block
+	 * @param color color of block
+	 */
+	private static void fillBlock(int[] rgb, int imageWidth, int imageHeight, int x, int y, int size, int color) {
+		for (int by = y; by < Math.min(y + size, imageHeight); by++) {
+			for (int bx = x; bx < Math.min(x + size, imageWidth); bx++) {
+				rgb[by * imageWidth + bx] = color;
+			}
+		}
+	}
+
+	/**
+	 * The array of packed pixels that an image stores its data in. Writing
+	 * to the array changes the image directly, which is much faster than
+	 * setRGB, since setRGB converts every pixel through the color model.
+	 * Only for images of TYPE_INT_RGB or TYPE_INT_ARGB, where the array
+	 * holds the values of getRGB in row-major order with no padding
+	 * (TYPE_INT_RGB ignores the alpha byte, so opaque colors can be stored as is).
+	 * Java2D stops accelerating an image once its array has been accessed,
+	 * which does not matter for images that are rendered once and then drawn.
+	 *
+	 * @param image image of TYPE_INT_RGB or TYPE_INT_ARGB
+	 * @return array backing the image
+	 */
+	public static int[] pixels(BufferedImage image) {
+		if(image.getType() != BufferedImage.TYPE_INT_RGB && image.getType() != BufferedImage.TYPE_INT_ARGB) {
+			throw new IllegalArgumentException("Image type " + image.getType() + " is not backed by packed int pixels");
+		}
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+
+	/**
+	 * Same result as Color.HSBtoRGB, which it is copied from, but without
+	 * the call overhead in the inner loops of image rendering. Kept exactly
+	 * identical so that images do not change: every float operation is done
+	 * in the same order as in java.awt.Color.
+	 *
+	 * @param hue hue, where only the fractional part matters
+	 * @param saturation saturation in [0,1]
+	 * @param brightness brightness in [0,1]
+	 * @return opaque packed RGB color
+	 */
+	public static int HSBtoRGB(float hue, float saturation, float brightness) {
+		int r = 0, g = 0, b = 0;
+		if (saturation == 0) {
+			r = g = b = (int) (brightness * 255.0f + 0.5f);
+		} else {
+			float h = (hue - (float) Math.floor(hue)) * 6.0f;
+			float f = h - (float) Math.floor(h);
+			float p = brightness * (1.0f - saturation);
+			float q = brightness * (1.0f - saturation * f);
+			float t = brightness * (1.0f - (saturation * (1.0f - f)));
+			switch ((int) h) {
+			case 0:
+				r = (int) (brightness * 255.0f + 0.5f);
+				g = (int) (t * 255.0f + 0.5f);
+				b = (int) (p * 255.0f + 0.5f);
+				break;
+			case 1:
+				r = (int) (q * 255.0f + 0.5f);
+				g = (int) (brightness * 255.0f + 0.5f);
+				b = (int) (p * 255.0f + 0.5f);
+				break;
+			case 2:
+				r = (int) (p * 255.0f + 0.5f);
+				g = (int) (brightness * 255.0f + 0.5f);
+				b = (int) (t * 255.0f + 0.5f);
+				break;
+			case 3:
+				r = (int) (p * 255.0f + 0.5f);
+				g = (int) (q * 255.0f + 0.5f);
+				b = (int) (brightness * 255.0f + 0.5f);
+				break;
+			case 4:
+				r = (int) (t * 255.0f + 0.5f);
+				g = (int) (p * 255.0f + 0.5f);
+				b = (int) (brightness * 255.0f + 0.5f);
+				break;
+			case 5:
+				r = (int) (brightness * 255.0f + 0.5f);
+				g = (int) (p * 255.0f + 0.5f);
+				b = (int) (q * 255.0f + 0.5f);
+				break;
+			}
+		}
+		return 0xff000000 | (r << 16) | (g << 8) | (b << 0);
+	}
+
+	/**
+	 * Color of a pixel from raw CPPN outputs. Applies the same range
+	 * restriction as rangeRestrictHSB, but without creating an array or
+	 * a Color.
+	 *
+	 * @param hue hue output of CPPN
+	 * @param saturation saturation output of CPPN
+	 * @param brightness brightness output of CPPN
+	 * @return opaque packed RGB color
+	 */
+	public static int rgbFromCPPNOutputs(double hue, double saturation, double brightness) {
+		return HSBtoRGB((float) FullLinearPiecewiseFunction.fullLinear(hue),
+				(float) HalfLinearPiecewiseFunction.halfLinear(saturation),
+				(float) Math.abs(FullLinearPiecewiseFunction.fullLinear(brightness)));
+	}
+
+	/**
+	 * Color of a pixel from the output array of a CPPN
+	 *
+	 * @param outputs CPPN outputs, starting with hue, saturation and brightness
+	 * @return opaque packed RGB color
+	 */
+	public static int rgbFromCPPNOutputs(double[] outputs) {
+		return rgbFromCPPNOutputs(outputs[HUE_INDEX], outputs[SATURATION_INDEX], outputs[BRIGHTNESS_INDEX]);
+	}
+
+	/**
+	 * Renders a range of image columns with a compiled CPPN. Large ranges are
+	 * split in half and rendered in parallel. Every leaf task uses its own copy
+	 * of the compiled network, and every pixel is evaluated from a flushed state,
+	 * so the result is identical no matter how the image is divided up.
+	 * With a step larger than 1, only every step-th column and row is sampled
+	 * and each sample fills a step by step block.
+	 */
+	private static class CPPNImageTile extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		// Tiles with fewer pixels than this are not split any further
+		private static final int MIN_TILE_PIXELS = 4096;
+
+		private final CompiledTWEANN cppn;
+		private final HoistedTWEANN hoisted;
+		private final CPPNInputPlanes planes;
+		private final int[] rgb;
+		private final int startX;
+		private final int endX;
+		private final int imageWidth;
+		private final int imageHeight;
+		private final double[] inputMultiples;
+		private final double time;
+		private final int step;
+
+		/**
+		 * @param cppn compiled CPPN, which is copied rather than used directly
+		 * @param hoisted same CPPN with its time-invariant part precomputed, or null (also copied)
+		 * @param planes geometric inputs for an image of this size
+		 * @param rgb packed RGB pixels of whole image, in row-major order
+		 * @param startX first column to render
+		 * @param endX column after the last one to render
+		 * @param imageWidth width of image
+		 * @param imageHeight height of image
+		 * @param inputMultiples multipliers for CPPN inputs
+		 * @param time time input, or -1 if time is not used
+		 * @param step distance between sampled pixels (startX must be a multiple)
+		 */
+		CPPNImageTile(CompiledTWEANN cppn, HoistedTWEANN hoisted, CPPNInputPlanes planes, int[] rgb, int startX, int endX, int imageWidth, int imageHeight, double[] inputMultiples, double time, int step) {
+			this.cppn = cppn;
+			this.hoisted = hoisted;
+			this.planes = planes;
+			this.rgb = rgb;
+			this.startX = startX;
+			this.endX = endX;
+			this.imageWidth = imageWidth;
+			this.imageHeight = imageHeight;
+			this.inputMultiples = inputMultiples;
+			this.time = time;
+			this.step = step;
+		}
+
+		@Override
+		protected void compute() {
+			int columns = (endX - startX + step - 1) / step;
+			int rows = (imageHeight + step - 1) / step;
+			if(columns > 1 && columns * rows > MIN_TILE_PIXELS) {
+				int middle = startX + (columns / 2) * step;
+				invokeAll(new CPPNImageTile(cppn, hoisted, planes, rgb, startX, middle, imageWidth, imageHeight, inputMultiples, time, step),
+						  new CPPNImageTile(cppn, hoisted, planes, rgb, middle, endX, imageWidth, imageHeight, inputMultiples, time, step));
+				return;
+			}
+			CompiledTWEANN network = new CompiledTWEANN(cppn);
+			HoistedTWEANN frame = hoisted == null ? null : new HoistedTWEANN(hoisted);
+			// Evaluate a whole column of pixels at a time
+			double[][] inputColumns = new double[network.numInputs()][rows];
+			double[][] outputColumns = new double[network.effectiveNumOutputs()][rows];
+			for (int x = startX; x < endX; x += step) {
+				if (frame != null) { // step is 1
+					frame.evaluate(x * imageHeight, rows, planes.timeInput(time, inputMultiples), outputColumns);
+				} else {
+					planes.fillInputColumns(x * imageHeight, step, rows, time, inputMultiples, inputColumns);
+					network.processBatch(inputColumns, outputColumns);
+				}
+				double[] hues = outputColumns[HUE_INDEX];
+				double[] saturations = outputColumns[SATURATION_INDEX];
+				double[] brightnesses = outputColumns[BRIGHTNESS_INDEX];
+				for (int row = 0; row < rows; row++) {
+					int color = rgbFromCPPNOutputs(hues[row], saturations[row], brightnesses[row]);
+					// Fill the block of pixels this sample stands for
+					for (int y = row * step; y < Math.min((row + 1) * step, imageHeight); y++) {
+						for (int bx = x; bx < Math.min(x + step, endX); bx++) {
+							rgb[y * imageWidth + bx] = color;
+						}
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * Returns adjusted image based on manipulation of an input image with a CPPN. To add
 	 * more variation, each pixel is manipulated based on the average HSB of its surrounding pixels.
@@ -125,59 +428,146 @@ public class GraphicsUtil {
 	 * @return BufferedImage representation of adjusted image
 	 */
 	public static BufferedImage remixedImageFromCPPN(Network n, BufferedImage img, double[] inputMultiples, int remixWindow) {
+		return remixedImageFromCPPN(n, new HSBPlanes(img), inputMultiples, remixWindow);
+	}
+
+	/**
+	 * Same as remixing the image directly, but with the HSB planes of the
+	 * source image computed in advance, which saves time when the same
+	 * image is remixed by several CPPNs. The average HSB of each window is
+	 * looked up in the summed-area tables of the planes, so the time per pixel
+	 * does not depend on the size of the window.
+	 * 
+	 * @param n CPPN
+	 * @param source HSB planes of input image being "remixed"
+	 * @param inputMultiples array of multiples indicating whether to turn activation functions on or off
+	 * @param remixWindow size of window being adjusted
+	 * @return BufferedImage representation of adjusted image
+	 */
+	public static BufferedImage remixedImageFromCPPN(Network n, HSBPlanes source, double[] inputMultiples, int remixWindow) {
 		//initialize new image
-		BufferedImage remixedImage = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB);
+		BufferedImage remixedImage = new BufferedImage(source.width, source.height, BufferedImage.TYPE_INT_RGB);
+		int[] remixedPixels = pixels(remixedImage);
 		int loopWindow = remixWindow/2; //ensures that pixel is in center
+		CPPNInputPlanes geometry = CPPNInputPlanes.get2D(source.width, source.height);
+		CompiledTWEANN compiled = CompiledTWEANN.compile(n);
+		if(compiled != null) {
+			if(compiled.numInputs() == NUM_REMIX_INPUTS) {
+				// Turned off inputs, the bias, and nodes that cannot affect the image are folded away
+				compiled = specializeCPPN(compiled, inputMultiples, NUM_REMIX_INPUTS - 1);
+			}
+			// Columns of the image are split among the threads of the fork-join pool
+			ForkJoinPool.commonPool().invoke(new RemixTile(compiled, source, geometry, remixedPixels, 0, source.width, loopWindow, inputMultiples));
+			return remixedImage;
+		}
+		double[] remixedInputs = new double[NUM_REMIX_INPUTS];
 
-		float[][][] sourceHSB = new float[img.getWidth()][img.getHeight()][];
-
-		for(int x = 0; x < img.getWidth(); x++) {
-			for(int y = 0; y < img.getHeight(); y++) {
-				//get HSB from input image
-				float totalH = 0;
-				float totalS = 0;
-				float totalB = 0;
-				int count = 0;
-				// loop through all pixels in surrounding window of current pixel to add up the 
-				// average hue, saturation, and brightness. The average HSB is taken and applied
-				// to the remixed image
-				for(int windowX = x-loopWindow; windowX < x + loopWindow; windowX++) {
-					if(windowX >= 0 && windowX < img.getWidth()) { //if current x-coordinate is within image bounds
-						for(int windowY = y-loopWindow; windowY < y + loopWindow; windowY++) {
-							if(windowY >= 0 && windowY < img.getHeight()) { //if current y-coordinate is within image bounds
-								if(windowX >= 0 && windowX < img.getWidth()) {
-									if(sourceHSB[windowX][windowY] == null) sourceHSB[windowX][windowY] = getHSBFromImage(img, windowX, windowY);
-									totalH += sourceHSB[windowX][windowY][HUE_INDEX];
-									totalS += sourceHSB[windowX][windowY][SATURATION_INDEX];
-									totalB += sourceHSB[windowX][windowY][BRIGHTNESS_INDEX];
-
-									count++;
-								}
-							}
-						}
-					}
+		for(int x = 0; x < source.width; x++) {
+			for(int y = 0; y < source.height; y++) {
+				// the average hue, saturation, and brightness of the surrounding window
+				// (clipped to the image) are applied to the remixed image
+				int count = source.windowCount(x - loopWindow, y - loopWindow, x + loopWindow, y + loopWindow);
+				float avgH = (float) (source.windowSum(HUE_INDEX, x - loopWindow, y - loopWindow, x + loopWindow, y + loopWindow) / count);
+				float avgS = (float) (source.windowSum(SATURATION_INDEX, x - loopWindow, y - loopWindow, x + loopWindow, y + loopWindow) / count);
+				float avgB = (float) (source.windowSum(BRIGHTNESS_INDEX, x - loopWindow, y - loopWindow, x + loopWindow, y + loopWindow) / count);
+				//scaled point for CPPN input
+				int sample = x * source.height + y;
+				for(int i = 0; i < NUM_REMIX_GEOMETRIC_INPUTS; i++) {
+					remixedInputs[i] = geometry.input(i, sample);
 				}
-				//calculate average HSB after querying surrounding pixels
-				float avgH = totalH/count;
-				float avgS = totalS/count;
-				float avgB = totalB/count;
-				float[] queriedHSB = new float[]{avgH, avgS, avgB};
-				//scale point for CPPN input
-				ILocated2D scaled = CartesianGeometricUtilities.centerAndScale(new Tuple2D(x, y), img.getWidth(), img.getHeight());
-				double[] remixedInputs = { scaled.getX(), scaled.getY(), scaled.distance(new Tuple2D(0, 0)) * SQRT2, queriedHSB[HUE_INDEX], queriedHSB[SATURATION_INDEX], queriedHSB[BRIGHTNESS_INDEX], BIAS };
+				remixedInputs[NUM_REMIX_GEOMETRIC_INPUTS + HUE_INDEX] = avgH;
+				remixedInputs[NUM_REMIX_GEOMETRIC_INPUTS + SATURATION_INDEX] = avgS;
+				remixedInputs[NUM_REMIX_GEOMETRIC_INPUTS + BRIGHTNESS_INDEX] = avgB;
+				remixedInputs[NUM_REMIX_INPUTS - 1] = BIAS;
 				// Multiplies the inputs of the pictures by the inputMultiples; used to turn on or off the effects in each picture
 				for(int i = 0; i < inputMultiples.length; i++) {
 					remixedInputs[i] = remixedInputs[i] * inputMultiples[i];
 				}			
 				n.flush(); // erase recurrent activation
-				float[] hsb = rangeRestrictHSB(n.process(remixedInputs));
-				Color childColor = Color.getHSBColor(hsb[HUE_INDEX], hsb[SATURATION_INDEX], hsb[BRIGHTNESS_INDEX]);
 				// set back to RGB to draw picture to JFrame
-				remixedImage.setRGB(x, y, childColor.getRGB());
+				remixedPixels[y * source.width + x] = rgbFromCPPNOutputs(n.process(remixedInputs));
 			}
 		}
 		return remixedImage;
 	}
+
+	/**
+	 * Remixes a range of image columns with a compiled CPPN, in the same way
+	 * CPPNImageTile renders images: large ranges are split in half and
+	 * remixed in parallel, and every leaf task evaluates whole columns of
+	 * pixels at once with its own copy of the compiled network.
+	 */
+	private static class RemixTile extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		// Tiles with fewer pixels than this are not split any further
+		private static final int MIN_TILE_PIXELS = 4096;
+
+		private final CompiledTWEANN cppn;
+		private final HSBPlanes source;
+		private final CPPNInputPlanes geometry;
+		private final int[] rgb;
+		private final int startX;
+		private final int endX;
+		private final int loopWindow;
+		private final double[] inputMultiples;
+
+		/**
+		 * @param cppn compiled CPPN, which is copied rather than used directly
+		 * @param source HSB planes of image being remixed
+		 * @param geometry geometric inputs for an image of the same size
+		 * @param rgb packed RGB pixels of whole remixed image, in row-major order
+		 * @param startX first column to remix
+		 * @param endX column after the last one to remix
+		 * @param loopWindow half of the size of the averaged window
+		 * @param inputMultiples multipliers for CPPN inputs
+		 */
+		RemixTile(CompiledTWEANN cppn, HSBPlanes source, CPPNInputPlanes geometry, int[] rgb, int startX, int endX, int loopWindow, double[] inputMultiples) {
+			this.cppn = cppn;
+			this.source = source;
+			this.geometry = geometry;
+			this.rgb = rgb;
+			this.startX = startX;
+			this.endX = endX;
+			this.loopWindow = loopWindow;
+			this.inputMultiples = inputMultiples;
+		}
+
+		@Override
+		protected void compute() {
+			int height = source.height;
+			if(endX - startX > 1 && (endX - startX) * height > MIN_TILE_PIXELS) {
+				int middle = (startX + endX) / 2;
+				invokeAll(new RemixTile(cppn, source, geometry, rgb, startX, middle, loopWindow, inputMultiples),
+						  new RemixTile(cppn, source, geometry, rgb, middle, endX, loopWindow, inputMultiples));
+				return;
+			}
+			CompiledTWEANN network = new CompiledTWEANN(cppn);
+			double[][] inputColumns = new double[NUM_REMIX_INPUTS][height];
+			double[][] outputColumns = new double[network.effectiveNumOutputs()][height];
+			double[] multipliers = new double[NUM_REMIX_INPUTS];
+			for(int i = 0; i < NUM_REMIX_INPUTS; i++) {
+				multipliers[i] = i < inputMultiples.length ? inputMultiples[i] : 1.0;
+			}
+			Arrays.fill(inputColumns[NUM_REMIX_INPUTS - 1], BIAS * multipliers[NUM_REMIX_INPUTS - 1]);
+			for(int x = startX; x < endX; x++) {
+				geometry.fillGeometricInputs(x * height, height, inputColumns);
+				for(int y = 0; y < height; y++) {
+					for(int i = 0; i < NUM_REMIX_GEOMETRIC_INPUTS; i++) {
+						inputColumns[i][y] = inputColumns[i][y] * multipliers[i];
+					}
+					int count = source.windowCount(x - loopWindow, y - loopWindow, x + loopWindow, y + loopWindow);
+					for(int c = 0; c < NUM_HSB; c++) {
+						float average = (float) (source.windowSum(c, x - loopWindow, y - loopWindow, x + loopWindow, y + loopWindow) / count);
+						inputColumns[NUM_REMIX_GEOMETRIC_INPUTS + c][y] = average * multipliers[NUM_REMIX_GEOMETRIC_INPUTS + c];
+					}
+				}
+				network.processBatch(inputColumns, outputColumns);
+				for(int y = 0; y < height; y++) {
+					rgb[y * source.width + x] = rgbFromCPPNOutputs(outputColumns[HUE_INDEX][y], outputColumns[SATURATION_INDEX][y], outputColumns[BRIGHTNESS_INDEX][y]);
+				}
+			}
+		}
+	}
 	
 	/**
 	 * Alternative approach to remixing an image from a CPPN. This version, instead of averaging all HSBs across a window, 
@@ -187,42 +577,42 @@ public class GraphicsUtil {
 	 * slowed the interface down a lot. Keeping it here for future reference.
 	 * 
 	 * @param n CPPN
-	 * @param img input image being "remixed"
+	 * @param source HSB planes of input image being "remixed"
 	 * @param inputMultiples array of multiples indicating whether to turn activation functions on or off
 	 * @param remixWindow size of window being adjusted
 	 * @param remixSamplesPerDimension number of samples being taken in the window
 	 * @return BufferedImage representation of adjusted image
 	 */
-//	public static BufferedImage remixedImageFromCPPN(Network n, BufferedImage img, double[] inputMultiples, int remixWindow, int remixSamplesPerDimension) {
+//	public static BufferedImage remixedImageFromCPPN(Network n, HSBPlanes source, double[] inputMultiples, int remixWindow, int remixSamplesPerDimension) {
 //		int spaceBetweenPixels = remixWindow/(remixSamplesPerDimension-1);
 //		int loopWindow = remixWindow/2; //ensures that pixel is in center
-//		BufferedImage remixedImage = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB);
-//		float[][][] sourceHSB = new float[img.getWidth()][img.getHeight()][]; //use 3d array to keep track of calculated inputs at each coordinate
-//		
+//		BufferedImage remixedImage = new BufferedImage(source.width, source.height, BufferedImage.TYPE_INT_RGB);
+//		int[] remixedPixels = pixels(remixedImage);
+//		CPPNInputPlanes geometry = CPPNInputPlanes.get2D(source.width, source.height);
+//		double[] inputs = new double[4+remixSamplesPerDimension*remixSamplesPerDimension*NUM_HSB];
 //		
-//		for(int x = 0; x < img.getWidth(); x++) {
-//			for(int y = 0; y < img.getHeight(); y++) { //loop through all pixels of image
+//		for(int x = 0; x < source.width; x++) {
+//			for(int y = 0; y < source.height; y++) { //loop through all pixels of image
 //				
-//				double[] inputs = new double[4+remixSamplesPerDimension*remixSamplesPerDimension*NUM_HSB];
-//				ILocated2D scaled = CartesianGeometricUtilities.centerAndScale(new Tuple2D(x, y), img.getWidth(), img.getHeight());
-//				inputs[0] = scaled.getX();
-//				inputs[1] = scaled.getY();
-//				inputs[2] = scaled.distance(new Tuple2D(0, 0)) * SQRT2;
+//				java.util.Arrays.fill(inputs, 0); // samples outside the image stay 0
+//				int sample = x * source.height + y;
+//				inputs[0] = geometry.input(0, sample);
+//				inputs[1] = geometry.input(1, sample);
+//				inputs[2] = geometry.input(2, sample);
 //				
 //				int windowX = x - loopWindow;
 //				int windowY = y - loopWindow;
 //				for(int i = 0; i < remixSamplesPerDimension; i++) {
 //					int currentX = windowX + i*spaceBetweenPixels;
-//					if(currentX >= 0 && currentX < img.getWidth()) { //if current location is within bounds of image
+//					if(currentX >= 0 && currentX < source.width) { //if current location is within bounds of image
 //						for(int j = 0; j < remixSamplesPerDimension; j++) {
 //							int currentY = windowY + j*spaceBetweenPixels;
-//							if(currentY >= 0 && currentY < img.getHeight()) { //if current location is within bounds of image
-//								if(sourceHSB[currentX][currentY] == null) sourceHSB[currentX][currentY] = getHSBFromImage(img, currentX, currentY);
+//							if(currentY >= 0 && currentY < source.height) { //if current location is within bounds of image
 //								int inputIndex = 3 + (i*remixSamplesPerDimension) + (j*NUM_HSB);
 //								//save HSB values from current point to respective indexes in inputs array
-//								inputs[inputIndex+HUE_INDEX] = sourceHSB[currentX][currentY][HUE_INDEX];
-//								inputs[inputIndex+SATURATION_INDEX] = sourceHSB[currentX][currentY][SATURATION_INDEX];
-//								inputs[inputIndex+BRIGHTNESS_INDEX] = sourceHSB[currentX][currentY][BRIGHTNESS_INDEX];
+//								inputs[inputIndex+HUE_INDEX] = source.get(HUE_INDEX, currentX, currentY);
+//								inputs[inputIndex+SATURATION_INDEX] = source.get(SATURATION_INDEX, currentX, currentY);
+//								inputs[inputIndex+BRIGHTNESS_INDEX] = source.get(BRIGHTNESS_INDEX, currentX, currentY);
 //							}
 //						}
 //					}
@@ -237,36 +627,13 @@ public class GraphicsUtil {
 //					inputs[i] = inputs[i] * inputMultiples[i];
 //				}			
 //				n.flush(); // erase recurrent activation
-//				float[] hsb = rangeRestrictHSB(n.process(inputs));
-//				Color childColor = Color.getHSBColor(hsb[HUE_INDEX], hsb[SATURATION_INDEX], hsb[BRIGHTNESS_INDEX]);
 //				// set back to RGB to draw picture to JFrame
-//				remixedImage.setRGB(x, y, childColor.getRGB());
+//				remixedPixels[y * source.width + x] = rgbFromCPPNOutputs(n.process(inputs));
 //			}
 //		}
 //		return remixedImage;
 //	}
 
-	/**
-	 * Accesses HSB at a specific pixel in a BufferedImage. Does so by accessing the 
-	 * RGB first and then creating a Color class instance to convert the components of 
-	 * the RGB to HSB. Creates an array of floats that numerically represent the hue,
-	 * saturation, and brightness of the pixel. 
-	 * 
-	 * @param img Image containing pixel
-	 * @param x x-coordinate of pixel
-	 * @param y y-coordinate of pixel
-	 * @return array of floats representing hue, saturation, and brightness of pixel
-	 */
-	private static float[] getHSBFromImage(BufferedImage img, int x, int y) {
-		int RGB = img.getRGB(x, y);
-		Color c = new Color(RGB, true);
-		int r = c.getRed();
-		int g = c.getGreen();
-		int b = c.getBlue();
-		float[] HSB = Color.RGBtoHSB(r, g, b, null);
-		return HSB;
-	}
-
 	/**
 	 * Gets HSB outputs from the CPPN in question
 	 *
@@ -370,11 +737,7 @@ public class GraphicsUtil {
 	 */
 	public static BufferedImage solidColorImage(Color c, int width, int height) {
 		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-		for (int x = 0; x < width; x++) {// scans across whole image
-			for (int y = 0; y < height; y++) {
-				image.setRGB(x, y, c.getRGB());
-			}
-		}
+		Arrays.fill(pixels(image), c.getRGB());
 		return image;
 	}
 
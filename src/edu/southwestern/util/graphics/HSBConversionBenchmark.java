@@ -0,0 +1,124 @@
+package edu.southwestern.util.graphics;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import edu.southwestern.util.random.RandomNumbers;
+
+/**
+ * Confirms that GraphicsUtil.HSBtoRGB gives exactly the same colors as
+ * Color.HSBtoRGB, and that GraphicsUtil.rgbFromCPPNOutputs gives the same
+ * colors as the old conversion through rangeRestrictHSB and
+ * Color.getHSBColor. Then compares the speed of filling an image the old
+ * way (a float array and a Color per pixel, written with setRGB) with
+ * writing packed colors straight into the array of the image.
+ *
+ * Run with a command line parameter to set the number of timed rounds.
+ *
+ * @author Jacob Schrum
+ */
+public class HSBConversionBenchmark {
+
+	public static final int IMAGE_SIZE = 512;
+	// Grid steps for the exhaustive comparison
+	public static final int HUE_STEPS = 2000;
+	public static final int SATURATION_BRIGHTNESS_STEPS = 256;
+	public static final int RANDOM_SAMPLES = 10000000;
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+		long checked = 0;
+		// Grid covering the whole range that CPPN outputs are restricted to, including both ends
+		for(int h = 0; h <= HUE_STEPS; h++) {
+			float hue = -1.0f + 2.0f * h / HUE_STEPS;
+			for(int s = 0; s <= SATURATION_BRIGHTNESS_STEPS; s++) {
+				float saturation = s / (float) SATURATION_BRIGHTNESS_STEPS;
+				for(int b = 0; b <= SATURATION_BRIGHTNESS_STEPS; b++) {
+					check(hue, saturation, b / (float) SATURATION_BRIGHTNESS_STEPS);
+					checked++;
+				}
+			}
+		}
+		// Arbitrary floats, including values that fall between grid points
+		RandomNumbers.reset(0);
+		for(int i = 0; i < RANDOM_SAMPLES; i++) {
+			check((float) RandomNumbers.fullSmallRand(), (float) RandomNumbers.randomGenerator.nextDouble(), (float) RandomNumbers.randomGenerator.nextDouble());
+			checked++;
+		}
+		System.out.println("GraphicsUtil.HSBtoRGB matches Color.HSBtoRGB on " + checked + " colors");
+
+		double[] outputs = new double[GraphicsUtil.NUM_HSB];
+		for(int i = 0; i < RANDOM_SAMPLES; i++) {
+			for(int j = 0; j < outputs.length; j++) {
+				outputs[j] = RandomNumbers.fullSmallRand() * 3;
+			}
+			float[] hsb = GraphicsUtil.rangeRestrictHSB(outputs);
+			int expected = Color.getHSBColor(hsb[GraphicsUtil.HUE_INDEX], hsb[GraphicsUtil.SATURATION_INDEX], hsb[GraphicsUtil.BRIGHTNESS_INDEX]).getRGB();
+			int actual = GraphicsUtil.rgbFromCPPNOutputs(outputs);
+			if(expected != actual) {
+				throw new IllegalStateException("rgbFromCPPNOutputs differs on " + outputs[0] + "," + outputs[1] + "," + outputs[2] + ": " + Integer.toHexString(expected) + " vs " + Integer.toHexString(actual));
+			}
+		}
+		System.out.println("GraphicsUtil.rgbFromCPPNOutputs matches the old conversion on " + RANDOM_SAMPLES + " outputs");
+
+		// Same CPPN outputs for every pixel in both versions
+		double[][] pixelOutputs = new double[IMAGE_SIZE * IMAGE_SIZE][GraphicsUtil.NUM_HSB];
+		for(double[] pixel : pixelOutputs) {
+			for(int j = 0; j < pixel.length; j++) {
+				pixel[j] = RandomNumbers.fullSmallRand() * 3;
+			}
+		}
+		// Twice: the first pass warms up the JIT
+		for(int pass = 0; pass < 2; pass++) {
+			BufferedImage oldImage = null;
+			long start = System.nanoTime();
+			for(int r = 0; r < rounds; r++) {
+				oldImage = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_RGB);
+				for(int y = 0; y < IMAGE_SIZE; y++) {
+					for(int x = 0; x < IMAGE_SIZE; x++) {
+						float[] hsb = GraphicsUtil.rangeRestrictHSB(pixelOutputs[y * IMAGE_SIZE + x]);
+						Color childColor = Color.getHSBColor(hsb[GraphicsUtil.HUE_INDEX], hsb[GraphicsUtil.SATURATION_INDEX], hsb[GraphicsUtil.BRIGHTNESS_INDEX]);
+						oldImage.setRGB(x, y, childColor.getRGB());
+					}
+				}
+			}
+			long oldTime = System.nanoTime() - start;
+
+			BufferedImage newImage = null;
+			start = System.nanoTime();
+			for(int r = 0; r < rounds; r++) {
+				newImage = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_RGB);
+				int[] pixels = GraphicsUtil.pixels(newImage);
+				for(int i = 0; i < pixels.length; i++) {
+					pixels[i] = GraphicsUtil.rgbFromCPPNOutputs(pixelOutputs[i]);
+				}
+			}
+			long newTime = System.nanoTime() - start;
+
+			for(int y = 0; y < IMAGE_SIZE; y++) {
+				for(int x = 0; x < IMAGE_SIZE; x++) {
+					if(oldImage.getRGB(x, y) != newImage.getRGB(x, y)) {
+						throw new IllegalStateException("Images differ at " + x + "," + y);
+					}
+				}
+			}
+			if(pass == 1) {
+				double pixels = (double) rounds * IMAGE_SIZE * IMAGE_SIZE;
+				System.out.println("Color and setRGB: " + (oldTime / pixels) + " ns per pixel");
+				System.out.println("Direct writes:    " + (newTime / pixels) + " ns per pixel");
+			}
+		}
+	}
+
+	/**
+	 * Throws an exception if the two conversions differ
+	 */
+	private static void check(float hue, float saturation, float brightness) {
+		int expected = Color.HSBtoRGB(hue, saturation, brightness);
+		int actual = GraphicsUtil.HSBtoRGB(hue, saturation, brightness);
+		if(expected != actual) {
+			throw new IllegalStateException("HSBtoRGB differs on " + hue + "," + saturation + "," + brightness + ": " + Integer.toHexString(expected) + " vs " + Integer.toHexString(actual));
+		}
+	}
+}
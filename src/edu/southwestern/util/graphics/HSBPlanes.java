@@ -0,0 +1,115 @@
+package edu.southwestern.util.graphics;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+/**
+ * Hue, saturation and brightness of every pixel of a source image, along
+ * with summed-area tables of each, so that the average of any rectangular
+ * window can be computed with four lookups no matter how big the window
+ * is. Used to remix images, where every output pixel needs the average
+ * color of a window around it, and the same source image is remixed by
+ * many CPPNs. The planes are never modified after construction, so they
+ * can be read by several threads at once.
+ *
+ * Each plane stores pixel (x,y) at index y*width + x. Each summed-area
+ * table has an extra row and column of zeros, and entry y*(width+1) + x
+ * is the sum over all pixels above and to the left of (x,y). The tables
+ * are sums of doubles, so window averages are at least as accurate as
+ * adding up the floats of the window one by one.
+ *
+ * @author Jacob Schrum
+ */
+public class HSBPlanes {
+
+	public final int width;
+	public final int height;
+	// planes[channel][y*width + x], with channels indexed like GraphicsUtil.HUE_INDEX
+	private final float[][] planes;
+	// sums[channel][y*(width+1) + x]
+	private final double[][] sums;
+
+	/**
+	 * Convert a source image into HSB planes
+	 *
+	 * @param img source image of any type
+	 */
+	public HSBPlanes(BufferedImage img) {
+		this.width = img.getWidth();
+		this.height = img.getHeight();
+		this.planes = new float[GraphicsUtil.NUM_HSB][width * height];
+		this.sums = new double[GraphicsUtil.NUM_HSB][(width + 1) * (height + 1)];
+		int[] rgb = img.getRGB(0, 0, width, height, null, 0, width);
+		float[] hsb = new float[GraphicsUtil.NUM_HSB];
+		for (int i = 0; i < rgb.length; i++) {
+			// Same conversion as always used by remixing, but without a Color per pixel
+			Color.RGBtoHSB((rgb[i] >> 16) & 0xFF, (rgb[i] >> 8) & 0xFF, rgb[i] & 0xFF, hsb);
+			for (int c = 0; c < GraphicsUtil.NUM_HSB; c++) {
+				planes[c][i] = hsb[c];
+			}
+		}
+		int stride = width + 1;
+		for (int c = 0; c < GraphicsUtil.NUM_HSB; c++) {
+			float[] plane = planes[c];
+			double[] sum = sums[c];
+			for (int y = 0; y < height; y++) {
+				double row = 0;
+				for (int x = 0; x < width; x++) {
+					row += plane[y * width + x];
+					sum[(y + 1) * stride + x + 1] = sum[y * stride + x + 1] + row;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Value of one channel at one pixel
+	 *
+	 * @param channel GraphicsUtil.HUE_INDEX, SATURATION_INDEX or BRIGHTNESS_INDEX
+	 * @param x x-coordinate of pixel
+	 * @param y y-coordinate of pixel
+	 * @return value in [0,1]
+	 */
+	public float get(int channel, int x, int y) {
+		return planes[channel][y * width + x];
+	}
+
+	/**
+	 * Number of pixels of a window that are inside the image
+	 *
+	 * @param startX first column of window
+	 * @param startY first row of window
+	 * @param endX column after the last one of window
+	 * @param endY row after the last one of window
+	 * @return number of pixels in the window after clipping it to the image
+	 */
+	public int windowCount(int startX, int startY, int endX, int endY) {
+		int columns = Math.min(endX, width) - Math.max(startX, 0);
+		int rows = Math.min(endY, height) - Math.max(startY, 0);
+		return columns <= 0 || rows <= 0 ? 0 : columns * rows;
+	}
+
+	/**
+	 * Sum of one channel over a window, ignoring the parts of the window
+	 * that are outside the image.
+	 *
+	 * @param channel GraphicsUtil.HUE_INDEX, SATURATION_INDEX or BRIGHTNESS_INDEX
+	 * @param startX first column of window
+	 * @param startY first row of window
+	 * @param endX column after the last one of window
+	 * @param endY row after the last one of window
+	 * @return sum over pixels of window that are in the image
+	 */
+	public double windowSum(int channel, int startX, int startY, int endX, int endY) {
+		int x0 = Math.max(startX, 0);
+		int y0 = Math.max(startY, 0);
+		int x1 = Math.min(endX, width);
+		int y1 = Math.min(endY, height);
+		if (x1 <= x0 || y1 <= y0) {
+			return 0;
+		}
+		double[] sum = sums[channel];
+		int stride = width + 1;
+		return sum[y1 * stride + x1] - sum[y0 * stride + x1] - sum[y1 * stride + x0] + sum[y0 * stride + x0];
+	}
+}
@@ -0,0 +1,89 @@
+package edu.southwestern.util.graphics;
+
+import java.util.Arrays;
+
+import edu.southwestern.MMNEAT.MMNEAT;
+import edu.southwestern.evolution.EvolutionaryHistory;
+import edu.southwestern.evolution.genotypes.TWEANNGenotype;
+import edu.southwestern.networks.CompiledTWEANN;
+import edu.southwestern.parameters.Parameters;
+import edu.southwestern.util.random.RandomNumbers;
+
+/**
+ * Confirms that CPPNs specialized for a set of input multipliers (see
+ * GraphicsUtil.specializeCPPN) give exactly the same outputs as the
+ * original CPPNs for every pixel, for every combination of turned off
+ * inputs. Then compares how long rendering takes with each, and how many
+ * nodes and links specialization removes. The CPPNs are evolved from
+ * fully connected networks with many mutations, like those of Picbreeder.
+ *
+ * Run with a command line parameter to set the number of mutations.
+ *
+ * @author Jacob Schrum
+ */
+public class InputSpecializationBenchmark {
+
+	public static final int IMAGE_SIZE = 200;
+	public static final int TRIALS = 20;
+	// Inputs are x, y, distance from center, and bias
+	public static final int NUM_INPUTS = 4;
+	public static final int NUM_GEOMETRIC_INPUTS = 3;
+
+	public static void main(String[] args) {
+		int mutations = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+		Parameters.initializeParameterCollections(new String[] {"io:false","netio:false","allowMultipleFunctions:true",
+				"includeSigmoidFunction:true","includeGaussFunction:true","includeSineFunction:true","includeAbsValFunction:true",
+				"includeHalfLinearPiecewiseFunction:true","includeCosineFunction:true","includeSiLFunction:true"});
+		MMNEAT.loadClasses();
+		RandomNumbers.reset(0);
+		CPPNInputPlanes planes = CPPNInputPlanes.get2D(IMAGE_SIZE, IMAGE_SIZE);
+		int samples = planes.numSamples();
+		double[][] inputColumns = new double[NUM_INPUTS][samples];
+		double[][] expected = new double[GraphicsUtil.NUM_HSB][samples];
+		double[][] actual = new double[GraphicsUtil.NUM_HSB][samples];
+		long originalTime = 0;
+		long specializedTime = 0;
+		long originalSize = 0;
+		long specializedSize = 0;
+		int tested = 0;
+		for (int trial = 0; trial < TRIALS; trial++) {
+			TWEANNGenotype g = new TWEANNGenotype(NUM_INPUTS, GraphicsUtil.NUM_HSB, 0);
+			EvolutionaryHistory.initArchetype(0, null, (TWEANNGenotype) g.copy());
+			for (int i = 0; i < mutations; i++) {
+				g.mutate();
+			}
+			CompiledTWEANN original = CompiledTWEANN.compile(g.getPhenotype());
+			// Every combination of geometric inputs turned on and off
+			for (int mask = 0; mask < (1 << NUM_GEOMETRIC_INPUTS); mask++) {
+				double[] inputMultipliers = new double[NUM_INPUTS];
+				Arrays.fill(inputMultipliers, 1.0);
+				for (int i = 0; i < NUM_GEOMETRIC_INPUTS; i++) {
+					if ((mask & (1 << i)) != 0) {
+						inputMultipliers[i] = 0.0;
+					}
+				}
+				CompiledTWEANN specialized = new CompiledTWEANN(planes.specialize(original, -1, inputMultipliers));
+				planes.fillInputColumns(0, 1, samples, -1, inputMultipliers, inputColumns);
+				long start = System.nanoTime();
+				original.processBatch(inputColumns, expected);
+				originalTime += System.nanoTime() - start;
+				start = System.nanoTime();
+				specialized.processBatch(inputColumns, actual);
+				specializedTime += System.nanoTime() - start;
+				for (int o = 0; o < GraphicsUtil.NUM_HSB; o++) {
+					if (!Arrays.equals(expected[o], actual[o])) {
+						System.out.println("Mismatch in trial " + trial + " with multipliers " + Arrays.toString(inputMultipliers) + " output " + o);
+						System.exit(1);
+					}
+				}
+				originalSize += original.numNodes() + original.numLinks();
+				specializedSize += specialized.numNodes() + specialized.numLinks();
+				tested++;
+			}
+		}
+		System.out.println(tested + " specialized CPPNs match the originals");
+		System.out.println("Nodes and links: " + originalSize + " before, " + specializedSize + " after");
+		System.out.println("Original:    " + (originalTime / 1000000) + " ms");
+		System.out.println("Specialized: " + (specializedTime / 1000000) + " ms");
+	}
+}
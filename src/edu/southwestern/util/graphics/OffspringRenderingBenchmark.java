@@ -0,0 +1,105 @@
+package edu.southwestern.util.graphics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.southwestern.MMNEAT.MMNEAT;
+import edu.southwestern.evolution.EvolutionaryHistory;
+import edu.southwestern.evolution.genotypes.TWEANNGenotype;
+import edu.southwestern.networks.ActivationPlaneCache;
+import edu.southwestern.networks.CompiledTWEANN;
+import edu.southwestern.parameters.Parameters;
+import edu.southwestern.util.random.RandomNumbers;
+
+/**
+ * Simulates interactive evolution of images: each generation, a few
+ * individuals are selected, and the rest of the population is replaced by
+ * mutated copies of them, like SelectiveBreedingEA does. Every individual
+ * is rendered both from scratch and the way GraphicsUtil.imageFromCPPN
+ * renders it: specialized for its input multipliers, then evaluated with
+ * ActivationPlaneCache, which only recomputes the nodes that differ from
+ * networks rendered before. Confirms
+ * that the outputs are exactly the same, and compares the times.
+ *
+ * Run with a command line parameter to set the number of generations.
+ *
+ * @author Jacob Schrum
+ */
+public class OffspringRenderingBenchmark {
+
+	public static final int IMAGE_SIZE = 200;
+	public static final int POPULATION_SIZE = 16;
+	public static final int SELECTED = 2;
+	// Mutations of the initial population, so networks have some hidden structure
+	public static final int INITIAL_MUTATIONS = 40;
+	// Inputs are x, y, distance from center, and bias
+	public static final int NUM_INPUTS = 4;
+
+	public static void main(String[] args) {
+		int generations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		Parameters.initializeParameterCollections(new String[] {"io:false","netio:false","allowMultipleFunctions:true",
+				"includeSigmoidFunction:true","includeGaussFunction:true","includeSineFunction:true","includeAbsValFunction:true",
+				"includeHalfLinearPiecewiseFunction:true","includeCosineFunction:true","includeSiLFunction:true"});
+		MMNEAT.loadClasses();
+		RandomNumbers.reset(0);
+		CPPNInputPlanes planes = CPPNInputPlanes.get2D(IMAGE_SIZE, IMAGE_SIZE);
+		double[] inputMultipliers = new double[NUM_INPUTS];
+		Arrays.fill(inputMultipliers, 1.0);
+		int samples = planes.numSamples();
+		double[][] inputColumns = new double[NUM_INPUTS][samples];
+		planes.fillInputColumns(0, 1, samples, -1, inputMultipliers, inputColumns);
+		double[][] expected = new double[GraphicsUtil.NUM_HSB][samples];
+
+		TWEANNGenotype archetype = new TWEANNGenotype(NUM_INPUTS, GraphicsUtil.NUM_HSB, 0);
+		EvolutionaryHistory.initArchetype(0, null, (TWEANNGenotype) archetype.copy());
+		ArrayList<TWEANNGenotype> population = new ArrayList<TWEANNGenotype>();
+		for (int i = 0; i < POPULATION_SIZE; i++) {
+			TWEANNGenotype g = (TWEANNGenotype) archetype.copy();
+			for (int m = 0; m < INITIAL_MUTATIONS; m++) {
+				g.mutate();
+			}
+			population.add(g);
+		}
+		ActivationPlaneCache.clear();
+		long scratchTime = 0;
+		long cachedTime = 0;
+		int rendered = 0;
+		int uncached = 0;
+		for (int generation = 0; generation <= generations; generation++) {
+			if (generation > 0) {
+				ArrayList<TWEANNGenotype> children = new ArrayList<TWEANNGenotype>(population.subList(0, SELECTED));
+				while (children.size() < POPULATION_SIZE) {
+					TWEANNGenotype child = (TWEANNGenotype) children.get(RandomNumbers.randomGenerator.nextInt(SELECTED)).copy();
+					child.mutate();
+					children.add(child);
+				}
+				population = children;
+			}
+			for (TWEANNGenotype g : population) {
+				CompiledTWEANN compiled = CompiledTWEANN.compile(g.getPhenotype());
+				long start = System.nanoTime();
+				compiled.processBatch(inputColumns, expected);
+				scratchTime += System.nanoTime() - start;
+				start = System.nanoTime();
+				double[][] actual = planes.cachedOutputs(planes.specialize(compiled, -1, inputMultipliers), -1, inputMultipliers);
+				if (actual == null) { // Links to earlier output nodes matter, so render from scratch
+					uncached++;
+					actual = new double[GraphicsUtil.NUM_HSB][samples];
+					compiled.processBatch(inputColumns, actual);
+				}
+				cachedTime += System.nanoTime() - start;
+				for (int o = 0; o < GraphicsUtil.NUM_HSB; o++) {
+					if (!Arrays.equals(expected[o], actual[o])) {
+						System.out.println("Mismatch in generation " + generation + " for network " + g.getId() + " output " + o);
+						System.exit(1);
+					}
+				}
+				rendered++;
+			}
+		}
+		System.out.println(rendered + " images match (" + uncached + " could not use the cache)");
+		System.out.println(ActivationPlaneCache.statistics());
+		System.out.println("From scratch: " + (scratchTime / 1000000) + " ms");
+		System.out.println("Cached:       " + (cachedTime / 1000000) + " ms");
+	}
+}
@@ -3,8 +3,11 @@ package edu.southwestern.util.graphics;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import edu.southwestern.networks.CompiledTWEANN;
+import edu.southwestern.networks.HoistedTWEANN;
 import edu.southwestern.networks.Network;
 import edu.southwestern.tasks.interactive.objectbreeder.ThreeDimensionalObjectBreederTask;
 import edu.southwestern.util.CartesianGeometricUtilities;
@@ -81,12 +84,9 @@ public class ThreeDimensionalUtil {
 	 */
 	private static BufferedImage imageFromTriangles(List<Triangle> tris, int width, int height, Matrix3 transform, Color bgColor) {
 		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = GraphicsUtil.pixels(img);
 		if(bgColor != null) {
-			for(int i = 0; i < width; i++) {
-				for(int j = 0; j < height; j++) {
-					img.setRGB(i, j, bgColor.getRGB());
-				}
-			}
+			Arrays.fill(pixels, bgColor.getRGB());
 		}
 
 		double[] zBuffer = new double[img.getWidth() * img.getHeight()];
@@ -109,6 +109,8 @@ public class ThreeDimensionalUtil {
 			Vertex norm = getNorm(v1, v2, v3);
 
 			double angleCos = Math.abs(norm.z);
+			// Every pixel of the triangle has the same shade
+			int shade = shadeRGB(t.color, angleCos);
 
 			int minX = (int) Math.max(0, Math.ceil(Math.min(v1.x, Math.min(v2.x, v3.x))));
 			int maxX = (int) Math.min(img.getWidth() - 1, Math.floor(Math.max(v1.x, Math.max(v2.x, v3.x))));
@@ -125,7 +127,7 @@ public class ThreeDimensionalUtil {
 						double depth = b1 * v1.z + b2 * v2.z + b3 * v3.z;
 						int zIndex = y * img.getWidth() + x;
 						if (zBuffer[zIndex] < depth) {
-							img.setRGB(x, y, getShade(t.color, angleCos).getRGB());
+							pixels[zIndex] = shade;
 							zBuffer[zIndex] = depth;
 						}
 					}
@@ -159,6 +161,17 @@ public class ThreeDimensionalUtil {
 	 * @return
 	 */
 	public static Color getShade(Color color, double shade) {
+		return new Color(shadeRGB(color, shade));
+	}
+
+	/**
+	 * Same shading as getShade, but without creating a Color
+	 * 
+	 * @param color Color being shaded
+	 * @param shade cosine of angle between surface and view
+	 * @return opaque packed RGB of shaded color
+	 */
+	private static int shadeRGB(Color color, double shade) {
 		double redLinear = Math.pow(color.getRed(), SHADE_CONSTANT) * shade;
 		double greenLinear = Math.pow(color.getGreen(), SHADE_CONSTANT) * shade;
 		double blueLinear = Math.pow(color.getBlue(), SHADE_CONSTANT) * shade;
@@ -167,7 +180,7 @@ public class ThreeDimensionalUtil {
 		int green = (int) Math.pow(greenLinear, 1/SHADE_CONSTANT);
 		int blue = (int) Math.pow(blueLinear, 1/SHADE_CONSTANT);
 
-		return new Color(red, green, blue);
+		return 0xff000000 | (red << 16) | (green << 8) | blue;
 	}
 
 	/**
@@ -206,15 +219,44 @@ public class ThreeDimensionalUtil {
 		List<Vertex> centers = new ArrayList<>();
 		List<Color> colors = new ArrayList<>();
 		double halfCube = (cubeSize/2.0);
+		// Networks without recurrent state can evaluate every voxel in one batch
+		CompiledTWEANN compiled = CompiledTWEANN.compileStateless(cppn);
+		double[][] outputColumns = null;
+		if(compiled != null) {
+			CPPNInputPlanes planes = CPPNInputPlanes.get3D(shapeWidth, shapeHeight, shapeDepth);
+			// Turned off inputs, the bias, and nodes that cannot affect the shape are folded away.
+			// The specialized network is shared, so this thread needs its own copy.
+			compiled = new CompiledTWEANN(planes.specialize(compiled, time, inputMultipliers));
+			outputColumns = new double[compiled.effectiveNumOutputs()][planes.numSamples()];
+			// Animation frames only re-evaluate the part of the CPPN that depends on time
+			HoistedTWEANN hoisted = time == -1 ? null : planes.hoistTime(compiled, inputMultipliers);
+			if(hoisted != null) {
+				new HoistedTWEANN(hoisted).evaluate(0, planes.numSamples(), planes.timeInput(time, inputMultipliers), outputColumns);
+			} else {
+				double[][] inputColumns = new double[compiled.numInputs()][planes.numSamples()];
+				planes.fillInputColumns(0, 1, planes.numSamples(), time, inputMultipliers, inputColumns);
+				compiled.processBatch(inputColumns, outputColumns);
+			}
+		}
+		int sample = 0;
 		for(int x = 0; x < shapeWidth; x++) {
 			for(int y = 0; y < shapeHeight; y++) {
 				for(int z = 0; z < shapeDepth; z++) {
-					double[] inputs = get3DObjectCPPNInputs(x, y, z, shapeWidth, shapeHeight, shapeDepth, time);
-					//determine whether inputs are turned on or off
-					for(int i = 0; i < inputMultipliers.length; i++) {
-						inputs[i] = inputs[i] * inputMultipliers[i];
-					}	
-					double[] output = cppn.process(inputs);
+					double[] output;
+					if(outputColumns != null) {
+						output = new double[outputColumns.length];
+						for(int i = 0; i < output.length; i++) {
+							output[i] = outputColumns[i][sample];
+						}
+					} else {
+						double[] inputs = get3DObjectCPPNInputs(x, y, z, shapeWidth, shapeHeight, shapeDepth, time);
+						//determine whether inputs are turned on or off
+						for(int i = 0; i < inputMultipliers.length; i++) {
+							inputs[i] = inputs[i] * inputMultipliers[i];
+						}	
+						output = cppn.process(inputs);
+					}
+					sample++;
 					if(output[0] > 0.1) {
 						double actualX = -(cubeSize*shapeWidth/2.0) + halfCube + x*cubeSize;
 						double actualY = -(cubeSize*shapeHeight/2.0) + halfCube + y*cubeSize;
@@ -226,8 +268,7 @@ public class ThreeDimensionalUtil {
 						}
 						centers.add(new Vertex(actualX, actualY, actualZ));
 						if(color == null) {
-							float[] hsb = GraphicsUtil.rangeRestrictHSB(new double[]{output[THREE_DIMENSIONAL_HUE_INDEX],output[THREE_DIMENSIONAL_SATURATION_INDEX],output[THREE_DIMENSIONAL_BRIGHTNESS_INDEX]});
-							int rgb = Color.HSBtoRGB(hsb[GraphicsUtil.HUE_INDEX], hsb[GraphicsUtil.SATURATION_INDEX], hsb[GraphicsUtil.BRIGHTNESS_INDEX]);
+							int rgb = GraphicsUtil.rgbFromCPPNOutputs(output[THREE_DIMENSIONAL_HUE_INDEX], output[THREE_DIMENSIONAL_SATURATION_INDEX], output[THREE_DIMENSIONAL_BRIGHTNESS_INDEX]);
 							Color evolvedColor = new Color(rgb, true);
 							colors.add(evolvedColor);
 						} else {
@@ -346,18 +387,37 @@ public class ThreeDimensionalUtil {
 	public static BufferedImage[] imagesFromTriangles(List<Triangle> tris, int imageWidth, int imageHeight, int startTime, int endTime, double heading, double pitch, Color color, boolean vertical) {
 		BufferedImage[] images = new BufferedImage[(endTime-startTime)];
 		for(int i = startTime; i < endTime; i++) {
-			// Causes slight twitch at end of each rotation sequence
-			if(vertical) {
-				double newPitch = pitch + (2*Math.PI*i)/images.length;
-				images[i-startTime] = imageFromTriangles(tris, imageWidth, imageHeight, heading, newPitch, color);
-			} else {
-				double newHeading = heading + (2*Math.PI*i)/images.length;
-				images[i-startTime] = imageFromTriangles(tris, imageWidth, imageHeight, newHeading, pitch, color);
-			}
+			images[i-startTime] = rotationFrameFromTriangles(tris, imageWidth, imageHeight, i, images.length, heading, pitch, color, vertical);
 		}
 		return images;
 	}
 
+	/**
+	 * Produces a single frame of a full rotation of a 3-dimensional object,
+	 * as in imagesFromTriangles.
+	 * 
+	 * @param tris array of triangles representing cube
+	 * @param imageWidth width of image
+	 * @param imageHeight height of image
+	 * @param frame index of frame
+	 * @param frames number of frames in a full rotation
+	 * @param heading starting horizontal rotation
+	 * @param pitch starting vertical rotation
+	 * @param color background color
+	 * @param vertical whether rotation is vertical instead of horizontal
+	 * @return image of object at this point in the rotation
+	 */
+	public static BufferedImage rotationFrameFromTriangles(List<Triangle> tris, int imageWidth, int imageHeight, int frame, int frames, double heading, double pitch, Color color, boolean vertical) {
+		// Causes slight twitch at end of each rotation sequence
+		if(vertical) {
+			double newPitch = pitch + (2*Math.PI*frame)/frames;
+			return imageFromTriangles(tris, imageWidth, imageHeight, heading, newPitch, color);
+		} else {
+			double newHeading = heading + (2*Math.PI*frame)/frames;
+			return imageFromTriangles(tris, imageWidth, imageHeight, newHeading, pitch, color);
+		}
+	}
+
 	/**
 	 * Produces an array of images that are meant to animate a 3-dimensional object
 	 * rotating based on an input CPPN. 
@@ -4,6 +4,7 @@ import java.io.IOException;
 
 import javax.sound.sampled.AudioFormat;
 
+import edu.southwestern.networks.CompiledTWEANN;
 import edu.southwestern.networks.Network;
 
 /**
@@ -15,6 +16,10 @@ import edu.southwestern.networks.Network;
  *
  */
 public class SoundFromCPPNUtil {
+	
+	// Number of samples evaluated at once when a CPPN can be batch processed
+	public static final int BATCH_SIZE = 4096;
+	
 	/**
 	 * Creates a double array of amplitudes using a CPPN. CPPN has three inputs - time, frequency,
 	 * and a bias. It only has one output, which is the amplitude. The array of inputs is looped through 
@@ -46,6 +51,23 @@ public class SoundFromCPPNUtil {
 	 */
 	public static double[] amplitudeGenerator(Network CPPN, int length, double frequency, double[] inputMultipliers) {
 		double[] result = new double[length];
+		CompiledTWEANN compiled = CompiledTWEANN.compileStateless(CPPN);
+		if(compiled != null) {
+			double[][] inputColumns = new double[3][Math.min(length, BATCH_SIZE)];
+			double[][] outputColumns = new double[compiled.effectiveNumOutputs()][inputColumns[0].length];
+			for(int start = 0; start < length; start += BATCH_SIZE) {
+				int count = Math.min(BATCH_SIZE, length - start);
+				for(int s = 0; s < count; s++) {
+					double time = start + s;
+					inputColumns[0][s] = (time/PlayDoubleArray.SAMPLE_RATE) * inputMultipliers[0];
+					inputColumns[1][s] = Math.sin(2*Math.PI * frequency * time/PlayDoubleArray.SAMPLE_RATE) * inputMultipliers[1];
+					inputColumns[2][s] = 1.0 * inputMultipliers[2];
+				}
+				compiled.processBatch(inputColumns, outputColumns, count);
+				System.arraycopy(outputColumns[0], 0, result, start, count); // amplitude
+			}
+			return result;
+		}
 		for(double time = 0; time < length; time++) {
 			double[] inputs = new double[]{time/PlayDoubleArray.SAMPLE_RATE, Math.sin(2*Math.PI * frequency * time/PlayDoubleArray.SAMPLE_RATE), 1.0};	
 			// Multiplies the inputs of the pictures by the inputMultiples; used to turn on or off the effects in each picture
@@ -74,6 +96,24 @@ public class SoundFromCPPNUtil {
 	 */
 	public static double[] amplitudeRemixer(Network CPPN, double[] inputWAV, int length, double frequency, double[] inputMultipliers) {
 		double[] result = new double[length];
+		CompiledTWEANN compiled = CompiledTWEANN.compileStateless(CPPN);
+		if(compiled != null) {
+			double[][] inputColumns = new double[4][Math.min(length, BATCH_SIZE)];
+			double[][] outputColumns = new double[compiled.effectiveNumOutputs()][inputColumns[0].length];
+			for(int start = 0; start < length; start += BATCH_SIZE) {
+				int count = Math.min(BATCH_SIZE, length - start);
+				for(int s = 0; s < count; s++) {
+					double time = start + s;
+					inputColumns[0][s] = (time/PlayDoubleArray.SAMPLE_RATE) * inputMultipliers[0];
+					inputColumns[1][s] = Math.sin(2*Math.PI * frequency * time/PlayDoubleArray.SAMPLE_RATE) * inputMultipliers[1];
+					inputColumns[2][s] = inputWAV[start + s] * inputMultipliers[2];
+					inputColumns[3][s] = 1.0 * inputMultipliers[3];
+				}
+				compiled.processBatch(inputColumns, outputColumns, count);
+				System.arraycopy(outputColumns[0], 0, result, start, count); // amplitude
+			}
+			return result;
+		}
 		for(double time = 0; time < length; time++) {
 			double[] inputs = new double[]{time/PlayDoubleArray.SAMPLE_RATE, Math.sin(2*Math.PI * frequency * time/PlayDoubleArray.SAMPLE_RATE), inputWAV[(int) time], 1.0};	
 			// Multiplies the inputs of the pictures by the inputMultiples; used to turn on or off the effects in each picture